@@ -0,0 +1,473 @@
+package asypad.shapes;
+
+import java.util.Arrays;
+import java.util.List;
+
+import asypad.shapes.types.POINT_TYPE;
+
+/**
+ * Evaluates a construction under many assignments of its free points and of the relative locations of its points on shapes at once,
+ * e.g. for numeric verification, locus sampling and generating variants of a diagram.
+ * Each assignment is a lane: every shape stores one array per coordinate with one entry per lane, and each instruction of the
+ * evaluation tape is run over all lanes in a tight loop before moving on to the next instruction.
+ * Lanes start out with the current geometry of the diagram, so only the inputs that differ have to be set.
+ * Like the tape, an instruction with an operand that is undefined in a lane is skipped in that lane and is undefined there itself.
+ * @author Raymond Feng
+ */
+public class BatchEvaluator
+{
+	/**
+	 * The compiled construction.
+	 */
+	private EvaluationTape tape;
+
+	/**
+	 * Number of lanes.
+	 */
+	private int lanes;
+
+	/**
+	 * Relative location of each point on a shape in each lane, or null for other shapes.
+	 */
+	private double[][] param;
+
+	/**
+	 * Evaluated coordinates of each shape in each lane, laid out like the coordinates of the tape.
+	 * Arrays that a shape does not use are null.
+	 */
+	private double[][] x, y, x2, y2, dx, dy, r;
+
+	/**
+	 * Whether each shape is defined in each lane.
+	 */
+	private boolean[][] defined;
+
+	/**
+	 * Creates a batch evaluator for a construction.
+	 * @param order shapes in topological order, which must contain the dependencies of every shape
+	 * @param lanes number of assignments to evaluate at once
+	 */
+	public BatchEvaluator(List<Shape> order, int lanes)
+	{
+		if(lanes <= 0) throw new IllegalArgumentException("Number of lanes must be positive.");
+		this.lanes = lanes;
+		tape = new EvaluationTape(order);
+		int size = tape.size();
+		param = new double[size][];
+		x = new double[size][];
+		y = new double[size][];
+		x2 = new double[size][];
+		y2 = new double[size][];
+		dx = new double[size][];
+		dy = new double[size][];
+		r = new double[size][];
+		defined = new boolean[size][];
+		for(int i = 0; i < size; i++)
+		{
+			Shape s = tape.getShape(i);
+			x[i] = new double[lanes];
+			y[i] = new double[lanes];
+			defined[i] = new boolean[lanes];
+			if(s instanceof Line)
+			{
+				x2[i] = new double[lanes];
+				y2[i] = new double[lanes];
+				dx[i] = new double[lanes];
+				dy[i] = new double[lanes];
+			}
+			else if(s instanceof Circle)
+			{
+				r[i] = new double[lanes];
+			}
+			if(tape.op[i] == EvaluationTape.POINT_ON_LINE || tape.op[i] == EvaluationTape.POINT_ON_CIRCLE)
+			{
+				param[i] = new double[lanes];
+			}
+		}
+		reset();
+	}
+
+	/**
+	 * Resets the inputs of every lane to the current geometry of the diagram.
+	 */
+	public void reset()
+	{
+		tape.load();
+		for(int i = 0; i < tape.size(); i++)
+		{
+			if(param[i] != null) fill(param[i], tape.param[i]);
+			if(tape.op[i] != EvaluationTape.INPUT) continue;
+			Arrays.fill(defined[i], tape.isDefined(i));
+			fill(x[i], tape.getX(i));
+			fill(y[i], tape.getY(i));
+			if(x2[i] != null)
+			{
+				fill(x2[i], tape.getSecondX(i));
+				fill(y2[i], tape.getSecondY(i));
+				fill(dx[i], tape.getDirectionX(i));
+				fill(dy[i], tape.getDirectionY(i));
+			}
+			if(r[i] != null) fill(r[i], tape.getRadius(i));
+		}
+	}
+
+	/**
+	 * Number of lanes.
+	 * @return number of assignments evaluated at once
+	 */
+	public int lanes()
+	{
+		return lanes;
+	}
+
+	/**
+	 * Sets the location of a free point in one lane.
+	 * @param p free point
+	 * @param lane lane to set
+	 * @param px x-coordinate
+	 * @param py y-coordinate
+	 */
+	public void setPoint(Point p, int lane, double px, double py)
+	{
+		int i = index(p);
+		if(p.getType() != POINT_TYPE.POINT) throw new IllegalArgumentException(p.getName() + " is not a free point.");
+		x[i][lane] = px;
+		y[i][lane] = py;
+		defined[i][lane] = Double.isFinite(px) && Double.isFinite(py);
+	}
+
+	/**
+	 * Sets the relative location of a point on a shape in one lane.
+	 * @param p point on a shape
+	 * @param lane lane to set
+	 * @param t relative location: the fraction of the way along a line, or the angle on a circle
+	 */
+	public void setRelativeLocation(Point p, int lane, double t)
+	{
+		int i = index(p);
+		if(param[i] == null) throw new IllegalArgumentException(p.getName() + " is not a point on a shape.");
+		param[i][lane] = t;
+	}
+
+	/**
+	 * Evaluates every instruction of the construction once for every lane.
+	 */
+	public void evaluate()
+	{
+		int n = lanes;
+		double[] out = new double[2];
+		for(int i = 0; i < tape.size(); i++)
+		{
+			if(tape.op[i] == EvaluationTape.INPUT) continue;
+			int p = tape.a[i], q = tape.b[i], s = tape.c[i], arity = tape.arity[i];
+			boolean id = tape.identifier[i];
+			boolean[] di = defined[i], dp = defined[p], dq = defined[q], ds = defined[s];
+			for(int k = 0; k < n; k++)
+			{
+				di[k] = dp[k] && (arity < 2 || dq[k]) && (arity < 3 || ds[k]);
+			}
+			double[] xi = x[i], yi = y[i], x2i = x2[i], y2i = y2[i], dxi = dx[i], dyi = dy[i], ri = r[i];
+			double[] xp = x[p], yp = y[p], xq = x[q], yq = y[q], xs = x[s], ys = y[s];
+			double[] dxp = dx[p], dyp = dy[p], dxq = dx[q], dyq = dy[q];
+			boolean infinite = tape.infinite[p];
+			double sx, sy, ex, ey, d, cx, cy;
+			switch(tape.op[i])
+			{
+			case EvaluationTape.POINT_ON_LINE:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					sx = infinite ? xp[k]-Shape.INF*dxp[k] : xp[k];
+					sy = infinite ? yp[k]-Shape.INF*dyp[k] : yp[k];
+					ex = infinite ? x2[p][k]+Shape.INF*dxp[k] : x2[p][k];
+					ey = infinite ? y2[p][k]+Shape.INF*dyp[k] : y2[p][k];
+					xi[k] = sx+param[i][k]*(ex-sx);
+					yi[k] = sy+param[i][k]*(ey-sy);
+				}
+				break;
+			case EvaluationTape.POINT_ON_CIRCLE:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					xi[k] = xp[k]+r[p][k]*Math.cos(param[i][k]);
+					yi[k] = yp[k]+r[p][k]*Math.sin(param[i][k]);
+				}
+				break;
+			case EvaluationTape.LINE_LINE_INTERSECTION:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					GeometryKernel.intersect(xp[k], yp[k], dxp[k], dyp[k], !infinite, xq[k], yq[k], dxq[k], dyq[k], !tape.infinite[q], out);
+					xi[k] = out[0];
+					yi[k] = out[1];
+				}
+				break;
+			case EvaluationTape.LINE_CIRCLE_INTERSECTION:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					GeometryKernel.intersect(xp[k], yp[k], dxp[k], dyp[k], !infinite, xq[k], yq[k], r[q][k], id, out);
+					xi[k] = out[0];
+					yi[k] = out[1];
+				}
+				break;
+			case EvaluationTape.CIRCLE_CIRCLE_INTERSECTION:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					GeometryKernel.intersect(xp[k], yp[k], r[p][k], xq[k], yq[k], r[q][k], id, out);
+					xi[k] = out[0];
+					yi[k] = out[1];
+				}
+				break;
+			case EvaluationTape.MIDPOINT:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					xi[k] = (xp[k]+xq[k])/2;
+					yi[k] = (yp[k]+yq[k])/2;
+				}
+				break;
+			case EvaluationTape.SEGMENT:
+				System.arraycopy(xp, 0, xi, 0, n);
+				System.arraycopy(yp, 0, yi, 0, n);
+				System.arraycopy(xq, 0, x2i, 0, n);
+				System.arraycopy(yq, 0, y2i, 0, n);
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					dxi[k] = xq[k]-xp[k];
+					dyi[k] = yq[k]-yp[k];
+				}
+				break;
+			case EvaluationTape.LINE:
+				System.arraycopy(xp, 0, xi, 0, n);
+				System.arraycopy(yp, 0, yi, 0, n);
+				System.arraycopy(xq, 0, x2i, 0, n);
+				System.arraycopy(yq, 0, y2i, 0, n);
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					d = Math.sqrt((xq[k]-xp[k])*(xq[k]-xp[k])+(yq[k]-yp[k])*(yq[k]-yp[k]));
+					dxi[k] = (xq[k]-xp[k])/d;
+					dyi[k] = (yq[k]-yp[k])/d;
+				}
+				break;
+			case EvaluationTape.PARALLEL_LINE:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					d = Math.sqrt(dxq[k]*dxq[k]+dyq[k]*dyq[k]);
+					xi[k] = x2i[k] = xp[k];
+					yi[k] = y2i[k] = yp[k];
+					dxi[k] = dxq[k]/d;
+					dyi[k] = dyq[k]/d;
+				}
+				break;
+			case EvaluationTape.PERPENDICULAR_LINE:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					d = Math.sqrt(dxq[k]*dxq[k]+dyq[k]*dyq[k]);
+					xi[k] = x2i[k] = xp[k];
+					yi[k] = y2i[k] = yp[k];
+					dxi[k] = -dyq[k]/d;
+					dyi[k] = dxq[k]/d;
+				}
+				break;
+			case EvaluationTape.ANGLE_BISECTOR:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					GeometryKernel.angleBisector(xp[k], yp[k], xq[k], yq[k], xs[k], ys[k], out);
+					d = Math.sqrt((out[0]-xq[k])*(out[0]-xq[k])+(out[1]-yq[k])*(out[1]-yq[k]));
+					xi[k] = xq[k];
+					yi[k] = yq[k];
+					x2i[k] = out[0];
+					y2i[k] = out[1];
+					dxi[k] = (out[0]-xq[k])/d;
+					dyi[k] = (out[1]-yq[k])/d;
+				}
+				break;
+			case EvaluationTape.PERPENDICULAR_BISECTOR:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					d = Utility.dist(xp[k], yp[k], xq[k], yq[k]);
+					xi[k] = x2i[k] = (xp[k]+xq[k])/2;
+					yi[k] = y2i[k] = (yp[k]+yq[k])/2;
+					dxi[k] = -(yq[k]-yp[k])/d;
+					dyi[k] = (xq[k]-xp[k])/d;
+				}
+				break;
+			case EvaluationTape.TANGENT_LINE:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					GeometryKernel.tangent(xp[k], yp[k], xq[k], yq[k], r[q][k], id, out);
+					cx = out[0];
+					cy = out[1];
+					d = Math.sqrt((cx-xp[k])*(cx-xp[k])+(cy-yp[k])*(cy-yp[k]));
+					xi[k] = xp[k];
+					yi[k] = yp[k];
+					x2i[k] = cx;
+					y2i[k] = cy;
+					dxi[k] = (cx-xp[k])/d;
+					dyi[k] = (cy-yp[k])/d;
+				}
+				break;
+			case EvaluationTape.CIRCLE:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					xi[k] = xp[k];
+					yi[k] = yp[k];
+					ri[k] = Utility.dist(xp[k], yp[k], xq[k], yq[k]);
+				}
+				break;
+			case EvaluationTape.CIRCUMCIRCLE:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					GeometryKernel.circumcenter(xp[k], yp[k], xq[k], yq[k], xs[k], ys[k], out);
+					xi[k] = out[0];
+					yi[k] = out[1];
+					ri[k] = Utility.dist(xi[k], yi[k], xp[k], yp[k]);
+				}
+				break;
+			case EvaluationTape.INCIRCLE:
+				for(int k = 0; k < n; k++)
+				{
+					if(!di[k]) continue;
+					GeometryKernel.incenter(xp[k], yp[k], xq[k], yq[k], xs[k], ys[k], out);
+					xi[k] = out[0];
+					yi[k] = out[1];
+					ri[k] = Utility.distToL(xp[k], yp[k], xq[k], yq[k], xi[k], yi[k]);
+				}
+				break;
+			}
+			int op = tape.op[i];
+			for(int k = 0; k < n; k++)
+			{
+				if(!di[k]) continue;
+				if(op <= EvaluationTape.MIDPOINT) di[k] = Double.isFinite(xi[k]) && Double.isFinite(yi[k]);
+				else if(op <= EvaluationTape.TANGENT_LINE)
+				{
+					di[k] = Double.isFinite(xi[k]) && Double.isFinite(yi[k]) && Double.isFinite(x2i[k]) && Double.isFinite(y2i[k])
+							&& Double.isFinite(dxi[k]) && Double.isFinite(dyi[k]);
+				}
+				else di[k] = Double.isFinite(xi[k]) && Double.isFinite(yi[k]) && Double.isFinite(ri[k]);
+			}
+		}
+	}
+
+	/**
+	 * Evaluated x-coordinates of a point, anchor x of a line or x-coordinates of the center of a circle, one per lane.
+	 * The returned array should not be modified.
+	 * @param s shape
+	 * @return x-coordinates
+	 */
+	public double[] getX(Shape s)
+	{
+		return x[index(s)];
+	}
+
+	/**
+	 * Evaluated y-coordinates of a point, anchor y of a line or y-coordinates of the center of a circle, one per lane.
+	 * The returned array should not be modified.
+	 * @param s shape
+	 * @return y-coordinates
+	 */
+	public double[] getY(Shape s)
+	{
+		return y[index(s)];
+	}
+
+	/**
+	 * Evaluated end x of a segment or x-coordinate of the second point of an infinite line, one per lane.
+	 * The returned array should not be modified.
+	 * @param l line
+	 * @return x-coordinates of the second point
+	 */
+	public double[] getSecondX(Line l)
+	{
+		return x2[index(l)];
+	}
+
+	/**
+	 * Evaluated end y of a segment or y-coordinate of the second point of an infinite line, one per lane.
+	 * The returned array should not be modified.
+	 * @param l line
+	 * @return y-coordinates of the second point
+	 */
+	public double[] getSecondY(Line l)
+	{
+		return y2[index(l)];
+	}
+
+	/**
+	 * Evaluated x-component of the direction of a line, one per lane. The returned array should not be modified.
+	 * @param l line
+	 * @return x-components of the direction
+	 */
+	public double[] getDirectionX(Line l)
+	{
+		return dx[index(l)];
+	}
+
+	/**
+	 * Evaluated y-component of the direction of a line, one per lane. The returned array should not be modified.
+	 * @param l line
+	 * @return y-components of the direction
+	 */
+	public double[] getDirectionY(Line l)
+	{
+		return dy[index(l)];
+	}
+
+	/**
+	 * Evaluated radius of a circle, one per lane. The returned array should not be modified.
+	 * @param c circle
+	 * @return radius
+	 */
+	public double[] getRadius(Circle c)
+	{
+		return r[index(c)];
+	}
+
+	/**
+	 * Whether a shape is defined, one per lane. The coordinates of a shape are meaningless in lanes where it is undefined.
+	 * The returned array should not be modified.
+	 * @param s shape
+	 * @return if the shape is defined in each lane
+	 */
+	public boolean[] getDefined(Shape s)
+	{
+		return defined[index(s)];
+	}
+
+	/**
+	 * Finds the index of a shape in the tape.
+	 * @param s shape
+	 * @return index of the shape
+	 */
+	private int index(Shape s)
+	{
+		int i = tape.indexOf(s);
+		if(i == -1) throw new IllegalArgumentException(s.getName() + " is not part of this construction.");
+		return i;
+	}
+
+	/**
+	 * Fills every lane of an array with a value.
+	 * @param lane array to fill
+	 * @param value value
+	 */
+	private static void fill(double[] lane, double value)
+	{
+		for(int k = 0; k < lane.length; k++)
+		{
+			lane[k] = value;
+		}
+	}
+}
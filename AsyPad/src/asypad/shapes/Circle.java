@@ -1,8 +1,6 @@
 package asypad.shapes;
 
 import asypad.shapes.types.CIRCLE_TYPE;
-import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
 
 /**
  * Custom Circle used for drawing in AsyPad.
@@ -10,11 +8,6 @@ import javafx.scene.paint.Color;
  */
 public class Circle extends Shape
 {
-	/**
-	 * Underlying circle that is drawn onto the screen.
-	 */
-	private javafx.scene.shape.Circle circle;
-
 	/**
 	 * x-coordinate of the center of the circle.
 	 */
@@ -36,6 +29,139 @@ public class Circle extends Shape
 	 */
 	//private boolean identifier;
 
+	/**
+	 * Rule of circles with a center through a point.
+	 */
+	private static final Rule<Circle> CIRCLE = new Rule<Circle>(EvaluationTape.CIRCLE)
+	{
+		void evaluate(Circle c)
+		{
+			Point center = (Point) c.dependencies.get(0);
+			Point on = (Point) c.dependencies.get(1);
+			c.x = center.getX();
+			c.y = center.getY();
+			c.radius = Utility.dist(center, on);
+		}
+
+		String emit(Circle c, String n)
+		{
+			String p1 = c.dependencies.get(0).getName();
+			String p2 = c.dependencies.get(1).getName();
+			return "path " + n + " = Circle(" + p1 + ", abs(" + p1 + "-" + p2 + "));\npair " + n + "center = " + p1 + "; real " + n + "rad = abs(" + p1 + " - " + p2 + "); ";
+		}
+
+		String name(Circle c)
+		{
+			return "circ"+c.dependencies.get(0).getName()+SEPARATOR+c.dependencies.get(1).getName();
+		}
+	};
+
+	/**
+	 * Rule of circumcircles of 3 points.
+	 */
+	private static final Rule<Circle> CIRCUMCIRCLE = new Rule<Circle>(EvaluationTape.CIRCUMCIRCLE)
+	{
+		void evaluate(Circle c)
+		{
+			Point p1 = (Point) c.dependencies.get(0);
+			Point p2 = (Point) c.dependencies.get(1);
+			Point p3 = (Point) c.dependencies.get(2);
+			double[] center = new double[2];
+			GeometryKernel.circumcenter(p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY(), center);
+			c.x = center[0];
+			c.y = center[1];
+			c.radius = Utility.dist(c.x, c.y, p1.getX(), p1.getY());
+		}
+
+		String emit(Circle c, String n)
+		{
+			String p1 = c.dependencies.get(0).getName();
+			String p2 = c.dependencies.get(1).getName();
+			String p3 = c.dependencies.get(2).getName();
+			return "path " + n + " = circumcircle(" + p1 + ", " + p2 + ", " + p3 + ");\npair " + n + "center = circumcenter(" + p1 + ", " + p2 + ", " + p3 + "); real " + n + "rad = circumradius(" + p1 + ", " + p2 + ", " + p3 + "); ";
+		}
+
+		String name(Circle c)
+		{
+			return "cc"+c.dependencies.get(0).getName()+SEPARATOR+c.dependencies.get(1).getName()+SEPARATOR+c.dependencies.get(2).getName();
+		}
+	};
+
+	/**
+	 * Rule of incircles of 3 points.
+	 */
+	private static final Rule<Circle> INCIRCLE = new Rule<Circle>(EvaluationTape.INCIRCLE)
+	{
+		void evaluate(Circle c)
+		{
+			Point p1 = (Point) c.dependencies.get(0);
+			Point p2 = (Point) c.dependencies.get(1);
+			Point p3 = (Point) c.dependencies.get(2);
+			double[] center = new double[2];
+			GeometryKernel.incenter(p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY(), center);
+			c.x = center[0];
+			c.y = center[1];
+			c.radius = Utility.distToL(p1.getX(), p1.getY(), p2.getX(), p2.getY(), c.x, c.y);
+		}
+
+		String emit(Circle c, String n)
+		{
+			String p1 = c.dependencies.get(0).getName();
+			String p2 = c.dependencies.get(1).getName();
+			String p3 = c.dependencies.get(2).getName();
+			return "path " + n + " = incircle(" + p1 + ", " + p2 + ", " + p3 + ");\npair " + n + "center = incenter(" + p1 + ", " + p2 + ", " + p3 + "); real " + n + "rad = inradius(" + p1 + ", " + p2 + ", " + p3 + "); ";
+		}
+
+		String name(Circle c)
+		{
+			return "ic"+c.dependencies.get(0).getName()+SEPARATOR+c.dependencies.get(1).getName()+SEPARATOR+c.dependencies.get(2).getName();
+		}
+	};
+
+	/**
+	 * Rule of circles tangent to 2 circles, tangent to the first circle at a given point.
+	 */
+	/*private static final Rule<Circle> TANGENT_CIRCLE = new Rule<Circle>()
+	{
+		void evaluate(Circle c)
+		{
+			Circle c1 = (Circle) c.dependencies.get(0);
+			Circle c2 = (Circle) c.dependencies.get(1);
+			Point p = (Point) c.dependencies.get(2);
+
+			c.x = Utility.tangentCircleX(c1, c2, p, c.identifier);
+			c.y = Utility.tangentCircleY(c1, c2, p, c.identifier);
+			c.radius = Utility.dist(c.x, c.y, p.getX(), p.getY());
+		}
+
+		String emit(Circle c, String n)
+		{
+			String c1 = c.dependencies.get(0).getName();
+			String c2 = c.dependencies.get(1).getName();
+			String p = c.dependencies.get(2).getName();
+			
+			int id = (c.identifier ? -1 : 1);
+			
+			String ce1 = c1 + "center", ce2 = c2 + "center";
+			String r1 = c1 + "rad", r2 = c2 + "rad";
+			
+			String s = "pair " + p + "_" + c1 + "_" + c2 + "_auxPt" + (id+1) + " = " + p + " + " + id + " * " + r2 + " / " + r1 + " * (" + ce1 + " - " + p +"); pair " + p + "_" + c1 + "_" + c2 + "_mid = ((" +ce2 + " + " + p + "_" + c1 + "_" + c2 + "_auxPt" + (id+1) + ")/2);\n";
+			s += "pair " + p + "_" + c1 + "_" + c2 + "_tccenter = extension(unit(rotate(90," + p + "_" + c1 + "_" + c2 + "_mid)*" + ce2 + "-" + p + "_" + c1 + "_" + c2 + "_mid)" + " + " + p + "_" + c1 + "_" + c2 + "_mid" + ", unit(rotate(270," + p + "_" + c1 + "_" + c2 + "_mid)*" + ce2 + "-" + p + "_" + c1 + "_" + c2 + "_mid)" + " + " + p + "_" + c1 + "_" + c2 + "_mid" + ", " + ce1 + ", " + p + ");\n";
+			s += "path " + n + " = circle(" + p + "_" + c1 + "_" + c2 + "_tccenter, abs(" + p + "_" + c1 + "_" + c2 + "_tccenter - " + p + ")); ";
+			return s;
+		}
+
+		String name(Circle c)
+		{
+			return "tc"+c.dependencies.get(0).getName()+SEPARATOR+c.dependencies.get(1).getName()+SEPARATOR+c.dependencies.get(2).getName();
+		}
+	};*/
+
+	/**
+	 * Rule that computes this circle from the shapes that it depends on.
+	 */
+	private final Rule<Circle> rule;
+
 	/**
 	 * Constructs new Circle with center and a point on the circle.
 	 * @param center center point
@@ -44,15 +170,9 @@ public class Circle extends Shape
 	public Circle(Point center, Point on)
 	{
 		super(center, on);
-		x = center.getX();
-		y = center.getY();
-		radius = Utility.dist(center, on);
 		type = CIRCLE_TYPE.CIRCLE;
-		circle = new javafx.scene.shape.Circle(x, y, radius);
-		circle.setFill(Color.TRANSPARENT);
-		circle.setStrokeWidth(StrokeWidth);
-		circle.setStroke(color);
-		label.setText("circ" + center.getName() + SEPARATOR + on.getName());
+		rule = CIRCLE;
+		recompute();
 	}
 
 	/**
@@ -67,28 +187,15 @@ public class Circle extends Shape
 		super(p1, p2, p3);
 		if(isCircumcircle)
 		{
-			x = Utility.circumcenterX(p1, p2, p3);
-			y = Utility.circumcenterY(p1, p2, p3);
-			radius = Utility.dist(x, y, p1.getX(), p1.getY());
 			type = CIRCLE_TYPE.CIRCUMCIRCLE;
-			circle = new javafx.scene.shape.Circle(x, y, radius);
-			circle.setFill(Color.TRANSPARENT);
-			circle.setStrokeWidth(StrokeWidth);
-			circle.setStroke(color);
-			label.setText("cc" + p1.getName() + SEPARATOR + p2.getName() + SEPARATOR + p3.getName());
+			rule = CIRCUMCIRCLE;
 		}
 		else
 		{
-			x = Utility.incenterX(p1, p2, p3);
-			y = Utility.incenterY(p1, p2, p3);
-			radius = Utility.distToL(p1.getX(), p1.getY(), p2.getX(), p2.getY(), x, y);
 			type = CIRCLE_TYPE.INCIRCLE;
-			circle = new javafx.scene.shape.Circle(x, y, radius);
-			circle.setFill(Color.TRANSPARENT);
-			circle.setStrokeWidth(StrokeWidth);
-			circle.setStroke(color);
-			label.setText("ic" + p1.getName() + SEPARATOR + p2.getName() + SEPARATOR + p3.getName());
+			rule = INCIRCLE;
 		}
+		recompute();
 	}
 	
 	/**
@@ -102,15 +209,10 @@ public class Circle extends Shape
 	/*public Circle(Circle c1, Circle c2, Point p, boolean identifier)
 	{
 		super(c1, c2, p);
-		x = Utility.tangentCircleX(c1, c2, p, identifier);
-		y = Utility.tangentCircleY(c1, c2, p, identifier);
-		radius = Utility.dist(x, y, p.getX(), p.getY());
 		type = CIRCLE_TYPE.TANGENT_CIRCLE;
-		circle = new javafx.scene.shape.Circle(x, y, radius);
-		circle.setFill(Color.TRANSPARENT);
-		circle.setStrokeWidth(StrokeWidth);
-		circle.setStroke(color);
-		label.setText("tc" + c1.getName() + SEPARATOR + c2.getName() + SEPARATOR + p.getName());
+		rule = TANGENT_CIRCLE;
+		this.identifier = identifier;
+		recompute();
 	}*/
 
 	/**
@@ -119,6 +221,7 @@ public class Circle extends Shape
 	 */
 	public double getCenterX()
 	{
+		validate();
 		return x;
 	}
 
@@ -128,6 +231,7 @@ public class Circle extends Shape
 	 */
 	public double getCenterY()
 	{
+		validate();
 		return y;
 	}
 
@@ -137,89 +241,77 @@ public class Circle extends Shape
 	 */
 	public double getRadius()
 	{
+		validate();
 		return radius;
 	}
 
-	public void draw(Pane p)
+	/**
+	 * Sets the center and radius of this circle without refreshing its children, used by the {@code EvaluationTape}.
+	 * @param x new x-coordinate of center
+	 * @param y new y-coordinate of center
+	 * @param radius new radius
+	 */
+	void setCircle(double x, double y, double radius)
 	{
-		p.getChildren().add(circle);
+		this.x = x;
+		this.y = y;
+		this.radius = radius;
 	}
 
-	public void refresh()
+	protected void recompute()
 	{
-		if(type == CIRCLE_TYPE.CIRCLE)
+		//a case for each rule, so that each call only ever sees the one rule
+		switch(rule.op)
 		{
-			Point center = (Point) dependencies.get(0);
-			Point on = (Point) dependencies.get(1);
-			x = center.getX();
-			y = center.getY();
-			radius = Utility.dist(center, on);
+		case EvaluationTape.CIRCLE:
+			CIRCLE.evaluate(this);
+			break;
+		case EvaluationTape.CIRCUMCIRCLE:
+			CIRCUMCIRCLE.evaluate(this);
+			break;
+		case EvaluationTape.INCIRCLE:
+			INCIRCLE.evaluate(this);
+			break;
 		}
-		else if(type == CIRCLE_TYPE.CIRCUMCIRCLE)
-		{
-			Point p1 = (Point) dependencies.get(0);
-			Point p2 = (Point) dependencies.get(1);
-			Point p3 = (Point) dependencies.get(2);
-			x = Utility.circumcenterX(p1, p2, p3);
-			y = Utility.circumcenterY(p1, p2, p3);
-			radius = Utility.dist(x, y, p1.getX(), p1.getY());
-		}
-		else if(type == CIRCLE_TYPE.INCIRCLE)
-		{
-			Point p1 = (Point) dependencies.get(0);
-			Point p2 = (Point) dependencies.get(1);
-			Point p3 = (Point) dependencies.get(2);
-			x = Utility.incenterX(p1, p2, p3);
-			y = Utility.incenterY(p1, p2, p3);
-			radius = Utility.distToL(p1.getX(), p1.getY(), p2.getX(), p2.getY(), x, y);
-		}
-		/*else if(type == CIRCLE_TYPE.TANGENT_CIRCLE)
-		{
-			Circle c1 = (Circle) dependencies.get(0);
-			Circle c2 = (Circle) dependencies.get(1);
-			Point p = (Point) dependencies.get(2);
+	}
 
-			x = Utility.tangentCircleX(c1, c2, p, identifier);
-			y = Utility.tangentCircleY(c1, c2, p, identifier);
-			radius = Utility.dist(x, y, p.getX(), p.getY());
-		}*/
-		circle.setCenterX(x);
-		circle.setCenterY(y);
-		circle.setRadius(radius);
-		circle.setStrokeWidth(StrokeWidth);
-		circle.setStroke(color);
-		for(int i = 0; i < children.size(); i++)
+	/**
+	 * Writes the Asymptote code that defines this circle, without drawing it.
+	 * @param n name of the circle in Asymptote
+	 * @return Asymptote definition of the circle
+	 */
+	private String emit(String n)
+	{
+		switch(rule.op)
 		{
-			children.get(i).refresh();
+		case EvaluationTape.CIRCLE:
+			return CIRCLE.emit(this, n);
+		case EvaluationTape.CIRCUMCIRCLE:
+			return CIRCUMCIRCLE.emit(this, n);
+		case EvaluationTape.INCIRCLE:
+			return INCIRCLE.emit(this, n);
 		}
+		return "";
 	}
 
-	public void refreshName()
+	int opcode()
 	{
-		String d1 = dependencies.get(0).getName();
-		String d2 = dependencies.get(1).getName();
-		if(type == CIRCLE_TYPE.CIRCLE)
-		{
-			label.setText("circ"+d1+SEPARATOR+d2);
-		}
-		else if(type == CIRCLE_TYPE.CIRCUMCIRCLE)
-		{
-			label.setText("cc"+d1+SEPARATOR+d2+SEPARATOR+dependencies.get(2).getName());
-		}
-		else if(type == CIRCLE_TYPE.INCIRCLE)
-		{
-			label.setText("ic"+d1+SEPARATOR+d2+SEPARATOR+dependencies.get(2).getName());
-		}
-		/*else if(type == CIRCLE_TYPE.TANGENT_CIRCLE)
-		{
-			label.setText("tc"+d1+SEPARATOR+d2+SEPARATOR+dependencies.get(2).getName());
-		}*/
-		for(Shape s : children) s.refreshName();
+		return rule.op;
 	}
 
-	public javafx.scene.shape.Circle getObject()
+	protected boolean isFinite()
 	{
-		return circle;
+		return Double.isFinite(x) && Double.isFinite(y) && Double.isFinite(radius);
+	}
+
+	public double distance(double x, double y)
+	{
+		return Math.abs(getRadius()-Utility.dist(x, y, getCenterX(), getCenterY()));
+	}
+
+	protected String deriveName()
+	{
+		return rule.name(this);
 	}
 
 	public String toString()
@@ -246,58 +338,13 @@ public class Circle extends Shape
 
 	public String toAsymptote()
 	{
-		if(!inAsyCode) return "";
+		if(!isDefined()) return "";
 		String n = getName();
-		String hex = "c"+Utility.hex(color);
-		if(type == CIRCLE_TYPE.CIRCLE)
-		{
-			String p1 = dependencies.get(0).getName();
-			String p2 = dependencies.get(1).getName();
-			String s = "path " + n + " = Circle(" + p1 + ", abs(" + p1 + "-" + p2 + "));\npair " + n + "center = " + p1 + "; real " + n + "rad = abs(" + p1 + " - " + p2 + "); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		else if(type == CIRCLE_TYPE.CIRCUMCIRCLE)
-		{
-			String p1 = dependencies.get(0).getName();
-			String p2 = dependencies.get(1).getName();
-			String p3 = dependencies.get(2).getName();
-			String s = "path " + n + " = circumcircle(" + p1 + ", " + p2 + ", " + p3 + ");\npair " + n + "center = circumcenter(" + p1 + ", " + p2 + ", " + p3 + "); real " + n + "rad = circumradius(" + p1 + ", " + p2 + ", " + p3 + "); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		else if(type == CIRCLE_TYPE.INCIRCLE)
-		{
-			String p1 = dependencies.get(0).getName();
-			String p2 = dependencies.get(1).getName();
-			String p3 = dependencies.get(2).getName();
-			String s = "path " + n + " = incircle(" + p1 + ", " + p2 + ", " + p3 + ");\npair " + n + "center = incenter(" + p1 + ", " + p2 + ", " + p3 + "); real " + n + "rad = inradius(" + p1 + ", " + p2 + ", " + p3 + "); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		/*else if(type == CIRCLE_TYPE.TANGENT_CIRCLE)
-		{
-			String c1 = dependencies.get(0).getName();
-			String c2 = dependencies.get(1).getName();
-			String p = dependencies.get(2).getName();
-			
-			int id = (identifier ? -1 : 1);
-			
-			String ce1 = c1 + "center", ce2 = c2 + "center";
-			String r1 = c1 + "rad", r2 = c2 + "rad";
-			
-			String s = "pair " + p + "_" + c1 + "_" + c2 + "_auxPt" + (id+1) + " = " + p + " + " + id + " * " + r2 + " / " + r1 + " * (" + ce1 + " - " + p +"); pair " + p + "_" + c1 + "_" + c2 + "_mid = ((" +ce2 + " + " + p + "_" + c1 + "_" + c2 + "_auxPt" + (id+1) + ")/2);\n";
-			s += "pair " + p + "_" + c1 + "_" + c2 + "_tccenter = extension(unit(rotate(90," + p + "_" + c1 + "_" + c2 + "_mid)*" + ce2 + "-" + p + "_" + c1 + "_" + c2 + "_mid)" + " + " + p + "_" + c1 + "_" + c2 + "_mid" + ", unit(rotate(270," + p + "_" + c1 + "_" + c2 + "_mid)*" + ce2 + "-" + p + "_" + c1 + "_" + c2 + "_mid)" + " + " + p + "_" + c1 + "_" + c2 + "_mid" + ", " + ce1 + ", " + p + ");\n";
-			s += "path " + n + " = circle(" + p + "_" + c1 + "_" + c2 + "_tccenter, abs(" + p + "_" + c1 + "_" + c2 + "_tccenter - " + p + ")); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}*/
-
-		return null;
+		String hex = "c"+color;
+		String s = emit(n);
+		if(!hide) s+="draw(" + n + ", " + hex + ");\n";
+		else s+="\n";
+		return s;
 	}
 
 }
@@ -0,0 +1,116 @@
+package asypad.shapes;
+
+import java.util.Arrays;
+
+import asypad.shapes.types.CIRCLE_TYPE;
+import asypad.shapes.types.LINE_TYPE;
+import asypad.shapes.types.POINT_TYPE;
+import asypad.shapes.types.SHAPE_TYPE;
+
+/**
+ * Structural key of a shape that is computed from other shapes: its type, its dependencies and its identifier.
+ * Two shapes with equal constructions always have the same geometry, so a diagram only needs one of them.
+ * Dependencies whose order does not matter, such as the points of a circumcircle, are put into a canonical order.
+ * The points of a line keep their order, since they give the line its direction, which points on the line are located by.
+ * @author Raymond Feng
+ */
+final class Construction
+{
+	/**
+	 * Type of the shape.
+	 */
+	private SHAPE_TYPE type;
+
+	/**
+	 * Dependencies of the shape in canonical order.
+	 */
+	private Shape[] dependencies;
+
+	/**
+	 * Identifier that distinguishes between 2 possible results.
+	 */
+	private boolean identifier;
+
+	/**
+	 * Hash code of the construction.
+	 */
+	private int hash;
+
+	/**
+	 * Creates the construction of a shape.
+	 * @param s shape
+	 */
+	private Construction(Shape s)
+	{
+		type = s.getType();
+		dependencies = s.getDependencies().toArray(new Shape[s.getDependencies().size()]);
+		if(s instanceof Point) identifier = ((Point) s).getIdentifier();
+		else if(s instanceof Line) identifier = ((Line) s).getIdentifier();
+		if(type == POINT_TYPE.MIDPOINT || type == CIRCLE_TYPE.CIRCUMCIRCLE || type == CIRCLE_TYPE.INCIRCLE
+				|| (type == POINT_TYPE.INTERSECTION_POINT && dependencies[0] instanceof Line && dependencies[1] instanceof Line))
+		{
+			sort(0, dependencies.length);
+		}
+		else if(type == LINE_TYPE.ANGLE_BISECTOR)
+		{
+			//the angle is the same from either side
+			if(System.identityHashCode(dependencies[0]) > System.identityHashCode(dependencies[2]))
+			{
+				Shape t = dependencies[0];
+				dependencies[0] = dependencies[2];
+				dependencies[2] = t;
+			}
+		}
+		hash = 31*(31*type.hashCode()+Arrays.hashCode(dependencies))+(identifier ? 1 : 0);
+	}
+
+	/**
+	 * Creates the construction of a shape.
+	 * @param s shape
+	 * @return the construction, or null if the shape is not computed from other shapes, e.g. a free point or a point on a shape
+	 */
+	static Construction of(Shape s)
+	{
+		if(s.getType() == POINT_TYPE.POINT || s.getType() == POINT_TYPE.POINT_ON_SHAPE || s.getType() == POINT_TYPE.RELATIVE_POINT)
+		{
+			return null;
+		}
+		return new Construction(s);
+	}
+
+	/**
+	 * Sorts a range of the dependencies by identity hash code.
+	 * Shapes with the same hash code keep their order, which at worst makes 2 equivalent constructions unequal.
+	 * @param from first index
+	 * @param to index after the last
+	 */
+	private void sort(int from, int to)
+	{
+		for(int i = from+1; i < to; i++)
+		{
+			for(int j = i; j > from && System.identityHashCode(dependencies[j-1]) > System.identityHashCode(dependencies[j]); j--)
+			{
+				Shape t = dependencies[j];
+				dependencies[j] = dependencies[j-1];
+				dependencies[j-1] = t;
+			}
+		}
+	}
+
+	public boolean equals(Object o)
+	{
+		if(!(o instanceof Construction)) return false;
+		Construction c = (Construction) o;
+		if(type != c.type || identifier != c.identifier || dependencies.length != c.dependencies.length) return false;
+		for(int i = 0; i < dependencies.length; i++)
+		{
+			if(dependencies[i] != c.dependencies[i]) return false;
+		}
+		return true;
+	}
+
+	public int hashCode()
+	{
+		return hash;
+	}
+}
@@ -0,0 +1,249 @@
+package asypad.shapes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Propagation engine that keeps the shapes of a diagram in topological (dependency level) order
+ * and recomputes each affected shape exactly once after a change.
+ * @author Raymond Feng
+ */
+public class DependencyGraph
+{
+	/**
+	 * Orders shapes by dependency level. Since a shape's level is always greater than the levels of its dependencies,
+	 * this is a topological order of the dependency graph.
+	 */
+	private static final Comparator<Shape> BY_LEVEL = new Comparator<Shape>()
+	{
+		public int compare(Shape s1, Shape s2)
+		{
+			return Integer.compare(s1.getLevel(), s2.getLevel());
+		}
+	};
+
+	/**
+	 * Shapes in topological order. Shapes of the same level are kept in insertion order.
+	 */
+	private ArrayList<Shape> order;
+
+	/**
+	 * The order compiled into an evaluation tape, or null if the graph has changed since it was compiled.
+	 */
+	private EvaluationTape tape;
+
+	/**
+	 * Creates an empty DependencyGraph.
+	 */
+	public DependencyGraph()
+	{
+		order = new ArrayList<Shape>();
+		tape = null;
+	}
+
+	/**
+	 * Adds a shape to the graph, keeping the topological order.
+	 * @param s shape to add
+	 */
+	public void add(Shape s)
+	{
+		order.add(upperBound(s.getLevel()), s);
+		tape = null;
+	}
+
+	/**
+	 * Removes a shape from the graph.
+	 * @param s shape to remove
+	 * @return if the shape was in the graph
+	 */
+	public boolean remove(Shape s)
+	{
+		for(int i = lowerBound(s.getLevel()); i < order.size() && order.get(i).getLevel() == s.getLevel(); i++)
+		{
+			if(order.get(i) == s)
+			{
+				order.remove(i);
+				tape = null;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all shapes from the graph.
+	 */
+	public void clear()
+	{
+		order.clear();
+		tape = null;
+	}
+
+	/**
+	 * Returns the shapes of the graph in topological order. The returned list should not be modified.
+	 * @return shapes in topological order
+	 */
+	public List<Shape> getOrder()
+	{
+		return Collections.unmodifiableList(order);
+	}
+
+	/**
+	 * Returns the highest dependency level in the graph.
+	 * @return highest dependency level, or -1 if the graph is empty
+	 */
+	public int getMaxLevel()
+	{
+		if(order.isEmpty()) return -1;
+		return order.get(order.size()-1).getLevel();
+	}
+
+	/**
+	 * Returns the graph compiled into an evaluation tape. The tape is only compiled again after shapes are added or removed.
+	 * @return evaluation tape of the graph
+	 */
+	public EvaluationTape getTape()
+	{
+		if(tape == null) tape = new EvaluationTape(order);
+		return tape;
+	}
+
+	/**
+	 * Recomputes every shape in the graph exactly once, in topological order, by running the evaluation tape.
+	 */
+	public void refreshAll()
+	{
+		EvaluationTape t = getTape();
+		t.load();
+		t.evaluate();
+		t.store();
+	}
+
+	/**
+	 * Recomputes the changed shapes and all of their descendants. Each affected shape is recomputed exactly once,
+	 * after all of its dependencies.
+	 * @param changed shapes that have changed
+	 */
+	public static void propagate(Shape... changed)
+	{
+		evaluate(affected(changed));
+	}
+
+	/**
+	 * Marks the changed shapes and all of their descendants as stale, without recomputing anything.
+	 * The descendants of a stale shape are always stale, so the search stops at shapes that are already stale.
+	 * @param changed shapes that have changed
+	 */
+	public static void invalidate(Shape... changed)
+	{
+		ArrayDeque<Shape> stack = new ArrayDeque<Shape>();
+		for(Shape s : changed)
+		{
+			s.stale = true;
+			stack.push(s);
+		}
+		while(!stack.isEmpty())
+		{
+			Shape s = stack.pop();
+			for(Shape child : s.getChildren())
+			{
+				if(!child.stale)
+				{
+					child.stale = true;
+					stack.push(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the changed shapes and all of their descendants, in topological order.
+	 * @param changed shapes that have changed
+	 * @return the affected shapes in topological order
+	 */
+	public static ArrayList<Shape> affected(Shape... changed)
+	{
+		return affected(Arrays.asList(changed));
+	}
+
+	/**
+	 * Finds the changed shapes and all of their descendants, in topological order.
+	 * @param changed shapes that have changed
+	 * @return the affected shapes in topological order
+	 */
+	public static ArrayList<Shape> affected(Collection<? extends Shape> changed)
+	{
+		HashSet<Shape> visited = new HashSet<Shape>();
+		ArrayDeque<Shape> stack = new ArrayDeque<Shape>();
+		ArrayList<Shape> affected = new ArrayList<Shape>();
+		for(Shape s : changed)
+		{
+			if(visited.add(s)) stack.push(s);
+		}
+		while(!stack.isEmpty())
+		{
+			Shape s = stack.pop();
+			affected.add(s);
+			for(Shape child : s.getChildren())
+			{
+				if(visited.add(child)) stack.push(child);
+			}
+		}
+		Collections.sort(affected, BY_LEVEL);
+		return affected;
+	}
+
+	/**
+	 * Recomputes the given shapes once each, in the given order.
+	 * @param shapes shapes in topological order
+	 */
+	public static void evaluate(List<Shape> shapes)
+	{
+		for(int i = 0; i < shapes.size(); i++)
+		{
+			Shape s = shapes.get(i);
+			s.stale = false;
+			s.evaluate();
+		}
+	}
+
+	/**
+	 * Index of the first shape in the order with a level of at least {@code level}.
+	 * @param level dependency level
+	 * @return index of the first shape with level &gt;= {@code level}
+	 */
+	private int lowerBound(int level)
+	{
+		int lo = 0, hi = order.size();
+		while(lo < hi)
+		{
+			int mid = (lo+hi)/2;
+			if(order.get(mid).getLevel() < level) lo = mid+1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Index of the first shape in the order with a level greater than {@code level}.
+	 * @param level dependency level
+	 * @return index of the first shape with level &gt; {@code level}
+	 */
+	private int upperBound(int level)
+	{
+		int lo = 0, hi = order.size();
+		while(lo < hi)
+		{
+			int mid = (lo+hi)/2;
+			if(order.get(mid).getLevel() <= level) lo = mid+1;
+			else hi = mid;
+		}
+		return lo;
+	}
+}
@@ -0,0 +1,889 @@
+package asypad.shapes;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import asypad.shapes.command.*;
+import asypad.shapes.types.POINT_TYPE;
+
+/**
+ * The model of an AsyPad diagram: its shapes in dependency order and the commands that built them.
+ * A Diagram does not depend on JavaFX, so it can be loaded and converted to Asymptote without a display.
+ * @author Raymond Feng
+ */
+public class Diagram
+{
+	/**
+	 * Version number of AsyPad.
+	 */
+	public static final String VERSION = "2.0";
+
+	/**
+	 * Default width of the drawing area.
+	 */
+	public static final double DEFAULT_WIDTH = 1000;
+
+	/**
+	 * Default height of the drawing area.
+	 */
+	public static final double DEFAULT_HEIGHT = 700;
+
+	/**
+	 * Default asymptote unit size.
+	 */
+	public static final double DEFAULT_ASY_UNIT_SIZE = 1;
+
+	/**
+	 * Default number of drawn shapes above which the shapes are drawn onto a single canvas instead of as separate nodes.
+	 */
+	public static final double DEFAULT_CANVAS_THRESHOLD = 2000;
+
+	/**
+	 * Default size on the screen, in pixels, of one unit of the Asymptote drawing below which labels are hidden.
+	 */
+	public static final double DEFAULT_LABEL_THRESHOLD = 40;
+
+	/**
+	 * Default size on the screen, in pixels, below which lines and circles are not drawn.
+	 */
+	public static final double DEFAULT_DETAIL_THRESHOLD = 1;
+
+	/**
+	 * Left of the drawing area, in the coordinates of the diagram.
+	 */
+	public static double CurrentLeft = 0;
+
+	/**
+	 * Top of the drawing area, in the coordinates of the diagram.
+	 */
+	public static double CurrentTop = 0;
+
+	/**
+	 * Current width of the drawing area, in the coordinates of the diagram.
+	 */
+	public static double CurrentWidth = DEFAULT_WIDTH;
+
+	/**
+	 * Current height of the drawing area, in the coordinates of the diagram.
+	 */
+	public static double CurrentHeight = DEFAULT_HEIGHT;
+
+	/**
+	 * Unit size for Asymptote conversion.
+	 */
+	public static double AsyUnitSize = DEFAULT_ASY_UNIT_SIZE;
+
+	/**
+	 * Number of drawn shapes above which the shapes are drawn onto a single canvas. 0 always draws onto the canvas,
+	 * and infinity never does.
+	 */
+	public static double CanvasThreshold = DEFAULT_CANVAS_THRESHOLD;
+
+	/**
+	 * Size on the screen, in pixels, of one unit of the Asymptote drawing (100 units of the diagram) below which labels are hidden,
+	 * so that labels are not drawn once the view is zoomed out far enough for them to crowd the shapes.
+	 */
+	public static double LabelThreshold = DEFAULT_LABEL_THRESHOLD;
+
+	/**
+	 * Size on the screen, in pixels, below which lines and circles are not drawn, e.g. a segment that is shorter than it.
+	 */
+	public static double DetailThreshold = DEFAULT_DETAIL_THRESHOLD;
+
+	/**
+	 * Default point names up to this length are tracked in {@code usedPointNames}, longer ones are looked up by name.
+	 */
+	private static final int TRACKED_NAME_LENGTH = 3;
+
+	/**
+	 * Orders drawn shapes in the order that they were drawn, which is their order in {@link #getShapes()}.
+	 */
+	public static final Comparator<Shape> DRAW_ORDER = new Comparator<Shape>()
+	{
+		public int compare(Shape s1, Shape s2)
+		{
+			return Integer.compare(s1.drawOrder, s2.drawOrder);
+		}
+	};
+
+	/**
+	 * ArrayList of all drawn Shapes.
+	 */
+	private ArrayList<Shape> shapes;
+
+	/**
+	 * Drawn points keyed by their name, so that they can be looked up without going through all of the shapes.
+	 * If several drawn points share a name, the one that had it first is kept.
+	 */
+	private HashMap<String, Shape> names;
+
+	/**
+	 * Drawn shapes whose names are derived from their dependencies, keyed by their name. Renaming a point can change
+	 * the derived names of any number of shapes, so this is only built again when it is used after a rename.
+	 */
+	private HashMap<String, Shape> derivedNames;
+
+	/**
+	 * Number of times that a drawn shape has been renamed. Derived names are only built again when they are read after a rename.
+	 */
+	int renames;
+
+	/**
+	 * Value of {@code renames} when {@code derivedNames} was last built.
+	 */
+	private int derivedStamp;
+
+	/**
+	 * Default point names that are taken by drawn shapes, by their position in the sequence of default point names.
+	 */
+	private BitSet usedPointNames;
+
+	/**
+	 * Position of the first default point name that is not taken.
+	 */
+	private int firstFreePointName;
+
+	/**
+	 * Number of times that a shape has been drawn in this diagram.
+	 */
+	private int drawCount;
+
+	/**
+	 * Topological order of the drawn Shapes, used for propagation and all passes over the whole diagram.
+	 */
+	private DependencyGraph graph;
+
+	/**
+	 * Drawn shapes that are computed from other shapes, keyed by their construction, so that equivalent constructions are only drawn once.
+	 */
+	private HashMap<Construction, Shape> constructions;
+
+	/**
+	 * Names of equivalent constructions that were merged into a drawn shape while loading a file.
+	 */
+	private HashMap<String, Shape> aliases;
+
+	/**
+	 * ArrayList of commands that stores previous states of the Diagram for undo/redo.
+	 */
+	private ArrayList<Command> commands;
+
+	/**
+	 * The index that points to the position of the last command in the Diagram.
+	 */
+	private int currentCommandIndex;
+
+	/**
+	 * Number of transactions that have been begun but not committed.
+	 */
+	private int transactionDepth;
+
+	/**
+	 * Shapes that have changed during the open transaction.
+	 */
+	private LinkedHashSet<Shape> changed;
+
+	/**
+	 * If the whole diagram has to be updated when the open transaction is committed.
+	 */
+	private boolean updatePending;
+
+	/**
+	 * Listeners that are notified of changes to the Diagram.
+	 */
+	private ArrayList<DiagramListener> listeners;
+
+	/**
+	 * Creates an empty Diagram.
+	 */
+	public Diagram()
+	{
+		shapes = new ArrayList<Shape>();
+		names = new HashMap<String, Shape>();
+		derivedNames = new HashMap<String, Shape>();
+		renames = 0;
+		derivedStamp = 0;
+		usedPointNames = new BitSet();
+		firstFreePointName = 1;
+		drawCount = 0;
+		graph = new DependencyGraph();
+		constructions = new HashMap<Construction, Shape>();
+		aliases = new HashMap<String, Shape>();
+		commands = new ArrayList<Command>();
+		currentCommandIndex = -1;
+		transactionDepth = 0;
+		changed = new LinkedHashSet<Shape>();
+		updatePending = false;
+		listeners = new ArrayList<DiagramListener>();
+	}
+
+	/**
+	 * Adds a listener that is notified of changes to the Diagram.
+	 * @param l listener
+	 */
+	public void addListener(DiagramListener l)
+	{
+		listeners.add(l);
+	}
+
+	/**
+	 * Begins a transaction. Until the transaction is committed, changes to the coordinates, colors, visibility, names
+	 * and label directions of the shapes are collected instead of reported, and {@code update()} only removes deleted shapes.
+	 * Transactions may be nested, in which case only the outermost commit takes effect.
+	 */
+	public void beginTransaction()
+	{
+		transactionDepth++;
+	}
+
+	/**
+	 * Commits a transaction. If {@code update()} was called during the transaction, the whole diagram is recomputed once
+	 * and listeners are told that the diagram was updated. Otherwise the listeners receive the changed shapes and their descendants once.
+	 */
+	public void commitTransaction()
+	{
+		if(transactionDepth == 0) throw new IllegalStateException("No transaction to commit.");
+		transactionDepth--;
+		if(transactionDepth > 0) return;
+		if(updatePending)
+		{
+			updatePending = false;
+			changed.clear();
+			graph.refreshAll();
+			for(DiagramListener l : listeners) l.diagramUpdated();
+		}
+		else if(!changed.isEmpty())
+		{
+			ArrayList<Shape> affected = DependencyGraph.affected(changed);
+			changed.clear();
+			fireShapesChanged(affected);
+		}
+	}
+
+	/**
+	 * Notifies the listeners that shapes have changed.
+	 * @param affected the changed shapes and all of their descendants, in dependency order
+	 */
+	void fireShapesChanged(List<Shape> affected)
+	{
+		for(DiagramListener l : listeners) l.shapesChanged(affected);
+	}
+
+	/**
+	 * If a transaction is open.
+	 * @return if a transaction is open
+	 */
+	public boolean isInTransaction()
+	{
+		return transactionDepth > 0;
+	}
+
+	/**
+	 * Records a changed shape in the open transaction. Changes outside of a transaction are not recorded.
+	 * @param s changed shape
+	 */
+	void record(Shape s)
+	{
+		if(transactionDepth > 0) changed.add(s);
+	}
+
+	/**
+	 * Returns the shapes in this diagram, in the order they were drawn.
+	 * @return shapes
+	 */
+	public ArrayList<Shape> getShapes()
+	{
+		return shapes;
+	}
+
+	/**
+	 * Returns the shapes in this diagram in dependency order.
+	 * @return shapes in dependency order
+	 */
+	public List<Shape> getOrder()
+	{
+		return graph.getOrder();
+	}
+
+	/**
+	 * Returns the shapes in this diagram compiled into an evaluation tape, e.g. for evaluating many configurations of the free points.
+	 * @return evaluation tape of the diagram
+	 */
+	public EvaluationTape getTape()
+	{
+		return graph.getTape();
+	}
+
+	/**
+	 * Adds a new shape to this diagram, checking whether a shape with the same name or an equivalent construction
+	 * already exists and adding a draw command into the command list.
+	 * @param shape shape to add
+	 * @return if the shape was added
+	 */
+	public boolean addShape(Shape shape)
+	{
+		if(isDuplicateName(shape.getName()) || findEquivalent(shape) != null) return false;
+		addCommand(new DrawCommand(shape));
+		return addShape(shape, true);
+	}
+
+	/**
+	 * Adds a new shape to this diagram with the option to bypass checks and adding the command
+	 * @param shape shape to add
+	 * @param bypass whether checks and adding command should be bypassed
+	 * @return if the shape was added
+	 */
+	public boolean addShape(Shape shape, boolean bypass)
+	{
+		if(!bypass) return addShape(shape);
+		shapes.add(shape);
+		graph.add(shape);
+		shape.link();
+		shape.diagram = this;
+		shape.nameStamp = -1;
+		shape.drawOrder = drawCount++;
+		index(shape);
+		Construction c = Construction.of(shape);
+		if(c != null && !constructions.containsKey(c)) constructions.put(c, shape);
+		return true;
+	}
+
+	/**
+	 * Finds a drawn shape that is constructed in the same way as the given shape,
+	 * e.g. the same circumcircle with its points in a different order.
+	 * @param shape shape to look for
+	 * @return the equivalent drawn shape, or null if there is none or the shape is not computed from other shapes
+	 */
+	public Shape findEquivalent(Shape shape)
+	{
+		Construction c = Construction.of(shape);
+		if(c == null) return null;
+		Shape s = constructions.get(c);
+		return s == shape ? null : s;
+	}
+
+	/**
+	 * Whether the shape is drawn in this diagram.
+	 * @param shape shape
+	 * @return if the shape is drawn
+	 */
+	public boolean contains(Shape shape)
+	{
+		return shape.diagram == this;
+	}
+
+	/**
+	 * Lets a drawn shape also be found by another name, used when an equivalent construction with that name is merged into it.
+	 * @param name other name of the shape
+	 * @param shape drawn shape
+	 */
+	void alias(String name, Shape shape)
+	{
+		if(!name.equals(shape.getName())) aliases.put(name, shape);
+	}
+
+	/**
+	 * Updates the name index after a drawn shape has been renamed.
+	 * @param shape drawn shape
+	 * @param oldName name of the shape before it was renamed
+	 */
+	void renamed(Shape shape, String oldName)
+	{
+		renames++;
+		unindex(oldName, shape);
+		index(shape);
+	}
+
+	/**
+	 * Adds a drawn shape to the name index, unless another shape already has its name.
+	 * @param shape drawn shape
+	 */
+	private void index(Shape shape)
+	{
+		if(!(shape instanceof Point))
+		{
+			//a stale index is built again with all of the shapes when it is next used
+			if(derivedStamp == renames && !derivedNames.containsKey(shape.getName())) derivedNames.put(shape.getName(), shape);
+			return;
+		}
+		String name = shape.getName();
+		if(names.containsKey(name)) return;
+		names.put(name, shape);
+		int position = pointNamePosition(name);
+		if(position > 0)
+		{
+			usedPointNames.set(position);
+			if(position == firstFreePointName) firstFreePointName = usedPointNames.nextClearBit(position);
+		}
+	}
+
+	/**
+	 * Removes a name from the name index, if it belongs to the given shape.
+	 * @param name name
+	 * @param shape shape that had the name
+	 */
+	private void unindex(String name, Shape shape)
+	{
+		if(!(shape instanceof Point))
+		{
+			if(derivedStamp == renames && derivedNames.get(name) == shape) derivedNames.remove(name);
+			return;
+		}
+		if(names.get(name) != shape) return;
+		names.remove(name);
+		int position = pointNamePosition(name);
+		if(position > 0)
+		{
+			usedPointNames.clear(position);
+			firstFreePointName = Math.min(firstFreePointName, position);
+		}
+	}
+
+	/**
+	 * Returns the index of derived names, building it again if a shape has been renamed since it was last built.
+	 * @return drawn shapes with derived names keyed by their name
+	 */
+	private HashMap<String, Shape> derivedNames()
+	{
+		if(derivedStamp != renames)
+		{
+			derivedNames.clear();
+			for(Shape s : shapes)
+			{
+				if(!(s instanceof Point) && !derivedNames.containsKey(s.getName())) derivedNames.put(s.getName(), s);
+			}
+			derivedStamp = renames;
+		}
+		return derivedNames;
+	}
+
+	/**
+	 * Returns the first default point name that is not taken by a drawn shape.
+	 * The default point names are {@code A, B,..., Z, AA, AB,..., AZ, BA,..., AAA,...}
+	 * @return next available point name
+	 */
+	public String nextPointName()
+	{
+		int position = firstFreePointName;
+		String name = pointName(position);
+		//names that are too long to be tracked are looked up one by one
+		while(name.length() > TRACKED_NAME_LENGTH && isDuplicateName(name))
+		{
+			name = pointName(++position);
+		}
+		return name;
+	}
+
+	/**
+	 * Finds the default point name at a position in the sequence of default point names, which starts with A at position 1.
+	 * @param position position in the sequence
+	 * @return the default point name
+	 */
+	private static String pointName(int position)
+	{
+		String name = "";
+		while(position > 0)
+		{
+			position--;
+			name = (char) ('A'+position%26)+name;
+			position /= 26;
+		}
+		return name;
+	}
+
+	/**
+	 * Finds the position of a name in the sequence of default point names.
+	 * @param name name
+	 * @return the position, or 0 if the name is not a default point name that is tracked
+	 */
+	private static int pointNamePosition(String name)
+	{
+		if(name.length() == 0 || name.length() > TRACKED_NAME_LENGTH) return 0;
+		int position = 0;
+		for(int i = 0; i < name.length(); i++)
+		{
+			char c = name.charAt(i);
+			if(c < 'A' || c > 'Z') return 0;
+			position = 26*position+(c-'A'+1);
+		}
+		return position;
+	}
+
+	/**
+	 * Searches the current shapes in the Diagram for a shape with the given name.
+	 * @param name name of shape to search for
+	 * @return the shape with the given name, or null if it is not found
+	 */
+	public Shape findShapeByName(String name)
+	{
+		Shape s = names.get(name);
+		if(s != null) return s;
+		s = derivedNames().get(name);
+		if(s != null) return s;
+		s = aliases.get(name);
+		if(s != null && contains(s)) return s;
+		return null;
+	}
+
+	/**
+	 * Checks if the given name is shared by a shape that is already drawn.
+	 * @param name name to check
+	 * @return if the name already exists
+	 */
+	public boolean isDuplicateName(String name)
+	{
+		return names.containsKey(name) || derivedNames().containsKey(name);
+	}
+
+	/**
+	 * Clears the Diagram by deleting all shapes and resetting the global variables to their defaults.
+	 */
+	public void clear()
+	{
+		for(Shape s : shapes) s.delete();
+		update();
+		aliases.clear();
+		Shape.StrokeWidth = Shape.DEFAULT_STROKE_WIDTH;
+		AsyUnitSize = DEFAULT_ASY_UNIT_SIZE;
+		CanvasThreshold = DEFAULT_CANVAS_THRESHOLD;
+		LabelThreshold = DEFAULT_LABEL_THRESHOLD;
+		DetailThreshold = DEFAULT_DETAIL_THRESHOLD;
+	}
+
+	/**
+	 * Adds a new command to the Diagram.
+	 * @param c the new command
+	 */
+	public void addCommand(Command c)
+	{
+		while(commands.size()-1 > currentCommandIndex)
+		{
+			commands.remove(commands.size()-1);
+		}
+		commands.add(c);
+		currentCommandIndex++;
+	}
+
+	/**
+	 * Undoes a command in the Diagram.
+	 */
+	public void undo()
+	{
+		beginTransaction();
+		if(currentCommandIndex > -1) currentCommandIndex--;
+		clear();
+		for(int i = 0; i <= currentCommandIndex; i++)
+		{
+			commands.get(i).doAction(this);
+		}
+		update();
+		commitTransaction();
+	}
+
+	/**
+	 * Redoes a command in the Diagram.
+	 */
+	public void redo()
+	{
+		beginTransaction();
+		if(currentCommandIndex < commands.size()-1)
+		{
+			currentCommandIndex++;
+			commands.get(currentCommandIndex).doAction(this);
+		}
+		update();
+		commitTransaction();
+	}
+
+	/**
+	 * Updates the Diagram by deleting all shapes with {@code remove == true}
+	 * (this should be called each time {@code delete()} is called on a shape)
+	 * and refreshing all shapes once each in dependency order.
+	 * During a transaction the refresh is done once, when the transaction is committed.
+	 */
+	public void update()
+	{
+		for(int i = 0; i < shapes.size(); i++)
+		{
+			Shape s = shapes.get(i);
+			if(s.remove())
+			{
+				shapes.remove(i);
+				graph.remove(s);
+				s.unlink();
+				s.diagram = null;
+				unindex(s.getName(), s);
+				Construction c = Construction.of(s);
+				if(c != null && constructions.get(c) == s) constructions.remove(c);
+				i--;
+			}
+		}
+		if(transactionDepth > 0)
+		{
+			updatePending = true;
+			return;
+		}
+		changed.clear();
+		graph.refreshAll();
+		for(DiagramListener l : listeners) l.diagramUpdated();
+	}
+
+	/**
+	 * Translates the entire figure by the given amount.
+	 * @param dx translation in x direction
+	 * @param dy translation in y direction
+	 */
+	public void translate(double dx, double dy)
+	{
+		beginTransaction();
+		for(Shape s : shapes)
+		{
+			//move all dependency level 0 shapes by dx and dy, all children will follow
+			if(s.getLevel() == 0)
+			{
+				Point p = (Point) s;
+				p.setX(p.getX()+dx);
+				p.setY(p.getY()+dy);
+			}
+		}
+		//descendants are only marked as stale, and are recomputed when they are next needed
+		commitTransaction();
+	}
+
+	/**
+	 * Zooms by the specified factor with respect to the specified location
+	 * @param zx x-coordinate of zoom
+	 * @param zy y-coordinate of zoom
+	 * @param factor zoom factor
+	 */
+	public void zoom(double zx, double zy, double factor)
+	{
+		beginTransaction();
+		HashMap<String, Double> targetX = new HashMap<String, Double>();
+		HashMap<String, Double> targetY = new HashMap<String, Double>();
+		//get target locations for all points with degrees of freedom
+		for(Shape s : shapes)
+		{
+			if(s.getLevel() == 0 || s.getType() == POINT_TYPE.POINT_ON_SHAPE)
+			{
+				Point p = (Point) s;
+				targetX.put(p.getName(), zx+factor*(p.getX()-zx));
+				targetY.put(p.getName(), zy+factor*(p.getY()-zy));
+			}
+		}
+
+		//go through points in order of dependency level
+		for(Shape s : graph.getOrder())
+		{
+			if(s.getLevel() == 0 || s.getType() == POINT_TYPE.POINT_ON_SHAPE)
+			{
+				Point p = (Point) s;
+				//zoom all dependency level 0 shapes by factor about zx and zy, all children will follow
+				if(p.getLevel() == 0)
+				{
+					p.setX(targetX.get(p.getName()));
+					p.setY(targetY.get(p.getName()));
+				}
+				//relative location of points on shape doesn't always zoom correctly, so manually fix
+				else
+				{
+					p.setRelativeLocation(targetX.get(p.getName()), targetY.get(p.getName()));
+				}
+			}
+		}
+		//descendants are only marked as stale, and are recomputed when they are next needed
+		commitTransaction();
+	}
+
+	/**
+	 * Loads an AsyPad file into the Diagram, replacing its current contents.
+	 * @param apad file to be loaded
+	 * @throws IOException if the file could not be read
+	 */
+	public void loadApad(File apad) throws IOException
+	{
+		beginTransaction();
+		clear();
+		commands.clear();
+		currentCommandIndex = -1;
+		try(FileReader fr = new FileReader(apad);
+				BufferedReader br = new BufferedReader(fr);)
+		{
+			String currentLine;
+			while((currentLine = br.readLine()) != null)
+			{
+				Command.loadCommand(currentLine, this);
+			}
+		}
+		finally
+		{
+			update();
+			commitTransaction();
+		}
+	}
+
+	/**
+	 * Converts the current state of the Diagram into .apad code for file i/o.
+	 * @return .apad code for current state of the Diagram
+	 */
+	public String toApad()
+	{
+		String apad = "";
+
+		//if global vars are not at default
+		if(Shape.StrokeWidth != Shape.DEFAULT_STROKE_WIDTH)
+		{
+			apad += (new GlobalVariableCommand("StrokeWidth", Shape.StrokeWidth)).toString();
+		}
+		if(AsyUnitSize != DEFAULT_ASY_UNIT_SIZE)
+		{
+			apad += (new GlobalVariableCommand("AsyUnitSize", AsyUnitSize)).toString();
+		}
+		if(CanvasThreshold != DEFAULT_CANVAS_THRESHOLD)
+		{
+			apad += (new GlobalVariableCommand("CanvasThreshold", CanvasThreshold)).toString();
+		}
+		if(LabelThreshold != DEFAULT_LABEL_THRESHOLD)
+		{
+			apad += (new GlobalVariableCommand("LabelThreshold", LabelThreshold)).toString();
+		}
+		if(DetailThreshold != DEFAULT_DETAIL_THRESHOLD)
+		{
+			apad += (new GlobalVariableCommand("DetailThreshold", DetailThreshold)).toString();
+		}
+
+		//shapes are stored in order of dependency level
+		for(Shape s : graph.getOrder())
+		{
+			//draw command for the shape
+			DrawCommand draw = new DrawCommand(s);
+			apad += draw.toString();
+
+			//set hidden and color for the shape
+			if(s.isHidden())
+			{
+				apad += (new HideCommand(s)).toString();
+			}
+			if(!s.getColor().equals(Shape.DEFAULT_COLOR))
+			{
+				apad += (new ColorCommand(s, s.getColor())).toString();
+			}
+
+			//set label direction for points
+			if(s instanceof Point)
+			{
+				Point p = (Point) s;
+				double dir = p.getLabelDirection();
+				//only add the command if it has been changed from the default value
+				if(!Utility.equal(dir, Shape.DEFAULT_LABEL_DIRECTION)) apad += (new DragCommand(p, dir)).toString();
+			}
+		}
+		return apad;
+	}
+
+	/**
+	 * Converts the current state of the Diagram into Asymptote code, clipped to the drawing area
+	 * given by {@code CurrentLeft}, {@code CurrentTop}, {@code CurrentWidth} and {@code CurrentHeight}.
+	 * @return Asymptote code representing the current state
+	 */
+	public String toAsymptote()
+	{
+		//shapes that are not defined, e.g. non-existent intersections and tangent lines, are left out along with everything that depends on them
+		String asy = "// Generated By AsyPadv" + VERSION + "\n";
+		asy+="import olympiad;\nimport markers;\nimport math;\nimport graph;\n";
+		asy+="// change the unit size to fit your needs\n";
+		asy+="unitsize(" + AsyUnitSize + "cm);\n";
+
+		ArrayList<String> colors = new ArrayList<String>();
+		for(Shape s : shapes)
+		{
+			if(s.isDefined())
+			{
+				String c = s.getColor();
+				if(!colors.contains(c))
+				{
+					colors.add(c);
+				}
+			}
+		}
+		asy+="// colored pens\n";
+		for(String color : colors)
+		{
+			asy+="pen c" + color + " = rgb(\"" + color + "\");\n";
+		}
+
+		int MAXLVL = 0;
+		for(Shape s : shapes)
+		{
+			if(s.getLevel() > MAXLVL && s.isDefined()) MAXLVL = s.getLevel();
+		}
+		//shapes are stored in order of dependency level, so a single pass writes out each level in turn
+		int level = -1;
+		for(Shape s : graph.getOrder())
+		{
+			if(s.getLevel() > MAXLVL) break;
+			while(level < s.getLevel())
+			{
+				level++;
+				asy += dependencyLevelHeader(level);
+			}
+			asy += s.toAsymptote();
+		}
+		while(level < MAXLVL)
+		{
+			level++;
+			asy += dependencyLevelHeader(level);
+		}
+		resetPointPrimeNames();
+		double xmin = 0;
+		double xmax = CurrentWidth/100;
+		double ymin = 0;
+		double ymax = CurrentHeight/100;
+		asy+="// clip the drawing view\n";
+		asy+="clip((" + xmin + ", " + ymin + ")--(" + xmin + ", " + ymax + ")--(" + xmax + ", " + ymax + ")--(" + xmax + ", " + ymin + ")--cycle);";
+		return asy;
+	}
+
+	/**
+	 * Returns the Asymptote comment that starts the given dependency level.
+	 * @param level dependency level
+	 * @return comment for the dependency level
+	 */
+	private String dependencyLevelHeader(int level)
+	{
+		String header = "// dependency level " + level + "\n";
+		if(level == 0)
+		{
+			header += "/* You can change the coordinates of these points of dependency level 0.\n "
+					+ "The drawing will retain the same relationships and qualities.\n "
+					+ "Please be aware that as a result of this some of the image may be clipped off. */\n";
+		}
+		if(level == 1)
+		{
+			header += "// Do not change anything below, unless you are experienced in Asymptote.\n";
+		}
+		return header;
+	}
+
+	/**
+	 * Reverts the Asymptote-safe names given to primed points during conversion.
+	 */
+	private void resetPointPrimeNames()
+	{
+		for(Shape s : shapes)
+		{
+			if(s instanceof Point && s.getName().length() == 2 && s.getName().charAt(1) == 'p')
+			{
+				s.setName(""+s.getName().charAt(0)+'\'');
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package asypad.shapes;
+
+import java.util.List;
+
+/**
+ * Listener that is notified when the shapes of a diagram change, e.g. to keep a view of the diagram in sync.
+ * @author Raymond Feng
+ */
+public interface DiagramListener
+{
+	/**
+	 * Called once when a transaction that changed shapes is committed.
+	 * @param changed the changed shapes and all of their descendants, in dependency order
+	 */
+	void shapesChanged(List<Shape> changed);
+
+	/**
+	 * Called when shapes may have been added or removed, and the whole diagram has been recomputed.
+	 */
+	void diagramUpdated();
+}
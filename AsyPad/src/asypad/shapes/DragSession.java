@@ -0,0 +1,137 @@
+package asypad.shapes;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import asypad.shapes.types.POINT_TYPE;
+
+/**
+ * A point being dragged around a diagram. The shapes that depend on the point and the order to recompute them in
+ * are found once when the drag starts and compiled into an evaluation tape, so each move of the point only evaluates that part of the diagram.
+ * Hidden shapes that no shown shape depends on are left out of the tape and only marked as stale, so they are recomputed when they are read.
+ * The structure of the diagram must not change while the session is in use.
+ * @author Raymond Feng
+ */
+public class DragSession
+{
+	/**
+	 * Diagram that the point is in.
+	 */
+	private Diagram diagram;
+
+	/**
+	 * The dragged point.
+	 */
+	private Point point;
+
+	/**
+	 * The point and all of its descendants, in topological order.
+	 */
+	private ArrayList<Shape> affected;
+
+	/**
+	 * The affected shapes that are hidden and have no shown descendants, which are not evaluated by the tape.
+	 */
+	private Shape[] deferred;
+
+	/**
+	 * The affected shapes compiled into a tape, with the shapes they depend on as inputs.
+	 */
+	private EvaluationTape tape;
+
+	/**
+	 * Index of the point in the tape.
+	 */
+	private int index;
+
+	/**
+	 * Starts dragging a point.
+	 * @param diagram diagram that the point is in
+	 * @param point point to drag, which must be a free point or a point on a shape
+	 */
+	public DragSession(Diagram diagram, Point point)
+	{
+		if(point.getType() != POINT_TYPE.POINT && point.getType() != POINT_TYPE.POINT_ON_SHAPE)
+		{
+			throw new IllegalArgumentException(point.getName() + " cannot be dragged.");
+		}
+		this.diagram = diagram;
+		this.point = point;
+		affected = DependencyGraph.affected(point);
+		//going backwards, the children of a shape are decided before the shape itself
+		HashSet<Shape> shown = new HashSet<Shape>();
+		ArrayList<Shape> hidden = new ArrayList<Shape>();
+		for(int i = affected.size()-1; i >= 0; i--)
+		{
+			Shape s = affected.get(i);
+			boolean needed = s == point || !s.isHidden();
+			for(Shape child : s.getChildren())
+			{
+				if(shown.contains(child)) needed = true;
+			}
+			if(needed) shown.add(s);
+			else hidden.add(s);
+		}
+		deferred = hidden.toArray(new Shape[hidden.size()]);
+		ArrayList<Shape> evaluated = new ArrayList<Shape>();
+		for(Shape s : affected)
+		{
+			if(shown.contains(s)) evaluated.add(s);
+		}
+		HashSet<Shape> slice = new HashSet<Shape>(evaluated);
+		HashSet<Shape> seen = new HashSet<Shape>();
+		ArrayList<Shape> inputs = new ArrayList<Shape>();
+		for(Shape s : evaluated)
+		{
+			for(Shape d : s.getDependencies())
+			{
+				if(!slice.contains(d) && seen.add(d)) inputs.add(d);
+			}
+		}
+		tape = new EvaluationTape(inputs, evaluated);
+		index = tape.indexOf(point);
+	}
+
+	/**
+	 * Moves the point to the location of the mouse and recomputes the shapes that depend on it.
+	 * A point on a shape is moved to the location on its shape that is closest to the mouse.
+	 * @param cx current x-coordinate
+	 * @param cy current y-coordinate
+	 */
+	public void moveTo(double cx, double cy)
+	{
+		if(point.getType() == POINT_TYPE.POINT)
+		{
+			point.setLocation(cx, cy);
+			tape.setPoint(index, cx, cy);
+		}
+		else
+		{
+			point.updateRelativeLocation(cx, cy);
+			tape.setParam(index, point.getRelativeLocation());
+		}
+		tape.evaluate();
+		tape.store();
+		DependencyGraph.invalidate(deferred);
+		diagram.fireShapesChanged(affected);
+	}
+
+	/**
+	 * Returns the dragged point.
+	 * @return the point
+	 */
+	public Point getPoint()
+	{
+		return point;
+	}
+
+	/**
+	 * Returns the point and all of its descendants, in topological order. The returned list should not be modified.
+	 * @return the shapes changed by each move
+	 */
+	public List<Shape> getAffected()
+	{
+		return affected;
+	}
+}
@@ -0,0 +1,643 @@
+package asypad.shapes;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The dependency graph of a diagram compiled into a flat list of instructions (an opcode and the indices of its operands)
+ * that evaluates into primitive arrays indexed by the shape's position in the topological order.
+ * Points store their location in {@code x, y}, lines store their anchor in {@code x, y}, their second point in {@code x2, y2}
+ * and their direction in {@code dx, dy} (see {@link Line}), and circles store their center in {@code x, y} and their radius in {@code r}.
+ * A tape only has to be compiled again when shapes are added or removed.
+ * Shapes of the same dependency level never depend on each other, so levels with at least {@link #ParallelThreshold} shapes
+ * are evaluated in parallel, one level after another.
+ * @author Raymond Feng
+ */
+public class EvaluationTape
+{
+	/**
+	 * Opcode for a shape that is not computed from its dependencies, i.e. a free point.
+	 */
+	static final int INPUT = 0;
+
+	/**
+	 * Opcode for a point on a line.
+	 */
+	static final int POINT_ON_LINE = 1;
+
+	/**
+	 * Opcode for a point on a circle.
+	 */
+	static final int POINT_ON_CIRCLE = 2;
+
+	/**
+	 * Opcode for the intersection point of 2 lines.
+	 */
+	static final int LINE_LINE_INTERSECTION = 3;
+
+	/**
+	 * Opcode for an intersection point of a line and a circle.
+	 */
+	static final int LINE_CIRCLE_INTERSECTION = 4;
+
+	/**
+	 * Opcode for an intersection point of 2 circles.
+	 */
+	static final int CIRCLE_CIRCLE_INTERSECTION = 5;
+
+	/**
+	 * Opcode for the midpoint of 2 points.
+	 */
+	static final int MIDPOINT = 6;
+
+	/**
+	 * Opcode for a segment between 2 points.
+	 */
+	static final int SEGMENT = 7;
+
+	/**
+	 * Opcode for a line through 2 points.
+	 */
+	static final int LINE = 8;
+
+	/**
+	 * Opcode for a line through a point parallel to a line.
+	 */
+	static final int PARALLEL_LINE = 9;
+
+	/**
+	 * Opcode for a line through a point perpendicular to a line.
+	 */
+	static final int PERPENDICULAR_LINE = 10;
+
+	/**
+	 * Opcode for an angle bisector.
+	 */
+	static final int ANGLE_BISECTOR = 11;
+
+	/**
+	 * Opcode for a perpendicular bisector.
+	 */
+	static final int PERPENDICULAR_BISECTOR = 12;
+
+	/**
+	 * Opcode for a line through a point tangent to a circle.
+	 */
+	static final int TANGENT_LINE = 13;
+
+	/**
+	 * Opcode for a circle with a center and a point on it.
+	 */
+	static final int CIRCLE = 14;
+
+	/**
+	 * Opcode for a circumcircle.
+	 */
+	static final int CIRCUMCIRCLE = 15;
+
+	/**
+	 * Opcode for an incircle.
+	 */
+	static final int INCIRCLE = 16;
+
+	/**
+	 * Default minimum number of shapes in a level for the level to be evaluated in parallel.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+	/**
+	 * Number of instructions below which a parallel task is no longer split.
+	 */
+	private static final int GRAIN = 1024;
+
+	/**
+	 * Minimum number of shapes in a level for the level to be evaluated in parallel.
+	 * Smaller levels, which includes every level of a typical hand drawn diagram, are evaluated sequentially.
+	 */
+	public static int ParallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	/**
+	 * Number of shapes in the tape.
+	 */
+	private int size;
+
+	/**
+	 * Shapes of the tape in topological order.
+	 */
+	private Shape[] shapes;
+
+	/**
+	 * Index of each shape in the tape.
+	 */
+	private HashMap<Shape, Integer> indices;
+
+	/**
+	 * Opcode of each instruction.
+	 */
+	int[] op;
+
+	/**
+	 * Operands of each instruction, i.e. the indices of the first, second and third dependencies.
+	 */
+	int[] a, b, c;
+
+	/**
+	 * Number of operands of each instruction.
+	 */
+	int[] arity;
+
+	/**
+	 * Identifier of each instruction that distinguishes between 2 possible results.
+	 */
+	boolean[] identifier;
+
+	/**
+	 * Whether each shape is an infinite line.
+	 */
+	boolean[] infinite;
+
+	/**
+	 * Relative location of each point on a shape.
+	 */
+	double[] param;
+
+	/**
+	 * Evaluated coordinates of each shape.
+	 */
+	private double[] x, y, x2, y2, dx, dy, r;
+
+	/**
+	 * Whether each shape is defined. An instruction with an undefined operand is skipped and is undefined itself.
+	 */
+	private boolean[] defined;
+
+	/**
+	 * Index of the first shape of each dependency level, followed by the size of the tape.
+	 */
+	private int[] levels;
+
+	/**
+	 * Compiles the shapes into a tape.
+	 * @param order shapes in topological order, which must contain the dependencies of every shape
+	 */
+	public EvaluationTape(List<Shape> order)
+	{
+		this(Collections.<Shape>emptyList(), order);
+	}
+
+	/**
+	 * Compiles a part of a diagram into a tape. The inputs are read once from their current geometry and
+	 * are not recomputed or written back, so they must not depend on any of the shapes in the order.
+	 * @param inputs shapes that the order depends on but that are not part of it, which come first in the tape
+	 * @param order shapes in topological order, which must contain the dependencies of every shape that are not inputs
+	 */
+	public EvaluationTape(List<Shape> inputs, List<Shape> order)
+	{
+		size = inputs.size()+order.size();
+		shapes = new Shape[size];
+		for(int i = 0; i < inputs.size(); i++)
+		{
+			shapes[i] = inputs.get(i);
+		}
+		for(int i = 0; i < order.size(); i++)
+		{
+			shapes[inputs.size()+i] = order.get(i);
+		}
+		indices = new HashMap<Shape, Integer>();
+		op = new int[size];
+		a = new int[size];
+		b = new int[size];
+		c = new int[size];
+		arity = new int[size];
+		identifier = new boolean[size];
+		infinite = new boolean[size];
+		param = new double[size];
+		x = new double[size];
+		y = new double[size];
+		x2 = new double[size];
+		y2 = new double[size];
+		dx = new double[size];
+		dy = new double[size];
+		r = new double[size];
+		defined = new boolean[size];
+		int[][] operands = {a, b, c};
+		for(int i = 0; i < size; i++)
+		{
+			Shape s = shapes[i];
+			indices.put(s, i);
+			if(s instanceof Line) infinite[i] = ((Line) s).isInfinite();
+			if(i < inputs.size()) continue;
+			for(int j = 0; j < s.getDependencies().size() && j < 3; j++)
+			{
+				Integer k = indices.get(s.getDependencies().get(j));
+				if(k == null) throw new IllegalArgumentException(s.getName() + " appears before its dependencies.");
+				operands[j][i] = k;
+				arity[i]++;
+			}
+			op[i] = s.opcode();
+			if(s instanceof Point) identifier[i] = ((Point) s).getIdentifier();
+			else if(s instanceof Line) identifier[i] = ((Line) s).getIdentifier();
+		}
+		int count = 0;
+		for(int i = 0; i < size; i++)
+		{
+			if(i == 0 || shapes[i].getLevel() != shapes[i-1].getLevel()) count++;
+		}
+		levels = new int[count+1];
+		count = 0;
+		for(int i = 0; i < size; i++)
+		{
+			if(i == 0 || shapes[i].getLevel() != shapes[i-1].getLevel()) levels[count++] = i;
+		}
+		levels[count] = size;
+		load();
+	}
+
+	/**
+	 * Number of shapes in the tape.
+	 * @return size of the tape
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the index of a shape in the tape.
+	 * @param s shape
+	 * @return index of the shape, or -1 if it is not in the tape
+	 */
+	public int indexOf(Shape s)
+	{
+		Integer i = indices.get(s);
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * Returns the shape at an index of the tape.
+	 * @param i index
+	 * @return the shape
+	 */
+	public Shape getShape(int i)
+	{
+		return shapes[i];
+	}
+
+	/**
+	 * Reads the inputs of the tape from the shapes: the locations of free points and the relative locations of points on shapes.
+	 */
+	public void load()
+	{
+		for(int i = 0; i < size; i++)
+		{
+			Shape s = shapes[i];
+			if(op[i] == POINT_ON_LINE || op[i] == POINT_ON_CIRCLE)
+			{
+				param[i] = ((Point) s).getRelativeLocation();
+			}
+			else if(op[i] == INPUT)
+			{
+				defined[i] = s.isDefined();
+				if(s instanceof Point)
+				{
+					x[i] = ((Point) s).getX();
+					y[i] = ((Point) s).getY();
+				}
+				else if(s instanceof Line)
+				{
+					Line l = (Line) s;
+					x[i] = l.getAnchorX();
+					y[i] = l.getAnchorY();
+					x2[i] = l.getSecondX();
+					y2[i] = l.getSecondY();
+					dx[i] = l.getDirectionX();
+					dy[i] = l.getDirectionY();
+				}
+				else if(s instanceof Circle)
+				{
+					x[i] = ((Circle) s).getCenterX();
+					y[i] = ((Circle) s).getCenterY();
+					r[i] = ((Circle) s).getRadius();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the location of a free point in the tape, without changing the point itself.
+	 * @param i index of the point
+	 * @param px new x-coordinate
+	 * @param py new y-coordinate
+	 */
+	public void setPoint(int i, double px, double py)
+	{
+		x[i] = px;
+		y[i] = py;
+	}
+
+	/**
+	 * Sets the relative location of a point on a shape in the tape, without changing the point itself.
+	 * @param i index of the point
+	 * @param t new relative location
+	 */
+	public void setParam(int i, double t)
+	{
+		param[i] = t;
+	}
+
+	/**
+	 * Evaluates every instruction of the tape once, level by level.
+	 * Levels with at least {@link #ParallelThreshold} shapes are split across the common ForkJoinPool,
+	 * and each level is finished before the next one is started.
+	 */
+	public void evaluate()
+	{
+		for(int l = 0; l+1 < levels.length; l++)
+		{
+			int from = levels[l], to = levels[l+1];
+			if(to-from >= ParallelThreshold) ForkJoinPool.commonPool().invoke(new LevelTask(from, to));
+			else evaluate(from, to);
+		}
+	}
+
+	/**
+	 * Evaluates the instructions in a range of the tape, in order.
+	 * @param from index of the first instruction
+	 * @param to index after the last instruction
+	 */
+	private void evaluate(int from, int to)
+	{
+		//the kernel writes both coordinates of a construction here, so each range reuses one buffer
+		double[] out = new double[2];
+		for(int i = from; i < to; i++)
+		{
+			if(op[i] == INPUT) continue;
+			int p = a[i], q = b[i], s = c[i];
+			if(!defined[p] || (arity[i] > 1 && !defined[q]) || (arity[i] > 2 && !defined[s]))
+			{
+				defined[i] = false;
+				continue;
+			}
+			double sx, sy, ex, ey, d, cx, cy;
+			switch(op[i])
+			{
+			case POINT_ON_LINE:
+				sx = infinite[p] ? x[p]-Shape.INF*dx[p] : x[p];
+				sy = infinite[p] ? y[p]-Shape.INF*dy[p] : y[p];
+				ex = infinite[p] ? x2[p]+Shape.INF*dx[p] : x2[p];
+				ey = infinite[p] ? y2[p]+Shape.INF*dy[p] : y2[p];
+				x[i] = sx+param[i]*(ex-sx);
+				y[i] = sy+param[i]*(ey-sy);
+				break;
+			case POINT_ON_CIRCLE:
+				x[i] = x[p]+r[p]*Math.cos(param[i]);
+				y[i] = y[p]+r[p]*Math.sin(param[i]);
+				break;
+			case LINE_LINE_INTERSECTION:
+				GeometryKernel.intersect(x[p], y[p], dx[p], dy[p], !infinite[p], x[q], y[q], dx[q], dy[q], !infinite[q], out);
+				x[i] = out[0];
+				y[i] = out[1];
+				break;
+			case LINE_CIRCLE_INTERSECTION:
+				GeometryKernel.intersect(x[p], y[p], dx[p], dy[p], !infinite[p], x[q], y[q], r[q], identifier[i], out);
+				x[i] = out[0];
+				y[i] = out[1];
+				break;
+			case CIRCLE_CIRCLE_INTERSECTION:
+				GeometryKernel.intersect(x[p], y[p], r[p], x[q], y[q], r[q], identifier[i], out);
+				x[i] = out[0];
+				y[i] = out[1];
+				break;
+			case MIDPOINT:
+				x[i] = (x[p]+x[q])/2;
+				y[i] = (y[p]+y[q])/2;
+				break;
+			case SEGMENT:
+				x[i] = x[p];
+				y[i] = y[p];
+				x2[i] = x[q];
+				y2[i] = y[q];
+				dx[i] = x[q]-x[p];
+				dy[i] = y[q]-y[p];
+				break;
+			case LINE:
+				d = Math.sqrt((x[q]-x[p])*(x[q]-x[p])+(y[q]-y[p])*(y[q]-y[p]));
+				x[i] = x[p];
+				y[i] = y[p];
+				x2[i] = x[q];
+				y2[i] = y[q];
+				dx[i] = (x[q]-x[p])/d;
+				dy[i] = (y[q]-y[p])/d;
+				break;
+			case PARALLEL_LINE:
+				d = Math.sqrt(dx[q]*dx[q]+dy[q]*dy[q]);
+				x[i] = x2[i] = x[p];
+				y[i] = y2[i] = y[p];
+				dx[i] = dx[q]/d;
+				dy[i] = dy[q]/d;
+				break;
+			case PERPENDICULAR_LINE:
+				d = Math.sqrt(dx[q]*dx[q]+dy[q]*dy[q]);
+				x[i] = x2[i] = x[p];
+				y[i] = y2[i] = y[p];
+				dx[i] = -dy[q]/d;
+				dy[i] = dx[q]/d;
+				break;
+			case ANGLE_BISECTOR:
+				GeometryKernel.angleBisector(x[p], y[p], x[q], y[q], x[s], y[s], out);
+				d = Math.sqrt((out[0]-x[q])*(out[0]-x[q])+(out[1]-y[q])*(out[1]-y[q]));
+				x[i] = x[q];
+				y[i] = y[q];
+				x2[i] = out[0];
+				y2[i] = out[1];
+				dx[i] = (out[0]-x[q])/d;
+				dy[i] = (out[1]-y[q])/d;
+				break;
+			case PERPENDICULAR_BISECTOR:
+				d = Utility.dist(x[p], y[p], x[q], y[q]);
+				x[i] = x2[i] = (x[p]+x[q])/2;
+				y[i] = y2[i] = (y[p]+y[q])/2;
+				dx[i] = -(y[q]-y[p])/d;
+				dy[i] = (x[q]-x[p])/d;
+				break;
+			case TANGENT_LINE:
+				GeometryKernel.tangent(x[p], y[p], x[q], y[q], r[q], identifier[i], out);
+				cx = out[0];
+				cy = out[1];
+				d = Math.sqrt((cx-x[p])*(cx-x[p])+(cy-y[p])*(cy-y[p]));
+				x[i] = x[p];
+				y[i] = y[p];
+				x2[i] = cx;
+				y2[i] = cy;
+				dx[i] = (cx-x[p])/d;
+				dy[i] = (cy-y[p])/d;
+				break;
+			case CIRCLE:
+				x[i] = x[p];
+				y[i] = y[p];
+				r[i] = Utility.dist(x[p], y[p], x[q], y[q]);
+				break;
+			case CIRCUMCIRCLE:
+				GeometryKernel.circumcenter(x[p], y[p], x[q], y[q], x[s], y[s], out);
+				x[i] = out[0];
+				y[i] = out[1];
+				r[i] = Utility.dist(x[i], y[i], x[p], y[p]);
+				break;
+			case INCIRCLE:
+				GeometryKernel.incenter(x[p], y[p], x[q], y[q], x[s], y[s], out);
+				x[i] = out[0];
+				y[i] = out[1];
+				r[i] = Utility.distToL(x[p], y[p], x[q], y[q], x[i], y[i]);
+				break;
+			}
+			if(op[i] <= MIDPOINT) defined[i] = Double.isFinite(x[i]) && Double.isFinite(y[i]);
+			else if(op[i] <= TANGENT_LINE)
+			{
+				defined[i] = Double.isFinite(x[i]) && Double.isFinite(y[i]) && Double.isFinite(x2[i]) && Double.isFinite(y2[i])
+						&& Double.isFinite(dx[i]) && Double.isFinite(dy[i]);
+			}
+			else defined[i] = Double.isFinite(x[i]) && Double.isFinite(y[i]) && Double.isFinite(r[i]);
+		}
+	}
+
+	/**
+	 * Writes the evaluated coordinates and whether they are defined back into the shapes, which are then no longer stale.
+	 */
+	public void store()
+	{
+		for(int i = 0; i < size; i++)
+		{
+			Shape s = shapes[i];
+			s.stale = false;
+			if(op[i] == INPUT) continue;
+			s.defined = defined[i];
+			if(s instanceof Point) ((Point) s).setLocation(x[i], y[i]);
+			else if(s instanceof Line) ((Line) s).setLine(x[i], y[i], x2[i], y2[i], dx[i], dy[i]);
+			else if(s instanceof Circle) ((Circle) s).setCircle(x[i], y[i], r[i]);
+		}
+	}
+
+	/**
+	 * Evaluated x-coordinate of a point, anchor x of a line or x-coordinate of the center of a circle.
+	 * @param i index of the shape
+	 * @return x-coordinate
+	 */
+	public double getX(int i)
+	{
+		return x[i];
+	}
+
+	/**
+	 * Evaluated y-coordinate of a point, anchor y of a line or y-coordinate of the center of a circle.
+	 * @param i index of the shape
+	 * @return y-coordinate
+	 */
+	public double getY(int i)
+	{
+		return y[i];
+	}
+
+	/**
+	 * Evaluated end x of a segment, or x-coordinate of the second point of an infinite line.
+	 * @param i index of the line
+	 * @return x-coordinate of the second point
+	 */
+	public double getSecondX(int i)
+	{
+		return x2[i];
+	}
+
+	/**
+	 * Evaluated end y of a segment, or y-coordinate of the second point of an infinite line.
+	 * @param i index of the line
+	 * @return y-coordinate of the second point
+	 */
+	public double getSecondY(int i)
+	{
+		return y2[i];
+	}
+
+	/**
+	 * Evaluated x-component of the direction of a line.
+	 * @param i index of the line
+	 * @return x-component of the direction
+	 */
+	public double getDirectionX(int i)
+	{
+		return dx[i];
+	}
+
+	/**
+	 * Evaluated y-component of the direction of a line.
+	 * @param i index of the line
+	 * @return y-component of the direction
+	 */
+	public double getDirectionY(int i)
+	{
+		return dy[i];
+	}
+
+	/**
+	 * Evaluated radius of a circle.
+	 * @param i index of the circle
+	 * @return radius
+	 */
+	public double getRadius(int i)
+	{
+		return r[i];
+	}
+
+	/**
+	 * Whether a shape is defined.
+	 * @param i index of the shape
+	 * @return if the shape is defined
+	 */
+	public boolean isDefined(int i)
+	{
+		return defined[i];
+	}
+
+	/**
+	 * Task that evaluates a range of instructions within one level, splitting it in half until it is small enough.
+	 */
+	private class LevelTask extends RecursiveAction
+	{
+		/**
+		 * Serial version UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Range of instructions evaluated by this task.
+		 */
+		private int from, to;
+
+		/**
+		 * Creates a task for a range of instructions, which must all be of the same level.
+		 * @param from index of the first instruction
+		 * @param to index after the last instruction
+		 */
+		LevelTask(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Evaluates the range, or splits it into 2 tasks.
+		 */
+		protected void compute()
+		{
+			if(to-from <= GRAIN)
+			{
+				evaluate(from, to);
+				return;
+			}
+			int mid = (from+to) >>> 1;
+			invokeAll(new LevelTask(from, mid), new LevelTask(mid, to));
+		}
+	}
+}
@@ -0,0 +1,383 @@
+package asypad.shapes;
+
+/**
+ * Constructions that compute both coordinates of a point in one call. Each construction does its slope, discriminant
+ * and normalization work once and writes the x-coordinate into {@code out[0]} and the y-coordinate into {@code out[1]}
+ * of an array provided by the caller, so nothing is allocated. Points that do not exist have {@code Double.POSITIVE_INFINITY}
+ * as their coordinates, the same as in {@link Utility}. Lines are given by a point on them and their direction, like {@link Line} stores them.
+ * @author Raymond Feng
+ */
+public final class GeometryKernel
+{
+	/**
+	 * Used when comparing for 2 equal doubles, the same as in {@link Utility}.
+	 */
+	private static final double EPSILON = 0.001;
+
+	/**
+	 * This prevents any GeometryKernel objects from being created.
+	 */
+	private GeometryKernel()
+	{
+
+	}
+
+	/**
+	 * Finds the point that lies on both lines, where each line is given by a point on it and its direction.
+	 * A segment only contains the point plus t times its direction for t from 0 to 1, an infinite line contains it for every t,
+	 * so only segments are checked against their endpoints. If the lines are parallel or the intersection point is not on a segment,
+	 * both coordinates are Double.POSITIVE_INFINITY. Both of these checks are made with exact {@link Predicates}.
+	 * @param x1 x-coordinate of a point on the first line
+	 * @param y1 y-coordinate of a point on the first line
+	 * @param dx1 x-component of the direction of the first line
+	 * @param dy1 y-component of the direction of the first line
+	 * @param segment1 if the first line is a segment
+	 * @param x2 x-coordinate of a point on the second line
+	 * @param y2 y-coordinate of a point on the second line
+	 * @param dx2 x-component of the direction of the second line
+	 * @param dy2 y-component of the direction of the second line
+	 * @param segment2 if the second line is a segment
+	 * @param out receives the intersection point
+	 */
+	public static void intersect(double x1, double y1, double dx1, double dy1, boolean segment1,
+			double x2, double y2, double dx2, double dy2, boolean segment2, double[] out)
+	{
+		//a segment only meets the other line if its endpoints are not strictly on the same side of it
+		if(Predicates.cross(dx1, dy1, dx2, dy2) == 0
+				|| (segment1 && Predicates.side(x2, y2, dx2, dy2, x1, y1)*Predicates.side(x2, y2, dx2, dy2, x1+dx1, y1+dy1) > 0)
+				|| (segment2 && Predicates.side(x1, y1, dx1, dy1, x2, y2)*Predicates.side(x1, y1, dx1, dy1, x2+dx2, y2+dy2) > 0))
+		{
+			out[0] = Double.POSITIVE_INFINITY;
+			out[1] = Double.POSITIVE_INFINITY;
+			return;
+		}
+		double t = ((x2-x1)*dy2-(y2-y1)*dx2)/(dx1*dy2-dy1*dx2);
+		out[0] = x1+t*dx1;
+		out[1] = y1+t*dy1;
+	}
+
+	/**
+	 * Finds an intersection point between a line, given by a point on it and its direction, and the circle with center (cx, cy) and radius r.
+	 * Segments are treated as the line that they lie on. If there is more than one intersection point, identifier = true means
+	 * the intersection that is closer to the start of the line, which for an infinite line is the one that comes first along its direction.
+	 * If such an intersection point is non-existent both coordinates are Double.POSITIVE_INFINITY.
+	 * @param x x-coordinate of a point on the line
+	 * @param y y-coordinate of a point on the line
+	 * @param dx x-component of the direction of the line
+	 * @param dy y-component of the direction of the line
+	 * @param segment if the line is a segment, whose start is (x, y)
+	 * @param cx x-coordinate of center
+	 * @param cy y-coordinate of center
+	 * @param r radius
+	 * @param identifier distinguishes between the possibly 2 different intersection points
+	 * @param out receives the intersection point
+	 */
+	public static void intersect(double x, double y, double dx, double dy, boolean segment,
+			double cx, double cy, double r, boolean identifier, double[] out)
+	{
+		double d = Math.sqrt(dx*dx+dy*dy);
+		double ux = dx/d, uy = dy/d;
+		//distance along the line to the foot from the center, and from the center to the line
+		double along = (cx-x)*ux+(cy-y)*uy;
+		double h = (cx-x)*uy-(cy-y)*ux;
+		double discriminant = r*r-h*h;
+		if(discriminant < -EPSILON)
+		{
+			out[0] = Double.POSITIVE_INFINITY;
+			out[1] = Double.POSITIVE_INFINITY;
+			return;
+		}
+		else if(discriminant < EPSILON)
+		{
+			out[0] = x+along*ux;
+			out[1] = y+along*uy;
+			return;
+		}
+		double root = Math.sqrt(discriminant);
+		double t1 = along-root, t2 = along+root;
+		boolean firstCloser = !segment || Math.abs(t1) <= Math.abs(t2);
+		double t = firstCloser == identifier ? t1 : t2;
+		out[0] = x+t*ux;
+		out[1] = y+t*uy;
+	}
+
+	/**
+	 * Finds an intersection point between the circles with centers (x1, y1), (x2, y2) and radii r1, r2.
+	 * If there is more than one intersection point, identifier = true means the intersection that is more counterclockwise
+	 * wrt the first circle. If such an intersection point is non-existent both coordinates are Double.POSITIVE_INFINITY.
+	 * @param x1 x-coordinate of center of circle 1
+	 * @param y1 y-coordinate of center of circle 1
+	 * @param r1 radius of circle 1
+	 * @param x2 x-coordinate of center of circle 2
+	 * @param y2 y-coordinate of center of circle 2
+	 * @param r2 radius of circle 2
+	 * @param identifier distinguishes between the possibly 2 different intersection points
+	 * @param out receives the intersection point
+	 */
+	public static void intersect(double x1, double y1, double r1, double x2, double y2, double r2, boolean identifier, double[] out)
+	{
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double d = Utility.dist(x1, y1, x2, y2);
+		if(Utility.equal(d, r1 + r2))
+		{
+			//externally tangent
+			out[0] = x1 + dx * r1 / d;
+			out[1] = y1 + dy * r1 / d;
+			return;
+		}
+		else if(Utility.equal(d, Math.abs(r1-r2)))
+		{
+			//internally tangent
+			out[0] = x1 - dx * r1 / d;
+			out[1] = y1 - dy * r1 / d;
+			return;
+		}
+		else if(d > r1 + r2)
+		{
+			out[0] = Double.POSITIVE_INFINITY;
+			out[1] = Double.POSITIVE_INFINITY;
+			return;
+		}
+
+		double a = (r1 * r1 - r2 * r2 + d * d)/ (2 * d);
+		double h = Math.sqrt(r1 * r1 - a * a);
+
+		out[0] = x1 + dx * a / d + h * (identifier ? 1 : -1) * (dy / d);
+		out[1] = y1 + dy * a / d - h * (identifier ? 1 : -1) * (dx / d);
+	}
+
+	/**
+	 * Finds the foot from (x, y) to the line through (lx1, ly1) and (lx2, ly2).
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param lx1 start x of line
+	 * @param ly1 start y of line
+	 * @param lx2 end x of line
+	 * @param ly2 end y of line
+	 * @param out receives the foot
+	 */
+	public static void foot(double x, double y, double lx1, double ly1, double lx2, double ly2, double[] out)
+	{
+		if(lx1 == lx2)
+		{
+			out[0] = lx1;
+			out[1] = y;
+			return;
+		}
+		double m1 = (ly2-ly1)/(lx2-lx1);
+		double b1 = ly1-m1*lx1;
+		if(m1 == 0)
+		{
+			out[0] = x;
+			out[1] = ly1;
+			return;
+		}
+		double m2 = -1/m1;
+		double b2 = y-m2*x;
+		out[0] = Utility.solveX(m1, b1, m2, b2);
+		out[1] = Utility.solveY(m1, b1, m2, b2);
+	}
+
+	/**
+	 * Finds the circumcenter of (x1, y1), (x2, y2) and (x3, y3). If the points are exactly collinear both coordinates are Double.POSITIVE_INFINITY.
+	 * @param x1 x-coordinate of first point
+	 * @param y1 y-coordinate of first point
+	 * @param x2 x-coordinate of second point
+	 * @param y2 y-coordinate of second point
+	 * @param x3 x-coordinate of third point
+	 * @param y3 y-coordinate of third point
+	 * @param out receives the circumcenter
+	 */
+	public static void circumcenter(double x1, double y1, double x2, double y2, double x3, double y3, double[] out)
+	{
+		if(Predicates.orientation(x1, y1, x2, y2, x3, y3) == 0)
+		{
+			out[0] = Double.POSITIVE_INFINITY;
+			out[1] = Double.POSITIVE_INFINITY;
+			return;
+		}
+		double m1 = -1/((y1-y2)/(x1-x2));
+		double m2 = -1/((y1-y3)/(x1-x3));
+		double b1 = -m1*(x1+x2)/2+(y1+y2)/2;
+		double b2 = -m2*(x1+x3)/2+(y1+y3)/2;
+		if(y1-y2 != 0 && y1-y3 != 0)
+		{
+			out[0] = Utility.solveX(m1, b1, m2, b2);
+			out[1] = Utility.solveY(m1, b1, m2, b2);
+		}
+		else if(y1-y2 == 0 && y1-y3 == 0)
+		{
+			out[0] = Double.POSITIVE_INFINITY;
+			out[1] = Double.POSITIVE_INFINITY;
+		}
+		else if(y1-y2 == 0)
+		{
+			out[0] = (x1+x2)/2;
+			out[1] = m2*out[0]+b2;
+		}
+		else
+		{
+			out[0] = (x1+x3)/2;
+			out[1] = m1*out[0]+b1;
+		}
+	}
+
+	/**
+	 * Finds the incenter of (x1, y1), (x2, y2) and (x3, y3).
+	 * @param x1 x-coordinate of first point
+	 * @param y1 y-coordinate of first point
+	 * @param x2 x-coordinate of second point
+	 * @param y2 y-coordinate of second point
+	 * @param x3 x-coordinate of third point
+	 * @param y3 y-coordinate of third point
+	 * @param out receives the incenter
+	 */
+	public static void incenter(double x1, double y1, double x2, double y2, double x3, double y3, double[] out)
+	{
+		double a = Utility.dist(x2, y2, x3, y3), b = Utility.dist(x1, y1, x3, y3), c = Utility.dist(x1, y1, x2, y2);
+
+		out[0] = (a * x1 + b * x2 + c * x3) / (a+b+c);
+		out[1] = (a * y1 + b * y2 + c * y3) / (a+b+c);
+	}
+
+	/**
+	 * Finds the point that lies on the angle bisector of the angle formed by (px1, py1), (px2, py2) and (px3, py3),
+	 * and is 1 unit away from (px2, py2).
+	 * @param px1 x-coordinate of first point
+	 * @param py1 y-coordinate of first point
+	 * @param px2 x-coordinate of second point (vertex of angle)
+	 * @param py2 y-coordinate of second point (vertex of angle)
+	 * @param px3 x-coordinate of third point
+	 * @param py3 y-coordinate of third point
+	 * @param out receives the point on the angle bisector
+	 */
+	public static void angleBisector(double px1, double py1, double px2, double py2, double px3, double py3, double[] out)
+	{
+		double d1 = Utility.dist(px1, py1, px2, py2);
+		double d3 = Utility.dist(px2, py2, px3, py3);
+		double x1 = (d1-1)/d1*px2+1/d1*px1;
+		double y1 = (d1-1)/d1*py2+1/d1*py1;
+		double x3 = (d3-1)/d3*px2+1/d3*px3;
+		double y3 = (d3-1)/d3*py2+1/d3*py3;
+		double x2 = (x1+x3)/2;
+		double y2 = (y1+y3)/2;
+		double d2 = Utility.dist(px2, py2, x2, y2);
+		out[0] = (d2-1)/d2*px2+1/d2*x2;
+		out[1] = (d2-1)/d2*py2+1/d2*y2;
+	}
+
+	/**
+	 * Finds the point such that the line formed by the point and (x, y) is tangent to the circle with center (cx, cy) and radius r.
+	 * identifier is used to find which point (true = point more counterclockwise wrt the first circle).
+	 * If (x, y) is on the circle, finds the point 1 unit away and counterclockwise from it.
+	 * If it is inside the circle, both coordinates are Double.POSITIVE_INFINITY.
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param cx x-coordinate of center
+	 * @param cy y-coordinate of center
+	 * @param r radius
+	 * @param identifier distinguishes between the possibly 2 different points
+	 * @param out receives the point described above
+	 */
+	public static void tangent(double x, double y, double cx, double cy, double r, boolean identifier, double[] out)
+	{
+		double d = Utility.dist(cx, cy, x, y);
+		if(Utility.equal(d, r))
+		{
+			// translate the circle to be centered at the origin
+			double translationX = x - cx, translationY = y - cy;
+			double norm = Math.sqrt(translationX*translationX + translationY*translationY);
+
+			out[0] = x + translationY / norm;
+			out[1] = y - translationX / norm;
+			return;
+		}
+		else if(Predicates.circleSide(x, y, cx, cy, r) < 0)
+		{
+			out[0] = Double.POSITIVE_INFINITY;
+			out[1] = Double.POSITIVE_INFINITY;
+			return;
+		}
+
+		//the tangent points lie on the circle with diameter from (x, y) to the center
+		double mx = (x + cx) / 2, my = (y + cy) / 2;
+
+		intersect(mx, my, Utility.dist(mx, my, x, y), cx, cy, r, identifier, out);
+	}
+
+	/**
+	 * Finds the distance from (x, y) to the segment from (lx1, ly1) to (lx2, ly2): the distance to the line if the foot from the point
+	 * lies on the segment, otherwise the distance to the closer endpoint.
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param lx1 start x of segment
+	 * @param ly1 start y of segment
+	 * @param lx2 end x of segment
+	 * @param ly2 end y of segment
+	 * @return distance from the point to the segment
+	 */
+	public static double distToSegment(double x, double y, double lx1, double ly1, double lx2, double ly2)
+	{
+		double fx;
+		if(lx1 == lx2) fx = lx1;
+		else
+		{
+			double m1 = (ly2-ly1)/(lx2-lx1);
+			double b1 = ly1-m1*lx1;
+			if(m1 == 0) fx = x;
+			else
+			{
+				double m2 = -1/m1;
+				fx = Utility.solveX(m1, b1, m2, y-m2*x);
+			}
+		}
+		if((lx1-fx)*(lx2-fx) <= 0) return Utility.distToL(lx1, ly1, lx2, ly2, x, y);
+		return Math.min(Utility.dist(x, y, lx1, ly1), Utility.dist(x, y, lx2, ly2));
+	}
+
+	/**
+	 * Clips the infinite line through (x, y) with direction (dx, dy) to a rectangle, so that only the visible part of it has to be drawn.
+	 * @param x x-coordinate of a point on the line
+	 * @param y y-coordinate of a point on the line
+	 * @param dx x-component of the direction of the line
+	 * @param dy y-component of the direction of the line
+	 * @param minX left of the rectangle
+	 * @param minY top of the rectangle
+	 * @param maxX right of the rectangle
+	 * @param maxY bottom of the rectangle
+	 * @param out receives the start of the visible part in {@code out[0], out[1]} and its end in {@code out[2], out[3]}
+	 * @return if any part of the line is inside the rectangle
+	 */
+	public static boolean clip(double x, double y, double dx, double dy, double minX, double minY, double maxX, double maxY, double[] out)
+	{
+		if(dx == 0 && dy == 0) return false;
+		double t0 = Double.NEGATIVE_INFINITY, t1 = Double.POSITIVE_INFINITY;
+		if(dx == 0)
+		{
+			if(x < minX || x > maxX) return false;
+		}
+		else
+		{
+			double ta = (minX-x)/dx, tb = (maxX-x)/dx;
+			t0 = Math.max(t0, Math.min(ta, tb));
+			t1 = Math.min(t1, Math.max(ta, tb));
+		}
+		if(dy == 0)
+		{
+			if(y < minY || y > maxY) return false;
+		}
+		else
+		{
+			double ta = (minY-y)/dy, tb = (maxY-y)/dy;
+			t0 = Math.max(t0, Math.min(ta, tb));
+			t1 = Math.min(t1, Math.max(ta, tb));
+		}
+		if(t0 > t1) return false;
+		out[0] = x+t0*dx;
+		out[1] = y+t0*dy;
+		out[2] = x+t1*dx;
+		out[3] = y+t1*dy;
+		return true;
+	}
+}
@@ -1,38 +1,45 @@
 package asypad.shapes;
 
-import javafx.scene.layout.Pane;
 import asypad.shapes.types.LINE_TYPE;
 
 /**
- * Custom Line used for drawing in AsyPad.
+ * Custom Line used for drawing in AsyPad. A segment is stored as its 2 endpoints. Every other type of line is infinite,
+ * and is stored as a point that it passes through and its direction, so its geometry does not depend on the size of the screen.
  * @author Raymond Feng
  */
 public class Line extends Shape
 {
 	/**
-	 * Underlying line that is drawn to the screen.
-	 */
-	private javafx.scene.shape.Line line;
-
-	/**
-	 * x-coordinate of the start point of the line.
+	 * x-coordinate of the start point of a segment, or of a point that an infinite line passes through.
 	 */
 	private double x1;
 
 	/**
-	 * y-coordinate of the start point of the line.
+	 * y-coordinate of the start point of a segment, or of a point that an infinite line passes through.
 	 */
 	private double y1;
 
 	/**
-	 * x-coordinate of the end point of the line.
+	 * x-coordinate of the end point of a segment, or of a second point that an infinite line passes through
+	 * (which is the same as the first for lines that only go through 1 point).
 	 */
 	private double x2;
 
 	/**
-	 * y-coordinate of the end point of the line.
+	 * y-coordinate of the end point of a segment, or of a second point that an infinite line passes through.
 	 */
 	private double y2;
+
+	/**
+	 * x-component of the direction of the line. For a segment this is the end minus the start,
+	 * for an infinite line it is a unit vector.
+	 */
+	private double dx;
+
+	/**
+	 * y-component of the direction of the line.
+	 */
+	private double dy;
 	
 	/**
 	 * Identifier to distinguish between the 2 possible intersections of a point and a circle, 
@@ -40,6 +47,228 @@ public class Line extends Shape
 	 */
 	private boolean identifier; //used for tangent to a circle through a point.
 
+	/**
+	 * Rule of segments between 2 points.
+	 */
+	private static final Rule<Line> SEGMENT = new Rule<Line>(EvaluationTape.SEGMENT)
+	{
+		void evaluate(Line l)
+		{
+			Point p1 = (Point) l.dependencies.get(0);
+			Point p2 = (Point) l.dependencies.get(1);
+			l.x1 = p1.getX();
+			l.y1 = p1.getY();
+			l.x2 = p2.getX();
+			l.y2 = p2.getY();
+			l.dx = l.x2-l.x1;
+			l.dy = l.y2-l.y1;
+		}
+
+		String emit(Line l, String n)
+		{
+			String p1 = l.dependencies.get(0).getName();
+			String p2 = l.dependencies.get(1).getName();
+			return "path " + n + " = " + p1 + "--" + p2 + "; ";
+		}
+
+		String name(Line l)
+		{
+			return "seg"+l.dependencies.get(0).getName()+SEPARATOR+l.dependencies.get(1).getName();
+		}
+	};
+
+	/**
+	 * Rule of lines through 2 points.
+	 */
+	private static final Rule<Line> LINE = new Rule<Line>(EvaluationTape.LINE)
+	{
+		void evaluate(Line l)
+		{
+			Point p1 = (Point) l.dependencies.get(0);
+			Point p2 = (Point) l.dependencies.get(1);
+			l.throughPoints(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+		}
+
+		String emit(Line l, String n)
+		{
+			String p1 = l.dependencies.get(0).getName();
+			String p2 = l.dependencies.get(1).getName();
+			return "path " + n + " = (" + p1 + "-" + INF/100 + "*unit(" + p2 + "-" + p1 + "))--(" + p2 + "+" + INF/100 + "*unit(" + p2 + "-" + p1 + ")); ";
+		}
+
+		String name(Line l)
+		{
+			return "line"+l.dependencies.get(0).getName()+SEPARATOR+l.dependencies.get(1).getName();
+		}
+	};
+
+	/**
+	 * Rule of lines through a point parallel to a line.
+	 */
+	private static final Rule<Line> PARALLEL_LINE = new Rule<Line>(EvaluationTape.PARALLEL_LINE)
+	{
+		void evaluate(Line l)
+		{
+			Point p = (Point) l.dependencies.get(0);
+			Line m = (Line) l.dependencies.get(1);
+			double d = Math.sqrt(m.getDirectionX()*m.getDirectionX()+m.getDirectionY()*m.getDirectionY());
+			l.x1 = l.x2 = p.getX();
+			l.y1 = l.y2 = p.getY();
+			l.dx = m.getDirectionX()/d;
+			l.dy = m.getDirectionY()/d;
+		}
+
+		String emit(Line l, String n)
+		{
+			String p = l.dependencies.get(0).getName();
+			String m = l.dependencies.get(1).getName();
+			return "path " + n + " = (" + p + "-" + INF/100 + "*dir(" + m + "))--(" + p + "+" + INF/100 + "*dir(" + m + ")); ";
+		}
+
+		String name(Line l)
+		{
+			return "par"+l.dependencies.get(0).getName()+SEPARATOR+l.dependencies.get(1).getName();
+		}
+	};
+
+	/**
+	 * Rule of lines through a point perpendicular to a line.
+	 */
+	private static final Rule<Line> PERPENDICULAR_LINE = new Rule<Line>(EvaluationTape.PERPENDICULAR_LINE)
+	{
+		void evaluate(Line l)
+		{
+			Point p = (Point) l.dependencies.get(0);
+			Line m = (Line) l.dependencies.get(1);
+			double d = Math.sqrt(m.getDirectionX()*m.getDirectionX()+m.getDirectionY()*m.getDirectionY());
+			l.x1 = l.x2 = p.getX();
+			l.y1 = l.y2 = p.getY();
+			l.dx = -m.getDirectionY()/d;
+			l.dy = m.getDirectionX()/d;
+		}
+
+		String emit(Line l, String n)
+		{
+			String p = l.dependencies.get(0).getName();
+			String m = l.dependencies.get(1).getName();
+			return "path " + n + " = (" + p + "-" + INF/100 + "*(dir(" + m + ").y, -dir(" + m + ").x))--(" + p + "+" + INF/100 + "*(dir(" + m + ").y, -dir(" + m + ").x)); ";
+		}
+
+		String name(Line l)
+		{
+			return "per"+l.dependencies.get(0).getName()+SEPARATOR+l.dependencies.get(1).getName();
+		}
+	};
+
+	/**
+	 * Rule of bisectors of the angle at the second of 3 points.
+	 */
+	private static final Rule<Line> ANGLE_BISECTOR = new Rule<Line>(EvaluationTape.ANGLE_BISECTOR)
+	{
+		void evaluate(Line l)
+		{
+			Point p1 = (Point) l.dependencies.get(0);
+			Point p2 = (Point) l.dependencies.get(1);
+			Point p3 = (Point) l.dependencies.get(2);
+			double[] ab = new double[2];
+			GeometryKernel.angleBisector(p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY(), ab);
+			l.throughPoints(p2.getX(), p2.getY(), ab[0], ab[1]);
+		}
+
+		String emit(Line l, String n)
+		{
+			String p1 = l.dependencies.get(0).getName();
+			String p2 = l.dependencies.get(1).getName();
+			String p3 = l.dependencies.get(2).getName();
+			String bisectorpoint = "(bisectorpoint(" + p1 + ", " + p2 + ", " + p3 + ")-" + p2 + ")";
+			return "path " + n + " = (" + p2 + "-" + INF/100 + "*" + bisectorpoint + ")--(" + p2 + "+" + INF/100 + "*" + bisectorpoint + "); ";
+		}
+
+		String name(Line l)
+		{
+			return "ab"+l.dependencies.get(0).getName()+SEPARATOR+l.dependencies.get(1).getName()+SEPARATOR+l.dependencies.get(2).getName();
+		}
+	};
+
+	/**
+	 * Rule of perpendicular bisectors of 2 points.
+	 */
+	private static final Rule<Line> PERPENDICULAR_BISECTOR = new Rule<Line>(EvaluationTape.PERPENDICULAR_BISECTOR)
+	{
+		void evaluate(Line l)
+		{
+			Point p1 = (Point) l.dependencies.get(0);
+			Point p2 = (Point) l.dependencies.get(1);
+			double d = Utility.dist(p1, p2);
+			l.x1 = l.x2 = (p1.getX()+p2.getX())/2;
+			l.y1 = l.y2 = (p1.getY()+p2.getY())/2;
+			l.dx = -(p2.getY()-p1.getY())/d;
+			l.dy = (p2.getX()-p1.getX())/d;
+		}
+
+		String emit(Line l, String n)
+		{
+			String p1 = l.dependencies.get(0).getName();
+			String p2 = l.dependencies.get(1).getName();
+			String p = "(" + p1 + "+" + p2 + ")/2";
+			return "path " + n + " = (" + p + "-" + INF/100 + "*unit(((" + p2 + "-" + p1 + ").y, -(" + p2 + "-" + p1 + ").x)))--(" + p + "+" + INF/100 + "*unit(((" + p2 + "-" + p1 + ").y, -(" + p2 + "-" + p1 + ").x))); ";
+		}
+
+		String name(Line l)
+		{
+			return "pb"+l.dependencies.get(0).getName()+SEPARATOR+l.dependencies.get(1).getName();
+		}
+	};
+
+	/**
+	 * Rule of lines through a point tangent to a circle.
+	 */
+	private static final Rule<Line> TANGENT_LINE = new Rule<Line>(EvaluationTape.TANGENT_LINE)
+	{
+		void evaluate(Line l)
+		{
+			Point p = (Point) l.dependencies.get(0);
+			Circle c = (Circle) l.dependencies.get(1);
+			double[] t = new double[2];
+			GeometryKernel.tangent(p.getX(), p.getY(), c.getCenterX(), c.getCenterY(), c.getRadius(), l.identifier, t);
+			l.throughPoints(p.getX(), p.getY(), t[0], t[1]);
+		}
+
+		String emit(Line l, String n)
+		{
+			String p = l.dependencies.get(0).getName();
+			String c = l.dependencies.get(1).getName();
+			
+			String center = c + "center";
+			String rad = c + "rad";
+			
+			int id = (l.identifier ? 2 : 1);
+			
+			String s = "";
+			
+			Point pDep = (Point) l.dependencies.get(0);
+			Circle cDep = (Circle) l.dependencies.get(1);
+			//check if point is on circle for asy conversion (need special case handling)
+			if(Utility.equal(Utility.dist(pDep, new Point(cDep.getCenterX(), cDep.getCenterY())), cDep.getRadius()))
+			{
+				s+="pair " + p + "_" + c + "_tangent" + id + " = (" + p + ".x+(" + p + ".y-" + center + ".y)/sqrt((" + p + ".x-" + center + ".x)^2+(" + p + ".y-" + center + ".y)^2), " + p + ".y-(" + p + ".x-" + center + ".x)/sqrt((" + p + ".x-" + center + ".x)^2+(" + p + ".y-" + center + ".y)^2));\n";
+			}
+			else s+="pair " + p + "_" + c + "_tangent" + id + " = tangent(" + p + ", " + center + ", " + rad + ", " + id + ");\n";
+			s+="path " + n + " = (" + p + "-" + INF/100 + "*unit(" + p + "_" + c + "_tangent" + id + "-" + p + "))--(" + p + "_" + c + "_tangent" + id + "+" + INF/100 + "*unit(" + p + "_" + c + "_tangent" + id + "-" + p + ")); ";
+			return s;
+		}
+
+		String name(Line l)
+		{
+			return "tl"+(l.identifier ? 2 : 1)+l.dependencies.get(0).getName()+SEPARATOR+l.dependencies.get(1).getName();
+		}
+	};
+
+	/**
+	 * Rule that computes this line from the shapes that it depends on.
+	 */
+	private final Rule<Line> rule;
+
 
 	/**
 	 * Constructs line through 2 points.
@@ -53,27 +282,14 @@ public class Line extends Shape
 		if(isSegment)
 		{
 			type = LINE_TYPE.SEGMENT;
-			x1 = p1.getX();
-			y1 = p1.getY();
-			x2 = p2.getX();
-			y2 = p2.getY();
-			label.setText("seg"+p1.getName()+SEPARATOR+p2.getName());
+			rule = SEGMENT;
 		}
 		else 
 		{
 			type = LINE_TYPE.LINE;
-			double dx = p2.getX()-p1.getX();
-			double dy = p2.getY()-p1.getY();
-			double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-			double diry = dy/Math.sqrt(dx*dx+dy*dy);
-			x1 = p1.getX()-INF*dirx;
-			y1 = p1.getY()-INF*diry;
-			x2 = p2.getX()+INF*dirx;
-			y2 = p2.getY()+INF*diry;
-			label.setText("line"+p1.getName()+SEPARATOR+p2.getName());
+			rule = LINE;
 		}
-		line = new javafx.scene.shape.Line(x1, y1, x2, y2);
-		line.setStrokeWidth(StrokeWidth);
+		recompute();
 	}
 
 	/**
@@ -88,31 +304,14 @@ public class Line extends Shape
 		if(isParallel)
 		{
 			type = LINE_TYPE.PARALLEL_LINE;
-			double dx = l.getEndX()-l.getStartX();
-			double dy = l.getEndY()-l.getStartY();
-			double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-			double diry = dy/Math.sqrt(dx*dx+dy*dy);
-			x1 = p.getX()-INF*dirx;
-			y1 = p.getY()-INF*diry;
-			x2 = p.getX()+INF*dirx;
-			y2 = p.getY()+INF*diry;
-			label.setText("par"+p.getName()+SEPARATOR+l.getName());
+			rule = PARALLEL_LINE;
 		}
 		else
 		{
 			type = LINE_TYPE.PERPENDICULAR_LINE;
-			double dx = l.getEndX()-l.getStartX();
-			double dy = l.getEndY()-l.getStartY();
-			double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-			double diry = dy/Math.sqrt(dx*dx+dy*dy);
-			x1 = p.getX()+INF*diry;
-			y1 = p.getY()-INF*dirx;
-			x2 = p.getX()-INF*diry;
-			y2 = p.getY()+INF*dirx;
-			label.setText("per"+p.getName()+SEPARATOR+l.getName());
+			rule = PERPENDICULAR_LINE;
 		}
-		line = new javafx.scene.shape.Line(x1, y1, x2, y2);
-		line.setStrokeWidth(StrokeWidth);
+		recompute();
 	}
 
 	/**
@@ -125,15 +324,8 @@ public class Line extends Shape
 	{
 		super(p1, p2, p3);
 		type = LINE_TYPE.ANGLE_BISECTOR;
-		double abx = Utility.angleBisectorX(p1, p2, p3);
-		double aby = Utility.angleBisectorY(p1, p2, p3);
-		x1 = p2.getX()-INF*(abx-p2.getX());
-		y1 = p2.getY()-INF*(aby-p2.getY());
-		x2 = abx+INF*(abx-p2.getX());
-		y2 = aby+INF*(aby-p2.getY());
-		label.setText("ab"+p1.getName()+SEPARATOR+p2.getName()+SEPARATOR+p3.getName());
-		line = new javafx.scene.shape.Line(x1, y1, x2, y2);
-		line.setStrokeWidth(StrokeWidth);
+		rule = ANGLE_BISECTOR;
+		recompute();
 	}
 
 	/**
@@ -145,19 +337,8 @@ public class Line extends Shape
 	{
 		super(p1, p2);
 		type = LINE_TYPE.PERPENDICULAR_BISECTOR;
-		double mx = (p1.getX()+p2.getX())/2;
-		double my = (p1.getY()+p2.getY())/2;
-		double dx = p2.getX()-p1.getX();
-		double dy = p2.getY()-p1.getY();
-		double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-		double diry = dy/Math.sqrt(dx*dx+dy*dy);
-		x1 = mx+INF*diry;
-		y1 = my-INF*dirx;
-		x2 = mx-INF*diry;
-		y2 = my+INF*dirx;
-		label.setText("pb"+p1.getName()+SEPARATOR+p2.getName());
-		line = new javafx.scene.shape.Line(x1, y1, x2, y2);
-		line.setStrokeWidth(StrokeWidth);
+		rule = PERPENDICULAR_BISECTOR;
+		recompute();
 	}
 	
 	/**
@@ -171,258 +352,260 @@ public class Line extends Shape
 		super(p, c);
 		
 		type = LINE_TYPE.TANGENT_LINE;
-		
-		x1 = p.getX();
-		y1 = p.getY();
-		x2 = Utility.tangentX(x1, y1, c, identifier);
-		y2 = Utility.tangentY(x1, y1, c, identifier);
-						
-		double dx = x2-p.getX();
-		double dy = y2-p.getY();
-		double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-		double diry = dy/Math.sqrt(dx*dx+dy*dy);
-		
-		x1 = p.getX()-INF*dirx;
-		y1 = p.getY()-INF*diry;
-		x2 = x2+INF*dirx;
-		y2 = y2+INF*diry;
+		rule = TANGENT_LINE;
 		
 		this.identifier = identifier;
 		
-		label.setText("tl"+(identifier ? 2 : 1)+p.getName()+SEPARATOR+c.getName());
-		line = new javafx.scene.shape.Line(x1, y1, x2, y2);
-		line.setStrokeWidth(StrokeWidth);
+		recompute();
 	}
 
 	/**
-	 * Gets start x.
-	 * @return start x
+	 * Whether this line is infinite, i.e. it is not a segment.
+	 * @return if the line extends forever in both directions
 	 */
-	public double getStartX() 
+	public boolean isInfinite()
 	{
-		return x1;
+		return type != LINE_TYPE.SEGMENT;
 	}
 
 	/**
-	 * Sets start x.
-	 * @param x1 new start x
+	 * Gets start x. The start of an infinite line is {@code INF} units before the point that it passes through.
+	 * @return start x
 	 */
-	public void setStartX(double x1) 
+	public double getStartX() 
 	{
-		this.x1 = x1;
-		refresh();
+		validate();
+		return isInfinite() ? x1-INF*dx : x1;
 	}
 
 	/**
-	 * Gets start y.
+	 * Gets start y. The start of an infinite line is {@code INF} units before the point that it passes through.
 	 * @return start y
 	 */
 	public double getStartY() 
 	{
+		validate();
+		return isInfinite() ? y1-INF*dy : y1;
+	}
+
+	/**
+	 * Gets end x. The end of an infinite line is {@code INF} units after the second point that it passes through.
+	 * @return end x
+	 */
+	public double getEndX() 
+	{
+		validate();
+		return isInfinite() ? x2+INF*dx : x2;
+	}
+
+	/**
+	 * Gets end y. The end of an infinite line is {@code INF} units after the second point that it passes through.
+	 * @return end y
+	 */
+	public double getEndY() 
+	{
+		validate();
+		return isInfinite() ? y2+INF*dy : y2;
+	}
+
+	/**
+	 * Gets the x-coordinate of a point on the line: the start of a segment, or a point that an infinite line passes through.
+	 * @return x-coordinate of the anchor of the line
+	 */
+	public double getAnchorX()
+	{
+		validate();
+		return x1;
+	}
+
+	/**
+	 * Gets the y-coordinate of a point on the line: the start of a segment, or a point that an infinite line passes through.
+	 * @return y-coordinate of the anchor of the line
+	 */
+	public double getAnchorY()
+	{
+		validate();
 		return y1;
 	}
 
 	/**
-	 * Sets start y.
-	 * @param y1 new start y
+	 * Gets the x-component of the direction of the line: the end minus the start of a segment, or a unit vector for an infinite line.
+	 * The points of the line are the anchor plus t times the direction, for t from 0 to 1 on a segment and for all t on an infinite line.
+	 * @return x-component of the direction
 	 */
-	public void setStartY(double y1) 
+	public double getDirectionX()
 	{
-		this.y1 = y1;
-		refresh();
+		validate();
+		return dx;
 	}
 
 	/**
-	 * Gets end x.
-	 * @return end x
+	 * Gets the y-component of the direction of the line.
+	 * @return y-component of the direction
 	 */
-	public double getEndX() 
+	public double getDirectionY()
 	{
-		return x2;
+		validate();
+		return dy;
 	}
 
 	/**
-	 * Sets end x.
-	 * @param x2 new end x
+	 * Gets the x-coordinate of the end of a segment, or of the second point that an infinite line passes through.
+	 * @return x-coordinate of the second point
 	 */
-	public void setEndX(double x2) 
+	double getSecondX()
 	{
-		this.x2 = x2;
-		refresh();
+		validate();
+		return x2;
 	}
 
 	/**
-	 * Gets end y.
-	 * @return end y
+	 * Gets the y-coordinate of the end of a segment, or of the second point that an infinite line passes through.
+	 * @return y-coordinate of the second point
 	 */
-	public double getEndY() 
+	double getSecondY()
 	{
+		validate();
 		return y2;
 	}
 
 	/**
-	 * Sets end y.
-	 * @param y2 new end y
+	 * Identifier that distinguishes between the 2 possible tangent lines.
+	 * @return identifier
 	 */
-	public void setEndY(double y2) 
+	boolean getIdentifier()
 	{
-		this.y2 = y2;
-		refresh();
+		return identifier;
 	}
 
-	public void draw(Pane p)
+	/**
+	 * Sets the geometry of this line without refreshing its children, used by the {@code EvaluationTape}.
+	 * @param x1 new start x or x-coordinate of the anchor
+	 * @param y1 new start y or y-coordinate of the anchor
+	 * @param x2 new end x or x-coordinate of the second point
+	 * @param y2 new end y or y-coordinate of the second point
+	 * @param dx new x-component of the direction
+	 * @param dy new y-component of the direction
+	 */
+	void setLine(double x1, double y1, double x2, double y2, double dx, double dy)
 	{
-		p.getChildren().add(line);
+		this.x1 = x1;
+		this.y1 = y1;
+		this.x2 = x2;
+		this.y2 = y2;
+		this.dx = dx;
+		this.dy = dy;
 	}
 
-	public void refresh()
+	protected void recompute()
 	{
-		if(type == LINE_TYPE.SEGMENT)
-		{
-			Point p1 = (Point) dependencies.get(0);
-			Point p2 = (Point) dependencies.get(1);
-			x1 = p1.getX();
-			y1 = p1.getY();
-			x2 = p2.getX();
-			y2 = p2.getY();
-		}
-		else if(type == LINE_TYPE.LINE)
+		//a case for each rule, so that each call only ever sees the one rule
+		switch(rule.op)
 		{
-			Point p1 = (Point) dependencies.get(0);
-			Point p2 = (Point) dependencies.get(1);
-			double dx = p2.getX()-p1.getX();
-			double dy = p2.getY()-p1.getY();
-			double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-			double diry = dy/Math.sqrt(dx*dx+dy*dy);
-			x1 = p1.getX()-INF*dirx;
-			y1 = p1.getY()-INF*diry;
-			x2 = p2.getX()+INF*dirx;
-			y2 = p2.getY()+INF*diry;
-		}
-		else if(type == LINE_TYPE.PARALLEL_LINE)
-		{
-			Point p = (Point) dependencies.get(0);
-			Line l = (Line) dependencies.get(1);
-			double dx = l.getEndX()-l.getStartX();
-			double dy = l.getEndY()-l.getStartY();
-			double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-			double diry = dy/Math.sqrt(dx*dx+dy*dy);
-			x1 = p.getX()-INF*dirx;
-			y1 = p.getY()-INF*diry;
-			x2 = p.getX()+INF*dirx;
-			y2 = p.getY()+INF*diry;
-		}
-		else if(type == LINE_TYPE.PERPENDICULAR_LINE)
-		{
-			Point p = (Point) dependencies.get(0);
-			Line l = (Line) dependencies.get(1);
-			double dx = l.getEndX()-l.getStartX();
-			double dy = l.getEndY()-l.getStartY();
-			double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-			double diry = dy/Math.sqrt(dx*dx+dy*dy);
-			x1 = p.getX()+INF*diry;
-			y1 = p.getY()-INF*dirx;
-			x2 = p.getX()-INF*diry;
-			y2 = p.getY()+INF*dirx;
-		}
-		else if(type == LINE_TYPE.ANGLE_BISECTOR)
-		{
-			Point p1 = (Point) dependencies.get(0);
-			Point p2 = (Point) dependencies.get(1);
-			Point p3 = (Point) dependencies.get(2);
-			double abx = Utility.angleBisectorX(p1, p2, p3);
-			double aby = Utility.angleBisectorY(p1, p2, p3);
-			x1 = p2.getX()-INF*(abx-p2.getX());
-			y1 = p2.getY()-INF*(aby-p2.getY());
-			x2 = abx+INF*(abx-p2.getX());
-			y2 = aby+INF*(aby-p2.getY());
-		}
-		else if(type == LINE_TYPE.PERPENDICULAR_BISECTOR)
-		{
-			Point p1 = (Point) dependencies.get(0);
-			Point p2 = (Point) dependencies.get(1);
-			double mx = (p1.getX()+p2.getX())/2;
-			double my = (p1.getY()+p2.getY())/2;
-			double dx = p2.getX()-p1.getX();
-			double dy = p2.getY()-p1.getY();
-			double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-			double diry = dy/Math.sqrt(dx*dx+dy*dy);
-			x1 = mx+INF*diry;
-			y1 = my-INF*dirx;
-			x2 = mx-INF*diry;
-			y2 = my+INF*dirx;
-		}
-		else if(type == LINE_TYPE.TANGENT_LINE)
-		{
-			Point p = (Point) dependencies.get(0);
-			Circle c = (Circle) dependencies.get(1);
-			
-			x1 = p.getX();
-			y1 = p.getY();
-			x2 = Utility.tangentX(x1, y1, c, identifier);
-			y2 = Utility.tangentY(x1, y1, c, identifier);
-			
-			double dx = x2-p.getX();
-			double dy = y2-p.getY();
-			double dirx = dx/Math.sqrt(dx*dx+dy*dy);
-			double diry = dy/Math.sqrt(dx*dx+dy*dy);
-			
-			x1 = p.getX()-INF*dirx;
-			y1 = p.getY()-INF*diry;
-			x2 = x2+INF*dirx;
-			y2 = y2+INF*diry;
-		}
-		//System.out.println(this);
-		line.setStartX(x1);
-		line.setStartY(y1);
-		line.setEndX(x2);
-		line.setEndY(y2);
-		line.setStrokeWidth(StrokeWidth);
-		line.setStroke(color);
-		for(int i = 0; i < children.size(); i++)
-		{
-			children.get(i).refresh();
+		case EvaluationTape.SEGMENT:
+			SEGMENT.evaluate(this);
+			break;
+		case EvaluationTape.LINE:
+			LINE.evaluate(this);
+			break;
+		case EvaluationTape.PARALLEL_LINE:
+			PARALLEL_LINE.evaluate(this);
+			break;
+		case EvaluationTape.PERPENDICULAR_LINE:
+			PERPENDICULAR_LINE.evaluate(this);
+			break;
+		case EvaluationTape.ANGLE_BISECTOR:
+			ANGLE_BISECTOR.evaluate(this);
+			break;
+		case EvaluationTape.PERPENDICULAR_BISECTOR:
+			PERPENDICULAR_BISECTOR.evaluate(this);
+			break;
+		case EvaluationTape.TANGENT_LINE:
+			TANGENT_LINE.evaluate(this);
+			break;
 		}
 	}
 
-	public void refreshName()
+	/**
+	 * Writes the Asymptote code that defines this line, without drawing it.
+	 * @param n name of the line in Asymptote
+	 * @return Asymptote definition of the line
+	 */
+	private String emit(String n)
 	{
-		String d1 = dependencies.get(0).getName();
-		String d2 = dependencies.get(1).getName();
-		if(type == LINE_TYPE.SEGMENT)
-		{
-			label.setText("seg"+d1+SEPARATOR+d2);
-		}
-		else if(type == LINE_TYPE.LINE)
-		{
-			label.setText("line"+d1+SEPARATOR+d2);
-		}
-		else if(type == LINE_TYPE.PARALLEL_LINE)
-		{
-			label.setText("par"+d1+SEPARATOR+d2);
-		}
-		else if(type == LINE_TYPE.PERPENDICULAR_LINE)
-		{
-			label.setText("per"+d1+SEPARATOR+d2);
-		}
-		else if(type == LINE_TYPE.ANGLE_BISECTOR)
+		switch(rule.op)
 		{
-			label.setText("ab"+d1+SEPARATOR+d2+SEPARATOR+dependencies.get(2).getName());
+		case EvaluationTape.SEGMENT:
+			return SEGMENT.emit(this, n);
+		case EvaluationTape.LINE:
+			return LINE.emit(this, n);
+		case EvaluationTape.PARALLEL_LINE:
+			return PARALLEL_LINE.emit(this, n);
+		case EvaluationTape.PERPENDICULAR_LINE:
+			return PERPENDICULAR_LINE.emit(this, n);
+		case EvaluationTape.ANGLE_BISECTOR:
+			return ANGLE_BISECTOR.emit(this, n);
+		case EvaluationTape.PERPENDICULAR_BISECTOR:
+			return PERPENDICULAR_BISECTOR.emit(this, n);
+		case EvaluationTape.TANGENT_LINE:
+			return TANGENT_LINE.emit(this, n);
 		}
-		else if(type == LINE_TYPE.PERPENDICULAR_BISECTOR)
-		{
-			label.setText("pb"+d1+SEPARATOR+d2);
-		}
-		else if(type == LINE_TYPE.TANGENT_LINE)
-		{
-			label.setText("tl"+(identifier ? 2 : 1)+d1+SEPARATOR+d2);
-		}
-		for(Shape s : children) s.refreshName();
+		return "";
+	}
+
+	int opcode()
+	{
+		return rule.op;
+	}
+
+	/**
+	 * Sets this to the infinite line through 2 points, with a unit direction from the first to the second.
+	 * @param x1 x-coordinate of the first point
+	 * @param y1 y-coordinate of the first point
+	 * @param x2 x-coordinate of the second point
+	 * @param y2 y-coordinate of the second point
+	 */
+	private void throughPoints(double x1, double y1, double x2, double y2)
+	{
+		double d = Math.sqrt((x2-x1)*(x2-x1)+(y2-y1)*(y2-y1));
+		this.x1 = x1;
+		this.y1 = y1;
+		this.x2 = x2;
+		this.y2 = y2;
+		dx = (x2-x1)/d;
+		dy = (y2-y1)/d;
+	}
+
+	protected boolean isFinite()
+	{
+		return Double.isFinite(x1) && Double.isFinite(y1) && Double.isFinite(x2) && Double.isFinite(y2)
+				&& Double.isFinite(dx) && Double.isFinite(dy);
 	}
 
-	public javafx.scene.shape.Line getObject()
+	public double distance(double x, double y)
 	{
-		return line;
+		validate();
+		//the direction of an infinite line is a unit vector, so this holds however far along the line the point is
+		if(isInfinite()) return Math.abs((x-x1)*dy-(y-y1)*dx);
+		return GeometryKernel.distToSegment(x, y, x1, y1, x2, y2);
+	}
+
+	/**
+	 * Finds where the foot of the perpendicular from a point falls along this line, as a fraction of the way from its start to its end.
+	 * This is the relative location of a point on the line. It is not bounded, since an infinite line goes on past its start and end.
+	 * @param x x-coordinate of the point
+	 * @param y y-coordinate of the point
+	 * @return relative location of the foot
+	 */
+	double relativeLocation(double x, double y)
+	{
+		double sx = getStartX(), sy = getStartY(), ex = getEndX(), ey = getEndY();
+		return ((x-sx)*(ex-sx)+(y-sy)*(ey-sy))/((ex-sx)*(ex-sx)+(ey-sy)*(ey-sy));
+	}
+
+	protected String deriveName()
+	{
+		return rule.name(this);
 	}
 
 	public String toString()
@@ -450,91 +633,12 @@ public class Line extends Shape
 
 	public String toAsymptote()
 	{
-		if(!inAsyCode) return "";
+		if(!isDefined()) return "";
 		String n = getName();
-		String hex = "c"+Utility.hex(color);
-		if(type == LINE_TYPE.SEGMENT)
-		{
-			String p1 = dependencies.get(0).getName();
-			String p2 = dependencies.get(1).getName();
-			String s = "path " + n + " = " + p1 + "--" + p2 + "; ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		else if(type == LINE_TYPE.LINE)
-		{
-			String p1 = dependencies.get(0).getName();
-			String p2 = dependencies.get(1).getName();
-			String s = "path " + n + " = (" + p1 + "-" + INF/100 + "*unit(" + p2 + "-" + p1 + "))--(" + p2 + "+" + INF/100 + "*unit(" + p2 + "-" + p1 + ")); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		else if(type == LINE_TYPE.PARALLEL_LINE)
-		{
-			String p = dependencies.get(0).getName();
-			String l = dependencies.get(1).getName();
-			String s = "path " + n + " = (" + p + "-" + INF/100 + "*dir(" + l + "))--(" + p + "+" + INF/100 + "*dir(" + l + ")); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		else if(type == LINE_TYPE.PERPENDICULAR_LINE)
-		{
-			String p = dependencies.get(0).getName();
-			String l = dependencies.get(1).getName();
-			String s = "path " + n + " = (" + p + "-" + INF/100 + "*(dir(" + l + ").y, -dir(" + l + ").x))--(" + p + "+" + INF/100 + "*(dir(" + l + ").y, -dir(" + l + ").x)); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		else if(type == LINE_TYPE.ANGLE_BISECTOR)
-		{
-			String p1 = dependencies.get(0).getName();
-			String p2 = dependencies.get(1).getName();
-			String p3 = dependencies.get(2).getName();
-			String bisectorpoint = "(bisectorpoint(" + p1 + ", " + p2 + ", " + p3 + ")-" + p2 + ")";
-			String s = "path " + n + " = (" + p2 + "-" + INF/100 + "*" + bisectorpoint + ")--(" + p2 + "+" + INF/100 + "*" + bisectorpoint + "); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		else if(type == LINE_TYPE.PERPENDICULAR_BISECTOR)
-		{
-			String p1 = dependencies.get(0).getName();
-			String p2 = dependencies.get(1).getName();
-			String p = "(" + p1 + "+" + p2 + ")/2";
-			String s = "path " + n + " = (" + p + "-" + INF/100 + "*unit(((" + p2 + "-" + p1 + ").y, -(" + p2 + "-" + p1 + ").x)))--(" + p + "+" + INF/100 + "*unit(((" + p2 + "-" + p1 + ").y, -(" + p2 + "-" + p1 + ").x))); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		else if(type == LINE_TYPE.TANGENT_LINE)
-		{
-			String p = dependencies.get(0).getName();
-			String c = dependencies.get(1).getName();
-			
-			String center = c + "center";
-			String rad = c + "rad";
-			
-			int id = (identifier ? 2 : 1);
-			
-			String s = "";
-			
-			Point pDep = (Point) dependencies.get(0);
-			Circle cDep = (Circle) dependencies.get(1);
-			//check if point is on circle for asy conversion (need special case handling)
-			if(Utility.equal(Utility.dist(pDep, new Point(cDep.getCenterX(), cDep.getCenterY())), cDep.getRadius()))
-			{
-				s+="pair " + p + "_" + c + "_tangent" + id + " = (" + p + ".x+(" + p + ".y-" + center + ".y)/sqrt((" + p + ".x-" + center + ".x)^2+(" + p + ".y-" + center + ".y)^2), " + p + ".y-(" + p + ".x-" + center + ".x)/sqrt((" + p + ".x-" + center + ".x)^2+(" + p + ".y-" + center + ".y)^2));\n";
-			}
-			else s+="pair " + p + "_" + c + "_tangent" + id + " = tangent(" + p + ", " + center + ", " + rad + ", " + id + ");\n";
-			s+="path " + n + " = (" + p + "-" + INF/100 + "*unit(" + p + "_" + c + "_tangent" + id + "-" + p + "))--(" + p + "_" + c + "_tangent" + id + "+" + INF/100 + "*unit(" + p + "_" + c + "_tangent" + id + "-" + p + ")); ";
-			if(!hide) s+="draw(" + n + ", " + hex + ");\n";
-			else s+="\n";
-			return s;
-		}
-		return null;
+		String hex = "c"+color;
+		String s = emit(n);
+		if(!hide) s+="draw(" + n + ", " + hex + ");\n";
+		else s+="\n";
+		return s;
 	}
 }
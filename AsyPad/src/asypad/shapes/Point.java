@@ -1,8 +1,6 @@
 package asypad.shapes;
 
-import javafx.scene.layout.Pane;
 import asypad.shapes.types.POINT_TYPE;
-import asypad.ui.AsyPadPane;
 
 /**
  * Custom Point used for drawing in AsyPad.
@@ -10,11 +8,6 @@ import asypad.ui.AsyPadPane;
  */
 public class Point extends Shape
 {
-	/**
-	 * Underlying dot that is drawn onto the screen.
-	 */
-	private javafx.scene.shape.Circle dot;
-
 	/**
 	 * x-coordinate of the point.
 	 */
@@ -36,6 +29,157 @@ public class Point extends Shape
 	 */
 	private boolean identifier; //used for intersection of line and circle or 2 circles.
 
+	/**
+	 * Rule of points that are specified by their coordinates.
+	 */
+	private static final Rule<Point> FREE = new Rule<Point>(EvaluationTape.INPUT)
+	{
+		void evaluate(Point p)
+		{
+
+		}
+
+		String emit(Point p, String n)
+		{
+			//invert the y coordinate since y goes up in Asymptote but down on java screen
+			return "pair " + n + " = (" + FORMATTER.format((p.x-Diagram.CurrentLeft)/100) + ", " + FORMATTER.format((Diagram.CurrentTop+Diagram.CurrentHeight-p.y)/100) + "); ";
+		}
+	};
+
+	/**
+	 * Rule of points that are locked onto a line.
+	 */
+	private static final Rule<Point> ON_LINE = new Rule<Point>(EvaluationTape.POINT_ON_LINE)
+	{
+		void evaluate(Point p)
+		{
+			Line l = (Line) p.dependencies.get(0);
+			p.x = l.getStartX()+p.relativeLocation*(l.getEndX()-l.getStartX());
+			p.y = l.getStartY()+p.relativeLocation*(l.getEndY()-l.getStartY());
+		}
+
+		String emit(Point p, String n)
+		{
+			return "pair " + n + " = relpoint(" + p.dependencies.get(0).getName() + ", " + p.relativeLocation + "); ";
+		}
+	};
+
+	/**
+	 * Rule of points that are locked onto a circle.
+	 */
+	private static final Rule<Point> ON_CIRCLE = new Rule<Point>(EvaluationTape.POINT_ON_CIRCLE)
+	{
+		void evaluate(Point p)
+		{
+			Circle c = (Circle) p.dependencies.get(0);
+			p.x = c.getCenterX()+c.getRadius()*Math.cos(p.relativeLocation);
+			p.y = c.getCenterY()+c.getRadius()*Math.sin(p.relativeLocation);
+		}
+
+		String emit(Point p, String n)
+		{
+			return "pair " + n + " = relpoint(" + p.dependencies.get(0).getName() + ", " + -p.relativeLocation/(2*Math.PI) + "); ";
+		}
+	};
+
+	/**
+	 * Rule of intersection points of 2 lines.
+	 */
+	private static final Rule<Point> LINE_LINE = new Rule<Point>(EvaluationTape.LINE_LINE_INTERSECTION)
+	{
+		void evaluate(Point p)
+		{
+			Line l1 = (Line) p.dependencies.get(0);
+			Line l2 = (Line) p.dependencies.get(1);
+			double[] out = new double[2];
+			GeometryKernel.intersect(l1.getAnchorX(), l1.getAnchorY(), l1.getDirectionX(), l1.getDirectionY(), !l1.isInfinite(),
+					l2.getAnchorX(), l2.getAnchorY(), l2.getDirectionX(), l2.getDirectionY(), !l2.isInfinite(), out);
+			p.x = out[0];
+			p.y = out[1];
+		}
+
+		String emit(Point p, String n)
+		{
+			String l1 = p.dependencies.get(0).getName();
+			String l2 = p.dependencies.get(1).getName();
+			return "pair " + n + " = intersectionpoint(" + l1 + ", " + l2 + "); ";
+		}
+	};
+
+	/**
+	 * Rule of intersection points of a line and a circle.
+	 */
+	private static final Rule<Point> LINE_CIRCLE = new Rule<Point>(EvaluationTape.LINE_CIRCLE_INTERSECTION)
+	{
+		void evaluate(Point p)
+		{
+			Line l = (Line) p.dependencies.get(0);
+			Circle c = (Circle) p.dependencies.get(1);
+			double[] out = new double[2];
+			GeometryKernel.intersect(l.getAnchorX(), l.getAnchorY(), l.getDirectionX(), l.getDirectionY(), !l.isInfinite(),
+					c.getCenterX(), c.getCenterY(), c.getRadius(), p.identifier, out);
+			p.x = out[0];
+			p.y = out[1];
+		}
+
+		String emit(Point p, String n)
+		{
+			String l = p.dependencies.get(0).getName();
+			String c = p.dependencies.get(1).getName();
+			return "pair " + n + " = intersectionpoints(" + l + ", " + c + ")[" + (p.identifier ? 0 : 1) + "]; ";
+		}
+	};
+
+	/**
+	 * Rule of intersection points of 2 circles.
+	 */
+	private static final Rule<Point> CIRCLE_CIRCLE = new Rule<Point>(EvaluationTape.CIRCLE_CIRCLE_INTERSECTION)
+	{
+		void evaluate(Point p)
+		{
+			Circle c1 = (Circle) p.dependencies.get(0);
+			Circle c2 = (Circle) p.dependencies.get(1);
+			double[] out = new double[2];
+			GeometryKernel.intersect(c1.getCenterX(), c1.getCenterY(), c1.getRadius(),
+					c2.getCenterX(), c2.getCenterY(), c2.getRadius(), p.identifier, out);
+			p.x = out[0];
+			p.y = out[1];
+		}
+
+		String emit(Point p, String n)
+		{
+			String c1 = p.dependencies.get(0).getName();
+			String c2 = p.dependencies.get(1).getName();
+			return "pair " + n + " = intersectionpoints(" + c1 + ", " + c2 + ")[" + (p.identifier ? 0 : 1) + "]; ";
+		}
+	};
+
+	/**
+	 * Rule of midpoints of 2 points.
+	 */
+	private static final Rule<Point> MIDPOINT = new Rule<Point>(EvaluationTape.MIDPOINT)
+	{
+		void evaluate(Point p)
+		{
+			Point p1 = (Point) p.dependencies.get(0);
+			Point p2 = (Point) p.dependencies.get(1);
+			p.x = (p1.getX()+p2.getX())/2;
+			p.y = (p1.getY()+p2.getY())/2;
+		}
+
+		String emit(Point p, String n)
+		{
+			String p1 = p.dependencies.get(0).getName();
+			String p2 = p.dependencies.get(1).getName();
+			return "pair " + n + " = (" + p1 + " + " + p2 + ")/2; ";
+		}
+	};
+
+	/**
+	 * Rule that computes this point from the shapes that it depends on.
+	 */
+	private final Rule<Point> rule;
+
 	/**
 	 * Constructs new Point at (x, y) with no label.
 	 * @param x x-coordinate
@@ -101,13 +245,10 @@ public class Point extends Shape
 		this.x = x;
 		this.y = y;
 		type = POINT_TYPE.POINT;
+		rule = FREE;
 		relativeLocation = -1;
 		identifier = false;
-		dot = new javafx.scene.shape.Circle(x, y, StrokeWidth);
-		dot.setStroke(color);
-		dot.setStrokeWidth(StrokeWidth);
-		label.setText(name);
-		label.refresh();
+		this.name = name;
 	}
 
 	/**
@@ -121,13 +262,14 @@ public class Point extends Shape
 	{
 		super(snap);
 		type = POINT_TYPE.POINT_ON_SHAPE;
+		rule = snap instanceof Line ? ON_LINE : ON_CIRCLE;
 		identifier = false;
 		if(snap instanceof Line)
 		{
 			Line l = (Line) snap;
-			x = Utility.footX(cx, cy, l);
-			y = Utility.footY(cx, cy, l);
-			relativeLocation = (x-l.getStartX())/(l.getEndX()-l.getStartX());
+			relativeLocation = l.relativeLocation(cx, cy);
+			x = l.getStartX()+relativeLocation*(l.getEndX()-l.getStartX());
+			y = l.getStartY()+relativeLocation*(l.getEndY()-l.getStartY());
 		}
 		else if(snap instanceof Circle)
 		{
@@ -137,11 +279,7 @@ public class Point extends Shape
 			relativeLocation = Math.atan((y-c.getCenterY())/(x-c.getCenterX()));
 			if(x < c.getCenterX()) relativeLocation += Math.PI;
 		}
-		dot = new javafx.scene.shape.Circle(x, y, StrokeWidth);
-		dot.setStroke(color);
-		dot.setStrokeWidth(StrokeWidth);
-		label.setText(name);
-		label.refresh();
+		this.name = name;
 	}
 
 	/**
@@ -154,25 +292,11 @@ public class Point extends Shape
 	{
 		super(snap);
 		type = POINT_TYPE.POINT_ON_SHAPE;
+		rule = snap instanceof Line ? ON_LINE : ON_CIRCLE;
 		identifier = false;
 		this.relativeLocation = relativeLocation;
-		if(snap instanceof Line)
-		{
-			Line l = (Line) snap;
-			x = l.getStartX()+relativeLocation*(l.getEndX()-l.getStartX());
-			y = l.getStartY()+relativeLocation*(l.getEndY()-l.getStartY());
-		}
-		else if(snap instanceof Circle)
-		{
-			Circle c = (Circle) snap;
-			x = c.getCenterX()+c.getRadius()*Math.cos(relativeLocation);
-			y = c.getCenterY()+c.getRadius()*Math.sin(relativeLocation);
-		}
-		dot = new javafx.scene.shape.Circle(x, y, StrokeWidth);
-		dot.setStroke(color);
-		dot.setStrokeWidth(StrokeWidth);
-		label.setText(name);
-		label.refresh();
+		recompute();
+		this.name = name;
 	}
 
 	/**
@@ -184,16 +308,12 @@ public class Point extends Shape
 	public Point(Line l1, Line l2, String name)
 	{
 		super(l1, l2);
-		this.x = Utility.intersectX(l1, l2);
-		this.y = Utility.intersectY(l1, l2);
 		type = POINT_TYPE.INTERSECTION_POINT;
+		rule = LINE_LINE;
 		relativeLocation = -1;
 		identifier = false;
-		dot = new javafx.scene.shape.Circle(x, y, StrokeWidth);
-		dot.setStroke(color);
-		dot.setStrokeWidth(StrokeWidth);
-		label.setText(name);
-		label.refresh();
+		recompute();
+		this.name = name;
 	}
 
 	/**
@@ -208,15 +328,11 @@ public class Point extends Shape
 	{
 		super(l, c);
 		type = POINT_TYPE.INTERSECTION_POINT;
+		rule = LINE_CIRCLE;
 		relativeLocation = -1;
 		this.identifier = identifier;
-		this.x = Utility.intersectX(l, c, identifier);
-		this.y = Utility.intersectY(l, c, identifier);
-		dot = new javafx.scene.shape.Circle(x, y, StrokeWidth);
-		dot.setStroke(color);
-		dot.setStrokeWidth(StrokeWidth);
-		label.setText(name);
-		label.refresh();
+		recompute();
+		this.name = name;
 	}
 
 	/**
@@ -231,15 +347,11 @@ public class Point extends Shape
 	{
 		super(c1, c2);
 		type = POINT_TYPE.INTERSECTION_POINT;
+		rule = CIRCLE_CIRCLE;
 		relativeLocation = -1;
 		this.identifier = identifier;
-		this.x = Utility.intersectX(c1, c2, identifier);
-		this.y = Utility.intersectY(c1, c2, identifier);
-		dot = new javafx.scene.shape.Circle(x, y, StrokeWidth);
-		dot.setStroke(color);
-		dot.setStrokeWidth(StrokeWidth);
-		label.setText(name);
-		label.refresh();
+		recompute();
+		this.name = name;
 	}
 
 	/**
@@ -251,15 +363,11 @@ public class Point extends Shape
 	public Point(Point p1, Point p2, String name)
 	{
 		super(p1, p2);
-		this.x = (p1.getX()+p2.getX())/2;
-		this.y = (p1.getY()+p2.getY())/2;
 		type = POINT_TYPE.MIDPOINT;
+		rule = MIDPOINT;
 		relativeLocation = -1;
-		dot = new javafx.scene.shape.Circle(x, y, StrokeWidth);
-		dot.setStroke(color);
-		dot.setStrokeWidth(StrokeWidth);
-		label.setText(name);
-		label.refresh();
+		recompute();
+		this.name = name;
 	}
 
 	/**
@@ -268,6 +376,7 @@ public class Point extends Shape
 	 */
 	public double getX()
 	{
+		validate();
 		return x;
 	}
 
@@ -287,6 +396,7 @@ public class Point extends Shape
 	 */
 	public double getY()
 	{
+		validate();
 		return y;
 	}
 
@@ -309,13 +419,25 @@ public class Point extends Shape
 	public void setRelativeLocation(double cx, double cy)
 	{
 		if(type != POINT_TYPE.POINT_ON_SHAPE) return;
+		updateRelativeLocation(cx, cy);
+		refresh();
+	}
+
+	/**
+	 * Computes the relative location of this point to the shape that it is on from the location of the mouse,
+	 * without marking anything as stale.
+	 * @param cx current x-coordinate
+	 * @param cy current y-coordinate
+	 */
+	void updateRelativeLocation(double cx, double cy)
+	{
 		if(dependencies.get(0) instanceof Line)
 		{
 			//set relative location
 			Line l = (Line) dependencies.get(0);
-			relativeLocation = (Utility.footX(cx, cy, l)-l.getStartX())/(l.getEndX()-l.getStartX());
-			if(relativeLocation < 0) relativeLocation = 0;
-			if(relativeLocation > 1) relativeLocation = 1;
+			relativeLocation = l.relativeLocation(cx, cy);
+			//a point on a segment stops at its ends, while a point on an infinite line can go past the span saved in the file
+			if(!l.isInfinite()) relativeLocation = Math.max(0, Math.min(1, relativeLocation));
 		}
 		else if(dependencies.get(0) instanceof Circle)
 		{
@@ -326,86 +448,103 @@ public class Point extends Shape
 			relativeLocation = Math.atan((y-c.getCenterY())/(x-c.getCenterX()));
 			if(x < c.getCenterX()) relativeLocation += Math.PI;
 		}
-		refresh();
 	}
 
-	public void draw(Pane p)
+	/**
+	 * Relative location of this point on the shape that it lies on, only used for {@code POINT_TYPE.POINT_ON_SHAPE}.
+	 * @return relative location
+	 */
+	double getRelativeLocation()
 	{
-		p.getChildren().add(dot);
-		p.getChildren().add(label);
+		return relativeLocation;
 	}
 
-	public void refresh()
+	/**
+	 * Identifier that distinguishes between the 2 possible intersection points.
+	 * @return identifier
+	 */
+	boolean getIdentifier()
 	{
-		if(type == POINT_TYPE.POINT_ON_SHAPE)
-		{
-			Shape snap = dependencies.get(0);
-			if(snap instanceof Line)
-			{
-				Line l = (Line) snap;
-				x = l.getStartX()+relativeLocation*(l.getEndX()-l.getStartX());
-				y = l.getStartY()+relativeLocation*(l.getEndY()-l.getStartY());
-			}
-			else if(snap instanceof Circle)
-			{
-				Circle c = (Circle) snap;
-				x = c.getCenterX()+c.getRadius()*Math.cos(relativeLocation);
-				y = c.getCenterY()+c.getRadius()*Math.sin(relativeLocation);
-			}
-		}
-		else if(type == POINT_TYPE.INTERSECTION_POINT)
-		{
-			if(dependencies.get(0) instanceof Line && dependencies.get(1) instanceof Line)
-			{
-				Line l1 = (Line) dependencies.get(0);
-				Line l2 = (Line) dependencies.get(1);
-				x = Utility.intersectX(l1, l2);
-				y = Utility.intersectY(l1, l2);
-			}
-			else if(dependencies.get(0) instanceof Line && dependencies.get(1) instanceof Circle)
-			{
-				Line l = (Line) dependencies.get(0);
-				Circle c = (Circle) dependencies.get(1);
-				x = Utility.intersectX(l, c, identifier);
-				y = Utility.intersectY(l, c, identifier);
+		return identifier;
+	}
 
-			}
-			else if(dependencies.get(0) instanceof Circle && dependencies.get(1) instanceof Circle)
-			{
-				Circle c1 = (Circle) dependencies.get(0);
-				Circle c2 = (Circle) dependencies.get(1);
-				x = Utility.intersectX(c1, c2, identifier);
-				y = Utility.intersectY(c1, c2, identifier);
-			}
-		}
-		else if(type == POINT_TYPE.MIDPOINT)
+	/**
+	 * Sets the location of this point without refreshing its children, used by the {@code EvaluationTape}.
+	 * @param x new x-coordinate
+	 * @param y new y-coordinate
+	 */
+	void setLocation(double x, double y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+
+	protected void recompute()
+	{
+		//a case for each rule, so that each call only ever sees the one rule
+		switch(rule.op)
 		{
-			Point p1 = (Point) dependencies.get(0);
-			Point p2 = (Point) dependencies.get(1);
-			x = (p1.getX()+p2.getX())/2;
-			y = (p1.getY()+p2.getY())/2;
+		case EvaluationTape.POINT_ON_LINE:
+			ON_LINE.evaluate(this);
+			break;
+		case EvaluationTape.POINT_ON_CIRCLE:
+			ON_CIRCLE.evaluate(this);
+			break;
+		case EvaluationTape.LINE_LINE_INTERSECTION:
+			LINE_LINE.evaluate(this);
+			break;
+		case EvaluationTape.LINE_CIRCLE_INTERSECTION:
+			LINE_CIRCLE.evaluate(this);
+			break;
+		case EvaluationTape.CIRCLE_CIRCLE_INTERSECTION:
+			CIRCLE_CIRCLE.evaluate(this);
+			break;
+		case EvaluationTape.MIDPOINT:
+			MIDPOINT.evaluate(this);
+			break;
 		}
-		dot.setCenterX(x);
-		dot.setCenterY(y);
-		dot.setRadius(StrokeWidth);
-		dot.setStrokeWidth(StrokeWidth);
-		dot.setStroke(color);
-		dot.setFill(color);
-		label.refresh();
-		for(int i = 0; i < children.size(); i++)
+	}
+
+	/**
+	 * Writes the Asymptote code that defines this point, without drawing it.
+	 * @param n name of the point in Asymptote
+	 * @return Asymptote definition of the point
+	 */
+	private String emit(String n)
+	{
+		switch(rule.op)
 		{
-			children.get(i).refresh();
+		case EvaluationTape.INPUT:
+			return FREE.emit(this, n);
+		case EvaluationTape.POINT_ON_LINE:
+			return ON_LINE.emit(this, n);
+		case EvaluationTape.POINT_ON_CIRCLE:
+			return ON_CIRCLE.emit(this, n);
+		case EvaluationTape.LINE_LINE_INTERSECTION:
+			return LINE_LINE.emit(this, n);
+		case EvaluationTape.LINE_CIRCLE_INTERSECTION:
+			return LINE_CIRCLE.emit(this, n);
+		case EvaluationTape.CIRCLE_CIRCLE_INTERSECTION:
+			return CIRCLE_CIRCLE.emit(this, n);
+		case EvaluationTape.MIDPOINT:
+			return MIDPOINT.emit(this, n);
 		}
+		return "";
+	}
+
+	int opcode()
+	{
+		return rule.op;
 	}
 
-	public void refreshName()
+	protected boolean isFinite()
 	{
-		for(Shape s : children) s.refreshName();
+		return Double.isFinite(x) && Double.isFinite(y);
 	}
 
-	public javafx.scene.shape.Circle getObject()
+	public double distance(double x, double y)
 	{
-		return dot;
+		return Utility.dist(x, y, getX(), getY());
 	}
 
 	public String toString()
@@ -438,7 +577,7 @@ public class Point extends Shape
 
 	public String toAsymptote()
 	{
-		if(!inAsyCode) return "";
+		if(!isDefined()) return "";
 		String n = getName();
 		String asyVarN = n;
 		//System.out.println(asyVarN);
@@ -448,82 +587,14 @@ public class Point extends Shape
 			//System.out.println(asyVarN);
 			
 			//temporarily set the point name to the asy-safe name so that the rest of the asy code generates properly
-			//this name is then immediately REVERTED in the AsyPadPane.toAsymptote()
+			//this name is then immediately REVERTED in the Diagram.toAsymptote()
 			setName(asyVarN);
-			refreshName();
-		}
-		String hex = "c" + Utility.hex(color);
-		double dir = (getLabel().getDirection() * 180 / Math.PI + 360) % 360;
-		if(type == POINT_TYPE.POINT)
-		{
-			//invert the y coordinate since y goes up in Asymptote but down on java screen
-			String s = "pair " + asyVarN + " = (" + FORMATTER.format(x/100) + ", " + FORMATTER.format((AsyPadPane.CurrentHeight-y)/100) + "); ";
-			if(!hide) s += "dot(" + asyVarN + ", " + hex + "); label(\"$" + n + "$\", " + asyVarN + ", dir(" + dir + "));\n";
-			else s+="\n";
-			return s;
 		}
-		else if(type == POINT_TYPE.INTERSECTION_POINT)
-		{
-			if(dependencies.get(1) instanceof Line)
-			{
-				String l1 = dependencies.get(0).getName();
-				String l2 = dependencies.get(1).getName();
-				String s = "pair " + asyVarN + " = intersectionpoint(" + l1 + ", " + l2 + "); ";
-				if(!hide) s += "dot(" + asyVarN + ", " + hex + "); label(\"$" + n + "$\", " + asyVarN + ", dir(" + dir + "));\n";
-				else s+="\n";
-				return s;
-			}
-			else if(dependencies.get(0) instanceof Line && dependencies.get(1) instanceof Circle)
-			{
-				String l = dependencies.get(0).getName();
-				String c = dependencies.get(1).getName();
-				int a = 1;
-				if(identifier) a = 0;
-				String s = "pair " + asyVarN + " = intersectionpoints(" + l + ", " + c + ")[" + a + "]; ";
-				if(!hide) s += "dot(" + asyVarN + ", " + hex + "); label(\"$" + n + "$\", " + asyVarN + ", dir(" + dir + "));\n";
-				else s+="\n";
-				return s;
-			}
-			else if(dependencies.get(0) instanceof Circle)
-			{
-				String c1 = dependencies.get(0).getName();
-				String c2 = dependencies.get(1).getName();
-				int a = 1;
-				if(identifier) a = 0;
-				String s = "pair " + asyVarN + " = intersectionpoints(" + c1 + ", " + c2 + ")[" + a + "]; ";
-				if(!hide) s += "dot(" + asyVarN + ", " + hex + "); label(\"$" + n + "$\", " + asyVarN + ", dir(" + dir + "));\n";
-				else s+="\n";
-				return s;
-			}
-		}
-		else if(type == POINT_TYPE.POINT_ON_SHAPE)
-		{
-			if(dependencies.get(0) instanceof Line)
-			{
-				String l = dependencies.get(0).getName();
-				String s = "pair " + asyVarN + " = relpoint(" + l + ", " + relativeLocation + "); ";
-				if(!hide) s += "dot(" + asyVarN + ", " + hex + "); label(\"$" + n + "$\", " + asyVarN + ", dir(" + dir + "));\n";
-				else s+="\n";
-				return s;
-			}
-			else if(dependencies.get(0) instanceof Circle)
-			{
-				String c = dependencies.get(0).getName();
-				String s = "pair " + asyVarN + " = relpoint(" + c + ", " + -relativeLocation/(2*Math.PI) + "); ";
-				if(!hide) s += "dot(" + asyVarN + ", " + hex + "); label(\"$" + n + "$\", " + asyVarN + ", dir(" + dir + "));\n";
-				else s+="\n";
-				return s;
-			}
-		}
-		else if(type == POINT_TYPE.MIDPOINT)
-		{
-			String p1 = dependencies.get(0).getName();
-			String p2 = dependencies.get(1).getName();
-			String s = "pair " + asyVarN + " = (" + p1 + " + " + p2 + ")/2; ";
-			if(!hide) s += "dot(" + asyVarN + ", " + hex + "); label(\"$" + n + "$\", " + asyVarN + ", dir(" + dir + "));\n";
-			else s+="\n";
-			return s;
-		}
-		return null;
+		String hex = "c" + color;
+		double dir = (labelDirection * 180 / Math.PI + 360) % 360;
+		String s = emit(asyVarN);
+		if(!hide) s += "dot(" + asyVarN + ", " + hex + "); label(\"$" + n + "$\", " + asyVarN + ", dir(" + dir + "));\n";
+		else s+="\n";
+		return s;
 	}
 }
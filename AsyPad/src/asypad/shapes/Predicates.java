@@ -0,0 +1,123 @@
+package asypad.shapes;
+
+import java.math.BigDecimal;
+
+/**
+ * Geometric predicates that always give the correct sign for the doubles that they are given.
+ * Each predicate first evaluates its determinant in floating point together with a bound on the rounding error,
+ * in the style of Shewchuk's adaptive predicates. Only if the determinant is within the error bound of 0, which only
+ * happens for nearly degenerate input, is the determinant evaluated again exactly. So the decisions made from the predicates
+ * never contradict each other, and almost every call costs the same as the plain floating point test.
+ * Non-finite input is not evaluated exactly, and gives 0 if the determinant is not a number.
+ * @author Raymond Feng
+ */
+public final class Predicates
+{
+	/**
+	 * Relative error of a rounded floating point operation.
+	 */
+	private static final double EPSILON = Math.ulp(1.0)/2;
+
+	/**
+	 * Relative error bound of a 2 by 2 determinant whose entries are differences or input doubles.
+	 */
+	private static final double DETERMINANT_BOUND = (3+16*EPSILON)*EPSILON;
+
+	/**
+	 * Relative error bound of a squared distance minus a squared radius.
+	 */
+	private static final double CIRCLE_BOUND = (6+64*EPSILON)*EPSILON;
+
+	/**
+	 * This prevents any Predicates objects from being created.
+	 */
+	private Predicates()
+	{
+
+	}
+
+	/**
+	 * Finds which side of the line through (x, y) with direction (dx, dy) the point (px, py) is on.
+	 * @param x x-coordinate of a point on the line
+	 * @param y y-coordinate of a point on the line
+	 * @param dx x-component of the direction of the line
+	 * @param dy y-component of the direction of the line
+	 * @param px x-coordinate of the point
+	 * @param py y-coordinate of the point
+	 * @return 1 if the point is counterclockwise of the direction, -1 if it is clockwise, 0 if it is on the line
+	 */
+	public static int side(double x, double y, double dx, double dy, double px, double py)
+	{
+		double left = dx*(py-y), right = dy*(px-x);
+		double det = left-right;
+		double bound = DETERMINANT_BOUND*(Math.abs(left)+Math.abs(right));
+		if(det > bound || -det > bound || !(bound < Double.POSITIVE_INFINITY)) return (int) Math.signum(det);
+		return exact(dx).multiply(exact(py).subtract(exact(y))).subtract(exact(dy).multiply(exact(px).subtract(exact(x)))).signum();
+	}
+
+	/**
+	 * Finds the orientation of the points a, b, c.
+	 * @param ax x-coordinate of a
+	 * @param ay y-coordinate of a
+	 * @param bx x-coordinate of b
+	 * @param by y-coordinate of b
+	 * @param cx x-coordinate of c
+	 * @param cy y-coordinate of c
+	 * @return 1 if they are counterclockwise, -1 if they are clockwise, 0 if they are collinear
+	 */
+	public static int orientation(double ax, double ay, double bx, double by, double cx, double cy)
+	{
+		double left = (bx-ax)*(cy-ay), right = (by-ay)*(cx-ax);
+		double det = left-right;
+		double bound = DETERMINANT_BOUND*(Math.abs(left)+Math.abs(right));
+		if(det > bound || -det > bound || !(bound < Double.POSITIVE_INFINITY)) return (int) Math.signum(det);
+		return exact(bx).subtract(exact(ax)).multiply(exact(cy).subtract(exact(ay)))
+				.subtract(exact(by).subtract(exact(ay)).multiply(exact(cx).subtract(exact(ax)))).signum();
+	}
+
+	/**
+	 * Finds the sign of the cross product of 2 directions, which is 0 exactly when they are parallel.
+	 * @param ux x-component of the first direction
+	 * @param uy y-component of the first direction
+	 * @param vx x-component of the second direction
+	 * @param vy y-component of the second direction
+	 * @return 1 if the second direction is counterclockwise of the first, -1 if it is clockwise, 0 if they are parallel
+	 */
+	public static int cross(double ux, double uy, double vx, double vy)
+	{
+		double left = ux*vy, right = uy*vx;
+		double det = left-right;
+		double bound = DETERMINANT_BOUND*(Math.abs(left)+Math.abs(right));
+		if(det > bound || -det > bound || !(bound < Double.POSITIVE_INFINITY)) return (int) Math.signum(det);
+		return exact(ux).multiply(exact(vy)).subtract(exact(uy).multiply(exact(vx))).signum();
+	}
+
+	/**
+	 * Finds whether (px, py) is inside, on or outside of the circle with center (cx, cy) and radius r.
+	 * @param px x-coordinate of the point
+	 * @param py y-coordinate of the point
+	 * @param cx x-coordinate of center
+	 * @param cy y-coordinate of center
+	 * @param r radius
+	 * @return -1 if the point is inside the circle, 0 if it is on the circle, 1 if it is outside
+	 */
+	public static int circleSide(double px, double py, double cx, double cy, double r)
+	{
+		double a = px-cx, b = py-cy;
+		double det = a*a+b*b-r*r;
+		double bound = CIRCLE_BOUND*(a*a+b*b+r*r);
+		if(det > bound || -det > bound || !(bound < Double.POSITIVE_INFINITY)) return (int) Math.signum(det);
+		BigDecimal ea = exact(px).subtract(exact(cx)), eb = exact(py).subtract(exact(cy)), er = exact(r);
+		return ea.multiply(ea).add(eb.multiply(eb)).subtract(er.multiply(er)).signum();
+	}
+
+	/**
+	 * Converts a double into a decimal with exactly the same value.
+	 * @param d a finite double
+	 * @return the exact value of d
+	 */
+	private static BigDecimal exact(double d)
+	{
+		return new BigDecimal(d);
+	}
+}
@@ -0,0 +1,51 @@
+package asypad.shapes;
+
+/**
+ * How one kind of construction, such as a midpoint or the intersection of a line and a circle, is computed from
+ * its dependencies and written in Asymptote. Each shape keeps the rule of its construction when it is created,
+ * instead of checking the types of the shape and its dependencies every time it is recomputed or converted.
+ * Shapes switch on the opcode of their rule and call each rule from its own case, so that every call site only ever
+ * sees one rule and can be inlined, like the instructions of an {@link EvaluationTape}.
+ * @param <S> type of shape that the rule constructs
+ * @author Raymond Feng
+ */
+abstract class Rule<S extends Shape>
+{
+	/**
+	 * Opcode of the construction, the same as in an {@code EvaluationTape}.
+	 */
+	final int op;
+
+	/**
+	 * Creates a rule for a kind of construction.
+	 * @param op opcode of the construction
+	 */
+	Rule(int op)
+	{
+		this.op = op;
+	}
+
+	/**
+	 * Computes the geometry of the shape from its dependencies.
+	 * @param s shape
+	 */
+	abstract void evaluate(S s);
+
+	/**
+	 * Writes the Asymptote code that defines the shape, without drawing it.
+	 * @param s shape
+	 * @param n name of the shape in Asymptote
+	 * @return Asymptote definition of the shape
+	 */
+	abstract String emit(S s, String n);
+
+	/**
+	 * Builds the name of the shape from the names of its dependencies.
+	 * @param s shape
+	 * @return the derived name, or null if the shape is named by the user
+	 */
+	String name(S s)
+	{
+		return null;
+	}
+}
@@ -2,14 +2,13 @@ package asypad.shapes;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
-import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
-import asypad.shapes.labels.DraggableLabel;
 import asypad.shapes.types.SHAPE_TYPE;
-import asypad.ui.AsyPadPane;
 /**
  * Custom Shape class that is a superclass for all shapes drawn on AsyPad.
+ * Shapes only hold geometry and dependency data, the nodes that draw them are managed by the renderer.
  * @author Raymond Feng
  */
 public abstract class Shape
@@ -18,6 +17,16 @@ public abstract class Shape
 	 * Default stroke width.
 	 */
 	public static final double DEFAULT_STROKE_WIDTH = 3;
+
+	/**
+	 * Default color of shapes, in hex.
+	 */
+	public static final String DEFAULT_COLOR = "000000";
+
+	/**
+	 * Default direction of a label from its shape (SE), in radians.
+	 */
+	public static final double DEFAULT_LABEL_DIRECTION = -Math.PI/4;
 	
 	/**
 	 * Stroke width of shapes.
@@ -25,7 +34,8 @@ public abstract class Shape
 	public static double StrokeWidth = DEFAULT_STROKE_WIDTH;
 
 	/**
-	 * Infinite that is used for drawing lines that should extend to infinity.
+	 * Distance of the start and end of an infinite line from the points that it passes through.
+	 * Infinite lines are not stored as long segments, but their relative locations and Asymptote output are measured along this span.
 	 */
 	public static final double INF = 10000;
 
@@ -45,9 +55,9 @@ public abstract class Shape
 	protected ArrayList<Shape> dependencies;
 
 	/**
-	 * The shapes that depend on this shape.
+	 * The drawn shapes that depend on this shape, in the order that they were drawn.
 	 */
-	protected ArrayList<Shape> children;
+	protected LinkedHashSet<Shape> children;
 
 	/**
 	 * If this shape should be removed.
@@ -60,14 +70,25 @@ public abstract class Shape
 	protected boolean hide;
 
 	/**
-	 * If this shape's code should be added to the generated Asymptote file.
+	 * If this shape and all of the shapes it depends on exist, e.g. an intersection point of 2 segments that do not intersect does not.
+	 * Shapes that are not defined are not drawn or added to the generated Asymptote file.
+	 */
+	protected boolean defined;
+
+	/**
+	 * The shape's name. For shapes whose names are derived from the names of their dependencies, this is the last derived name.
+	 */
+	protected String name;
+
+	/**
+	 * Value of the diagram's {@code renames} when the name of this shape was last derived, or -1 if it has not been derived in the diagram.
 	 */
-	protected boolean inAsyCode;
+	int nameStamp = -1;
 
 	/**
-	 * The shape's label.
+	 * Direction of the shape's label from the shape, in radians.
 	 */
-	protected DraggableLabel label;
+	protected double labelDirection;
 
 	/**
 	 * The type of this shape.
@@ -80,17 +101,34 @@ public abstract class Shape
 	protected int level;
 	
 	/**
-	 * The color of the shape.
+	 * The color of the shape, in hex.
 	 */
-	protected Color color;
+	protected String color;
+
+	/**
+	 * If one of the shapes this shape depends on has changed since this shape was last computed.
+	 */
+	protected boolean stale;
+
+	/**
+	 * The diagram that this shape is drawn in, or null if it is not drawn.
+	 */
+	protected Diagram diagram;
+
+	/**
+	 * Position of this shape in the order that the shapes of its diagram were drawn in.
+	 */
+	protected int drawOrder;
 
 	/**
 	 * Builds a Shape from the arguments.
+	 * If the target already draws an equivalent construction, that shape is returned instead
+	 * and the name from the arguments becomes another name of it.
 	 * @param args arguments specifying the shape
 	 * @param target target AsyPadPane that the Shape will be drawn in
-	 * @return the Shape that was built
+	 * @return the Shape that was built, or the equivalent shape that is already drawn
 	 */
-	public static Shape buildShape(String args, AsyPadPane target)
+	public static Shape buildShape(String args, Diagram target)
 	{
 		Shape s = null;
 		if(args.substring(0, 5).equals("POINT"))
@@ -268,30 +306,65 @@ public abstract class Shape
 				s = new Circle(dependency1, dependency2, dependency3, identifier);
 			}*/
 		}
+		if(s == null) return null;
+		String name = nameIn(args, s);
+		Shape existing = target.findEquivalent(s);
+		if(existing != null) s = existing;
+		target.alias(name, s);
 		return s;
 	}
 
+	/**
+	 * Finds the name that a built shape has in its arguments. Points are named explicitly, while the names of lines and circles
+	 * are made from the names of their dependencies, which can differ from the names of the shapes they were resolved to.
+	 * @param args arguments specifying the shape
+	 * @param s the shape built from the arguments
+	 * @return the name of the shape in the arguments
+	 */
+	private static String nameIn(String args, Shape s)
+	{
+		if(s instanceof Point) return s.getName();
+		String names = args.substring(args.lastIndexOf(':')+2);
+		int id = names.indexOf(" identifier");
+		if(id != -1) names = names.substring(0, id);
+		String resolved = "";
+		for(int i = 0; i < s.getDependencies().size(); i++)
+		{
+			if(i > 0) resolved += SEPARATOR;
+			resolved += s.getDependencies().get(i).getName();
+		}
+		String name = s.getName();
+		if(!name.endsWith(resolved)) return name;
+		return name.substring(0, name.length()-resolved.length())+names.replace(", ", SEPARATOR);
+	}
+
 	/**
 	 * Default superclass constructor called by all shapes, initializes dependencies, children, and level.
+	 * The shape only becomes a child of its dependencies once it is drawn, so shapes that are only built
+	 * for a preview or a calculation never have to be cleaned up.
 	 * @param shapes dependencies
 	 */
 	public Shape(Shape... shapes)
 	{
 		dependencies = new ArrayList<Shape>();
-		children = new ArrayList<Shape>();
-		label = new DraggableLabel(this, -Math.PI/4); //default direction SE
+		children = new LinkedHashSet<Shape>();
+		name = "";
+		nameStamp = -1;
+		labelDirection = DEFAULT_LABEL_DIRECTION;
 		level = -1;
 		for(Shape s : shapes)
 		{
 			dependencies.add(s);
-			s.getChildren().add(this);
 			level = Math.max(level, s.getLevel());
 		}
 		level++;
 		remove = false;
 		hide = false;
-		inAsyCode = true;
-		color = Color.BLACK;
+		defined = true;
+		color = DEFAULT_COLOR;
+		//computed shapes find out whether they are defined when they are first used
+		stale = shapes.length > 0;
+		diagram = null;
 	}
 
 	/**
@@ -306,54 +379,48 @@ public abstract class Shape
 	 * Children of this shape.
 	 * @return children
 	 */
-	public ArrayList<Shape> getChildren()
+	public Set<Shape> getChildren()
 	{
 		return children;
 	}
 
 	/**
-	 * Sets remove = true for this shape and all children.
+	 * Adds this shape to the children of its dependencies, called when the shape is drawn.
+	 * Its dependencies may have changed while it was not drawn, so a computed shape is recomputed when it is next used.
 	 */
-	public void delete()
+	void link()
 	{
-		remove = true;
-		for(Shape s : children)
-		{
-			s.delete();
-		}
+		for(Shape s : dependencies) s.children.add(this);
+		if(!dependencies.isEmpty()) stale = true;
 	}
 
 	/**
-	 * Sets the value of remove for this shape.
-	 * @param remove new value of remove
+	 * Removes this shape from the children of its dependencies, called when the shape is removed from its diagram.
 	 */
-	public void setRemove(boolean remove)
+	void unlink()
 	{
-		this.remove = remove;
+		for(Shape s : dependencies) s.children.remove(this);
 	}
 
 	/**
-	 * Adds this shape and all children to Asymptote code.
+	 * Sets remove = true for this shape and all children.
 	 */
-	public void addToAsy()
+	public void delete()
 	{
-		inAsyCode = true;
+		remove = true;
 		for(Shape s : children)
 		{
-			s.addToAsy();
+			s.delete();
 		}
 	}
 
 	/**
-	 * Removes this shape and all children from Asymptote code.
+	 * Sets the value of remove for this shape.
+	 * @param remove new value of remove
 	 */
-	public void removeFromAsy()
+	public void setRemove(boolean remove)
 	{
-		inAsyCode = false;
-		for(Shape s : children)
-		{
-			s.removeFromAsy();
-		}
+		this.remove = remove;
 	}
 
 	/**
@@ -363,6 +430,7 @@ public abstract class Shape
 	public void setHidden(boolean hidden)
 	{
 		hide = hidden;
+		changed();
 	}
 
 	/**
@@ -384,12 +452,13 @@ public abstract class Shape
 	}
 
 	/**
-	 * If this shape is in the Asymptote code.
-	 * @return inAsyCode
+	 * If this shape and all of the shapes it depends on exist.
+	 * @return defined
 	 */
-	public boolean isInAsyCode()
+	public boolean isDefined()
 	{
-		return inAsyCode;
+		validate();
+		return defined;
 	}
 
 	/**
@@ -398,24 +467,28 @@ public abstract class Shape
 	 */
 	public void setName(String name)
 	{
-		label.setText(name);
+		if(name.equals(getName())) return;
+		String oldName = this.name;
+		this.name = name;
+		if(diagram != null) diagram.renamed(this, oldName);
+		changed();
 	}
 	
 	/**
 	 * Sets the color of the shape
-	 * @param c new color of shape
+	 * @param c new color of shape, in hex
 	 */
-	public void setColor(Color c)
+	public void setColor(String c)
 	{
 		color = c;
-		refresh();
+		changed();
 	}
 	
 	/**
 	 * Returns the color of the shape.
-	 * @return color of shape
+	 * @return color of shape, in hex
 	 */
-	public Color getColor()
+	public String getColor()
 	{
 		return color;
 	}
@@ -426,16 +499,33 @@ public abstract class Shape
 	 */
 	public String getName()
 	{
-		return label.getText();
+		if(diagram == null || nameStamp != diagram.renames)
+		{
+			//a shape in the diagram has been renamed since the name was last derived, which may have changed it
+			String derived = deriveName();
+			if(derived != null) name = derived.intern();
+			if(diagram != null) nameStamp = diagram.renames;
+		}
+		return name;
+	}
+
+	/**
+	 * Sets the direction of the shape's label, in radians.
+	 * @param dir direction in radians
+	 */
+	public void setLabelDirection(double dir)
+	{
+		labelDirection = dir;
+		changed();
 	}
 
 	/**
-	 * Returns the shapes's label.
-	 * @return the shape label
+	 * Returns the direction of the shape's label, in radians.
+	 * @return label direction
 	 */
-	public DraggableLabel getLabel()
+	public double getLabelDirection()
 	{
-		return label;
+		return labelDirection;
 	}
 
 	/**
@@ -457,26 +547,96 @@ public abstract class Shape
 	}
 
 	/**
-	 * Draws this shape onto the specified pane.
-	 * @param p pane that shape is to be drawn on
+	 * Refreshes shape and all of its children by marking them as stale.
+	 * Each affected shape is recomputed once, the next time its value is needed.
+	 */
+	public void refresh()
+	{
+		DependencyGraph.invalidate(this);
+		changed();
+	}
+
+	/**
+	 * Records a change to this shape in the open transaction of its diagram, if there is one.
 	 */
-	public abstract void draw(Pane p);
+	protected void changed()
+	{
+		if(diagram != null) diagram.record(this);
+	}
 
 	/**
-	 * Refreshes shape and all of its children.
+	 * If this shape has to be recomputed before its value is used.
+	 * @return stale
 	 */
-	public abstract void refresh();
+	public boolean isStale()
+	{
+		return stale;
+	}
 
 	/**
-	 * Refreshes the name of this shape and all of its children.
+	 * Recomputes this shape if it is stale. The dependencies are brought up to date first,
+	 * since {@code recompute()} reads them through their getters, which call this method.
 	 */
-	public abstract void refreshName();
+	protected void validate()
+	{
+		if(stale)
+		{
+			stale = false;
+			evaluate();
+		}
+	}
 
 	/**
-	 * Returns the underlying shape that is drawn onto the screen.
-	 * @return the underlying shape
+	 * Recomputes this shape if all of its dependencies are defined, and finds out whether it is defined itself.
+	 * The shapes that depend on an undefined shape are not recomputed at all.
 	 */
-	public abstract javafx.scene.shape.Shape getObject();
+	void evaluate()
+	{
+		for(Shape s : dependencies)
+		{
+			if(!s.isDefined())
+			{
+				defined = false;
+				return;
+			}
+		}
+		recompute();
+		defined = isFinite();
+	}
+
+	/**
+	 * Recomputes this shape from its dependencies, without refreshing its children.
+	 */
+	protected abstract void recompute();
+
+	/**
+	 * Finds the opcode of the construction of this shape in an {@code EvaluationTape}.
+	 * @return opcode of the shape
+	 */
+	abstract int opcode();
+
+	/**
+	 * If the coordinates of this shape are all finite, i.e. its construction succeeded.
+	 * @return if the coordinates are finite
+	 */
+	protected abstract boolean isFinite();
+
+	/**
+	 * Finds the distance from (x, y) to this shape.
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @return distance from (x, y) to the shape
+	 */
+	public abstract double distance(double x, double y);
+
+	/**
+	 * Builds the name of this shape from the names of its dependencies.
+	 * @return the derived name, or null if the shape is named by the user
+	 */
+	protected String deriveName()
+	{
+		return null;
+	}
 
 	/**
 	 * String representation of the shape. Is used in .apad file i/o.
@@ -1,7 +1,5 @@
 package asypad.shapes;
 
-import javafx.scene.paint.Color;
-
 /**
  * Utility that contains useful functions.
  * @author Raymond Feng, Anthony Wang
@@ -76,301 +74,6 @@ public class Utility
 		return m1*solveX(m1, b1, m2, b2)+b1;
 	}
 
-	/**
-	 * Checks if 2 lines intersect using the cross product method.
-	 * @param l1 first line
-	 * @param l2 second line
-	 * @return if the 2 lines intersect
-	 */
-
-	public static boolean intersect(Line l1, Line l2)
-	{
-		double x1 = l1.getStartX();
-		double y1 = l1.getStartY();
-		double x2 = l1.getEndX();
-		double y2 = l1.getEndY();
-		double x3 = l2.getStartX();
-		double y3 = l2.getStartY();
-		double x4 = l2.getEndX();
-		double y4 = l2.getEndY();
-		double prod1 = (x1-x3)*(y4-y3)-(y1-y3)*(x4-x3);
-		double prod2 = (x2-x3)*(y4-y3)-(y2-y3)*(x4-x3);
-		double prod3 = (x3-x1)*(y2-y1)-(y3-y1)*(x2-x1);
-		double prod4 = (x4-x1)*(y2-y1)-(y4-y1)*(x2-x1);
-		//System.out.println(x1 + " " + x2 + " " + x3 + " " + x4);
-		//System.out.println(prod1+" "+prod2+" "+prod3+" "+prod4);
-		if(((prod1>=0&&prod2<=0)||(prod1<=0&&prod2>=0)) && ((prod3>=0&&prod4<=0)||(prod3<=0&&prod4>=0)))
-		{
-			return true;
-		}
-		return false;
-	}
-
-	/**
-	 * The x-value of the point that lies on both lines. If the intersection point does not
-	 * lie in between the endpoints returns Double.POSITIVE_INFINITY.
-	 * @param l1 first line
-	 * @param l2 second line
-	 * @return x-coordinate of intersection point
-	 */
-	public static double intersectX(Line l1, Line l2)
-	{
-		if(l1.getEndX()-l1.getStartX()!=0 && l2.getEndX()-l2.getStartX()!=0)
-		{
-			double m1 = (l1.getEndY()-l1.getStartY())/(l1.getEndX()-l1.getStartX());
-			double b1 = l1.getStartY()-m1*l1.getStartX();
-			double m2 = (l2.getEndY()-l2.getStartY())/(l2.getEndX()-l2.getStartX());
-			double b2 = l2.getStartY()-m2*l2.getStartX();
-			double x = solveX(m1, b1, m2, b2);
-			if((l1.getStartX()-x)*(l1.getEndX()-x) < 0 && (l2.getStartX()-x)*(l2.getEndX()-x) < 0) return x;
-			else return Double.POSITIVE_INFINITY;
-		}
-		else
-		{
-			if(l1.getEndX()-l1.getStartX()==0 && l2.getEndX()-l2.getStartX()==0)
-			{
-				return Double.POSITIVE_INFINITY;
-			}
-			else if(l1.getEndX()-l1.getStartX()==0)
-			{
-				if((l2.getStartX()-l1.getStartX())*(l2.getEndX()-l1.getStartX()) < 0) return l1.getStartX();
-				else return Double.POSITIVE_INFINITY;
-			}
-			else
-			{
-				if((l1.getStartX()-l2.getStartX())*(l1.getEndX()-l2.getStartX()) < 0) return l2.getStartX();
-				else return Double.POSITIVE_INFINITY;
-			}
-		}
-	}
-
-	/**
-	 * The y-value of the point that lies on both lines. If the intersection point does not
-	 * lie in between the endpoints returns Double.POSITIVE_INFINITY.
-	 * @param l1 first line
-	 * @param l2 second line
-	 * @return y-coordinate of intersection point
-	 */
-
-	public static double intersectY(Line l1, Line l2)
-	{
-		if(l1.getEndX()-l1.getStartX()!=0 && l2.getEndX()-l2.getStartX()!=0)
-		{
-			double m1 = (l1.getEndY()-l1.getStartY())/(l1.getEndX()-l1.getStartX());
-			double b1 = l1.getStartY()-m1*l1.getStartX();
-			double m2 = (l2.getEndY()-l2.getStartY())/(l2.getEndX()-l2.getStartX());
-			double b2 = l2.getStartY()-m2*l2.getStartX();
-			double y = solveY(m1, b1, m2, b2);
-			if((l1.getStartY()-y)*(l1.getEndY()-y) <= 0 && (l2.getStartY()-y)*(l2.getEndY()-y) <= 0) return y;
-			else return Double.POSITIVE_INFINITY;
-		}
-		else
-		{
-			if(l1.getEndX()-l1.getStartX()==0 && l2.getEndX()-l2.getStartX()==0)
-			{
-				return Double.POSITIVE_INFINITY;
-			}
-			else if(l1.getEndX()-l1.getStartX()==0)
-			{
-				double m2 = (l2.getEndY()-l2.getStartY())/(l2.getEndX()-l2.getStartX());
-				double b2 = l2.getStartY()-m2*l2.getStartX();
-				if((l2.getStartX()-l1.getStartX())*(l2.getEndX()-l1.getStartX()) < 0) return m2*l1.getStartX()+b2;
-				else return Double.POSITIVE_INFINITY;
-			}
-			else
-			{
-				double m1 = (l1.getEndY()-l1.getStartY())/(l1.getEndX()-l1.getStartX());
-				double b1 = l1.getStartY()-m1*l1.getStartX();
-				if((l1.getStartX()-l2.getStartX())*(l1.getEndX()-l2.getStartX()) < 0) return m1*l2.getStartX()+b1;
-				else return Double.POSITIVE_INFINITY;
-			}
-		}
-	}
-
-	/**
-	 * Calculates an intersection point between the line and the circle. If there is more than one intersection point,
-	 * identifier = true means to return the x-coordinate of the intersection that is closer to the start of the line.
-	 * If such an intersection point is non-existent returns Double.POSITIVE_INFINTY.
-	 * @param l line
-	 * @param c circle
-	 * @param identifier distinguishes between the possibly 2 different intersection points
-	 * @return x-coordinate of the appropriate intersection
-	 */
-	public static double intersectX(Line l, Circle c, boolean identifier)
-	{
-		double x1 = l.getStartX()-c.getCenterX();
-		double y1 = l.getStartY()-c.getCenterY();
-		double x2 = l.getEndX()-c.getCenterX();
-		double y2 = l.getEndY()-c.getCenterY();
-		double dx = x2-x1;
-		double dy = y2-y1;
-		double dr = Math.sqrt(dx*dx+dy*dy);
-		double D = x1*y2-x2*y1;
-		double r = c.getRadius();
-		double discriminant = r*r*dr*dr-D*D;
-		if(discriminant < -EPSILON) return Double.POSITIVE_INFINITY;
-		else if(discriminant < EPSILON)
-		{
-			return D*dy/(dr*dr)+c.getCenterX();
-		}
-		else
-		{
-			double ix1 = (D*dy+signumstar(dy)*dx*Math.sqrt(discriminant))/(dr*dr)+c.getCenterX();
-			double ix2 = (D*dy-signumstar(dy)*dx*Math.sqrt(discriminant))/(dr*dr)+c.getCenterX();
-			if(Math.abs(ix1-l.getStartX()) > Math.abs(ix2-l.getStartX()))
-			{
-				if(identifier)
-				{
-					return ix2;
-				}
-				else
-				{
-					return ix1;
-				}
-			}
-			else
-			{
-				if(identifier)
-				{
-					return ix1;
-				}
-				else
-				{
-					return ix2;
-				}
-			}
-		}
-	}
-
-	/**
-	 * Calculates an intersection point between the line and the circle. If there is more than one intersection point,
-	 * identifier = true means to return the y-coordinate of the intersection that is closer to the start of the line.
-	 * If such an intersection point is non-existent returns Double.POSITIVE_INFINTY.
-	 * @param l line
-	 * @param c circle
-	 * @param identifier distinguishes between the possibly 2 different intersection points
-	 * @return y-coordinate of the appropriate intersection
-	 */
-	public static double intersectY(Line l, Circle c, boolean identifier)
-	{
-		double x1 = l.getStartX()-c.getCenterX();
-		double y1 = l.getStartY()-c.getCenterY();
-		double x2 = l.getEndX()-c.getCenterX();
-		double y2 = l.getEndY()-c.getCenterY();
-		double dx = x2-x1;
-		double dy = y2-y1;
-		double dr = Math.sqrt(dx*dx+dy*dy);
-		double D = x1*y2-x2*y1;
-		double r = c.getRadius();
-		double discriminant = r*r*dr*dr-D*D;
-		if(discriminant < -EPSILON) return Double.POSITIVE_INFINITY;
-		else if(discriminant < EPSILON)
-		{
-			return -D*dx/(dr*dr)+c.getCenterY();
-		}
-		else
-		{
-			double iy1 = (-D*dx+Math.abs(dy)*Math.sqrt(discriminant))/(dr*dr)+c.getCenterY();
-			double iy2 = (-D*dx-Math.abs(dy)*Math.sqrt(discriminant))/(dr*dr)+c.getCenterY();
-			if(Math.abs(iy1-l.getStartY()) > Math.abs(iy2-l.getStartY()))
-			{
-				if(identifier)
-				{
-					return iy2;
-				}
-				else
-				{
-					return iy1;
-				}
-			}
-			else
-			{
-				if(identifier)
-				{
-					return iy1;
-				}
-				else
-				{
-					return iy2;
-				}
-			}
-		}
-	}
-	
-	/**
-	 * Calculates an intersection point between the two circles. If there is more than one intersection point,
-	 * identifier = true means to return the x-coordinate of the intersection that is more counterclockwise wrt the first circle.
-	 * If such an intersection point is non-existent returns Double.POSITIVE_INFINTY.
-	 * @param c1 circle 1
-	 * @param c2 circle 2
-	 * @param identifier distinguishes between the possibly 2 different intersection points
-	 * @return x-coordinate of the appropriate intersection
-	 */
-	public static double intersectX(Circle c1, Circle c2, boolean identifier)
-	{
-		double dx = c2.getCenterX() - c1.getCenterX();
-		double dy = c2.getCenterY() - c1.getCenterY();
-		double d = dist(c1.getCenterX(), c1.getCenterY(), c2.getCenterX(), c2.getCenterY());
-		if(equal(d, c1.getRadius() + c2.getRadius()))
-		{
-			//externally tangent
-			return c1.getCenterX() + dx * c1.getRadius() / d;
-		}
-		else if(equal(d, Math.abs(c1.getRadius()-c2.getRadius())))
-		{
-			//internally tangent
-			return c1.getCenterX() - dx * c1.getRadius() / d;
-		}
-		else if(d > c1.getRadius() + c2.getRadius())
-		{
-			return Double.POSITIVE_INFINITY;
-		}
-		
-		double a = (c1.getRadius() * c1.getRadius() - c2.getRadius() * c2.getRadius() + d * d)/ (2 * d);
-		double h = Math.sqrt(c1.getRadius() * c1.getRadius() - a * a);
-				
-		double x2 = c1.getCenterX() + dx * a / d + h * (identifier ? 1 : -1) * (dy / d);
-		
-		return x2;
-	}
-	
-	/**
-	 * Calculates an intersection point between the two circles. If there is more than one intersection point,
-	 * identifier = true means to return the y-coordinate of the intersection that is more counterclockwise wrt the first circle.
-	 * If such an intersection point is non-existent returns Double.POSITIVE_INFINTY.
-	 * @param c1 circle 1
-	 * @param c2 circle 2
-	 * @param identifier distinguishes between the possibly 2 different intersection points
-	 * @return y-coordinate of the appropriate intersection
-	 */
-	public static double intersectY(Circle c1, Circle c2, boolean identifier)
-	{
-		double dx = c2.getCenterX() - c1.getCenterX();
-		double dy = c2.getCenterY() - c1.getCenterY();
-		double d = dist(c1.getCenterX(), c1.getCenterY(), c2.getCenterX(), c2.getCenterY());
-		if(equal(d, c1.getRadius() + c2.getRadius()))
-		{
-			//externally tangent
-			return c1.getCenterY() + dy * c1.getRadius() / d;
-		}
-		else if(equal(d, Math.abs(c1.getRadius()-c2.getRadius())))
-		{
-			//internally tangent
-			return c1.getCenterY() - dy * c1.getRadius() / d;
-		}
-		else if(d > c1.getRadius() + c2.getRadius())
-		{
-			return Double.POSITIVE_INFINITY;
-		}
-		
-		double a = (c1.getRadius() * c1.getRadius() - c2.getRadius() * c2.getRadius() + d * d)/ (2 * d);
-		double h = Math.sqrt(c1.getRadius() * c1.getRadius() - a * a);
-		
-		double y2 = c1.getCenterY() + dy * a / d - h * (identifier ? 1 : -1) * (dx / d);
-		
-		return y2;
-	}
-
 	/**
 	 * Calculates distance from a point (x1, y1) to the line containing (lx1, ly1) and (lx2, ly2).
 	 * @param lx1 x-coordinate of first point on line
@@ -399,166 +102,6 @@ public class Utility
 		return distToL(l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY(), x, y);
 	}
 
-	/**
-	 * Finds the x-coordinate of the foot from (x, y) to line l.
-	 * @param x x-coordinate
-	 * @param y y-coordinate
-	 * @param l line
-	 * @return x-coordinate of the foot from point to line
-	 */
-	public static double footX(double x, double y, Line l)
-	{
-		if(l.getStartX() == l.getEndX()) return l.getStartX();
-		double m1 = (l.getEndY()-l.getStartY())/(l.getEndX()-l.getStartX());
-		double b1 = l.getStartY()-m1*l.getStartX();
-		if(m1 == 0) return x;
-		double m2 = -1/m1;
-		double b2 = y-m2*x;
-		return solveX(m1, b1, m2, b2);
-	}
-
-	/**
-	 * Finds the y-coordinate of the foot from (x, y) to line l.
-	 * @param x x-coordinate
-	 * @param y y-coordinate
-	 * @param l line
-	 * @return y-coordinate of the foot from point to line
-	 */
-	public static double footY(double x, double y, Line l)
-	{
-		if(l.getStartX() == l.getEndX()) return y;
-		double m1 = (l.getEndY()-l.getStartY())/(l.getEndX()-l.getStartX());
-		double b1 = l.getStartY()-m1*l.getStartX();
-		if(m1 == 0) return l.getStartY();
-		double m2 = -1/m1;
-		double b2 = y-m2*x;
-		return solveY(m1, b1, m2, b2);
-	}
-
-	/**
-	 * Finds the x-coordinate of the circumcenter of 3 points.
-	 * @param p1 first point
-	 * @param p2 second point
-	 * @param p3 third point
-	 * @return x-coordinate of circumcenter
-	 */
-	public static double circumcenterX(Point p1, Point p2, Point p3)
-	{
-		double m1 = -1/((p1.getY()-p2.getY())/(p1.getX()-p2.getX()));
-		double m2 = -1/((p1.getY()-p3.getY())/(p1.getX()-p3.getX()));
-		double b1 = -m1*(p1.getX()+p2.getX())/2+(p1.getY()+p2.getY())/2;
-		double b2 = -m2*(p1.getX()+p3.getX())/2+(p1.getY()+p3.getY())/2;
-		if(p1.getY()-p2.getY() != 0 && p1.getY()-p3.getY() != 0)
-		{
-			return solveX(m1, b1, m2, b2);
-		}
-		else
-		{
-			if(p1.getY()-p2.getY() == 0 && p1.getY()-p3.getY() == 0)
-			{
-				return Double.POSITIVE_INFINITY;
-			}
-			else if(p1.getY()-p2.getY() == 0)
-			{
-				return (p1.getX()+p2.getX())/2;
-			}
-			else
-			{
-				return (p1.getX()+p3.getX())/2;
-			}
-		}
-	}
-
-	/**
-	 * Finds the y-coordinate of the circumcenter of 3 points.
-	 * @param p1 first point
-	 * @param p2 second point
-	 * @param p3 third point
-	 * @return y-coordinate of circumcenter
-	 */
-	public static double circumcenterY(Point p1, Point p2, Point p3)
-	{
-		double m1 = -1/((p1.getY()-p2.getY())/(p1.getX()-p2.getX()));
-		double m2 = -1/((p1.getY()-p3.getY())/(p1.getX()-p3.getX()));
-		double b1 = -m1*(p1.getX()+p2.getX())/2+(p1.getY()+p2.getY())/2;
-		double b2 = -m2*(p1.getX()+p3.getX())/2+(p1.getY()+p3.getY())/2;
-		if(p1.getY()-p2.getY() != 0 && p1.getY()-p3.getY() != 0)
-		{
-			return solveY(m1, b1, m2, b2);
-		}
-		else
-		{
-			if(p1.getY()-p2.getY() == 0 && p1.getY()-p3.getY() == 0)
-			{
-				return Double.POSITIVE_INFINITY;
-			}
-			else if(p1.getY()-p2.getY() == 0)
-			{
-				return m2*circumcenterX(p1, p2, p3)+b2;
-			}
-			else
-			{
-				return m1*circumcenterX(p1, p2, p3)+b1;
-			}
-		}
-	}
-	
-	/**
-	 * Finds the x-coordinate of the incenter of 3 points.
-	 * @param p1 first point
-	 * @param p2 second point
-	 * @param p3 third point
-	 * @return x-coordinate of incenter
-	 */
-	public static double incenterX(Point p1, Point p2, Point p3)
-	{
-		double a = dist(p2, p3), b = dist(p1, p3), c = dist(p1, p2);
-		
-		return (a * p1.getX() + b * p2.getX() + c * p3.getX()) / (a+b+c);
-	}
-	
-	/**
-	 * Finds the y-coordinate of the incenter of 3 points.
-	 * @param p1 first point
-	 * @param p2 second point
-	 * @param p3 third point
-	 * @return y-coordinate of incenter
-	 */
-	public static double incenterY(Point p1, Point p2, Point p3)
-	{
-		double a = dist(p2, p3), b = dist(p1, p3), c = dist(p1, p2);
-		
-		return (a * p1.getY() + b * p2.getY() + c * p3.getY()) / (a+b+c);
-	}
-	
-	/**
-	 * Finds the x-coordinate of the orthocenter of 3 points.
-	 * @param p1 first point
-	 * @param p2 second point
-	 * @param p3 third point
-	 * @return x-coordinate of orthocenter
-	 */
-	public static double orthocenterX(Point p1, Point p2, Point p3)
-	{
-		Line a1 = new Line(p1, new Point(footX(p1.getX(), p1.getY(), new Line(p2, p3)), footY(p1.getX(), p1.getY(), new Line(p2, p3))));
-		Line a2 = new Line(p2, new Point(footX(p2.getX(), p2.getY(), new Line(p1, p3)), footY(p2.getX(), p2.getY(), new Line(p1, p3))));
-		return intersectX(a1, a2);
-	}
-	
-	/**
-	 * Finds the y-coordinate of the orthocenter of 3 points.
-	 * @param p1 first point
-	 * @param p2 second point
-	 * @param p3 third point
-	 * @return y-coordinate of orthocenter
-	 */
-	public static double orthocenterY(Point p1, Point p2, Point p3)
-	{
-		Line a1 = new Line(p1, new Point(footX(p1.getX(), p1.getY(), new Line(p2, p3, false)), footY(p1.getX(), p1.getY(), new Line(p2, p3, false))), false);
-		Line a2 = new Line(p2, new Point(footX(p2.getX(), p2.getY(), new Line(p1, p3, false)), footY(p2.getX(), p2.getY(), new Line(p1, p3, false))), false);
-		return intersectY(a1, a2);
-	}
-	
 	/**
 	 * Finds the x-coordinate of the centroid of 3 points.
 	 * @param p1 first point
@@ -583,112 +126,6 @@ public class Utility
 		return (p1.getY()+p2.getY()+p3.getY())/3;
 	}
 
-	/**
-	 * Calculates the x-coordinate of the point that lies on the angle bisector of angle p1p2p3,
-	 * and is 1 unit away from p2.
-	 * @param p1 first point
-	 * @param p2 second point (vertex of angle)
-	 * @param p3 third point
-	 * @return x-coordinate of point on angle bisector, 1 unit away from p2.
-	 */
-	public static double angleBisectorX(Point p1, Point p2, Point p3)
-	{
-		double d1 = dist(p1, p2);
-		double d3 = dist(p2, p3);
-		double x1 = (d1-1)/d1*p2.getX()+1/d1*p1.getX();
-		double y1 = (d1-1)/d1*p2.getY()+1/d1*p1.getY();
-		double x3 = (d3-1)/d3*p2.getX()+1/d3*p3.getX();
-		double y3 = (d3-1)/d3*p2.getY()+1/d3*p3.getY();
-		double x2 = (x1+x3)/2;
-		double y2 = (y1+y3)/2;
-		double d2 = dist(p2.getX(), p2.getY(), x2, y2);
-		x2 = (d2-1)/d2*p2.getX()+1/d2*x2;
-		return x2;
-	}
-
-	/**
-	 * Calculates the y-coordinate of the point that lies on the angle bisector of angle p1p2p3,
-	 * and is 1 unit away from p2.
-	 * @param p1 first point
-	 * @param p2 second point (vertex of angle)
-	 * @param p3 third point
-	 * @return y-coordinate of point on angle bisector, 1 unit away from p2.
-	 */
-	public static double angleBisectorY(Point p1, Point p2, Point p3)
-	{
-		double d1 = dist(p1, p2);
-		double d3 = dist(p2, p3);
-		double x1 = (d1-1)/d1*p2.getX()+1/d1*p1.getX();
-		double y1 = (d1-1)/d1*p2.getY()+1/d1*p1.getY();
-		double x3 = (d3-1)/d3*p2.getX()+1/d3*p3.getX();
-		double y3 = (d3-1)/d3*p2.getY()+1/d3*p3.getY();
-		double x2 = (x1+x3)/2;
-		double y2 = (y1+y3)/2;
-		double d2 = dist(p2.getX(), p2.getY(), x2, y2);
-		y2 = (d2-1)/d2*p2.getY()+1/d2*y2;
-		return y2;
-	}
-	
-	/**
-	 * Finds the x-coordinate of the point such that the line formed by the point and the given point
-	 * is tangent to the circle. identifier is used to find which point (true = point more counterclockwise wrt the first circle).
-	 * If it is on the circle, finds the point 1 unit away and counterclockwise from the given point.
-	 * If it is inside the circle, returns Double.POSITIVE_INFINITY.
-	 * @param x x-coordinate
-	 * @param y y-coordinate
-	 * @param c circle
-	 * @param identifier distinguishes between the possibly 2 different points
-	 * @return x coordinate of the point described above
-	 */
-	public static double tangentX(double x, double y, Circle c, boolean identifier)
-	{
-		if(equal(dist(c.getCenterX(), c.getCenterY(), x, y), c.getRadius()))
-		{
-			// translate the circle to be centered at the origin
-			double translationX = x - c.getCenterX(), translationY = y - c.getCenterY();
-			
-			return x + translationY / Math.sqrt(translationX*translationX + translationY*translationY);
-		}
-		else if(dist(c.getCenterX(), c.getCenterY(), x, y) < c.getRadius())
-		{
-			return Double.POSITIVE_INFINITY;
-		}
-		
-		Circle dCirc = new Circle(new Point((x + c.getCenterX()) / 2, (y + c.getCenterY()) / 2), new Point(x, y));
-		
-		return intersectX(dCirc, c, identifier);
-	}
-	
-	/**
-	 * Finds the y-coordinate of the point such that the line formed by the point and the given point
-	 * is tangent to the circle. identifier is used to find which point (true = point more counterclockwise wrt the first circle).
-	 * If it is on the circle, finds the point 1 unit away and counterclockwise from the given point.
-	 * If it is inside the circle, returns Double.POSITIVE_INFINITY.
-	 * @param x x-coordinate
-	 * @param y y-coordinate
-	 * @param c circle
-	 * @param identifier distinguishes between the possibly 2 different points
-	 * @return x coordinate of the point described above
-	 */
-	public static double tangentY(double x, double y, Circle c, boolean identifier)
-	{
-		if(equal(dist(c.getCenterX(), c.getCenterY(), x, y), c.getRadius()))
-		{
-			// translate the circle to be centered at the origin
-			double translationX = x - c.getCenterX(), translationY = y - c.getCenterY();
-			
-			return y - translationX / Math.sqrt(translationX*translationX + translationY*translationY);
-		}
-		else if(dist(c.getCenterX(), c.getCenterY(), x, y) < c.getRadius())
-		{
-			return Double.POSITIVE_INFINITY;
-		}
-		
-		Circle dCirc = new Circle(new Point((x + c.getCenterX()) / 2, (y + c.getCenterY()) / 2), new Point(x, y));
-		
-		return intersectY(dCirc, c, identifier);
-	}
-	
 	/**
 	 * Finds the x-coordinate of the center of the circle tangent to the two given non-intersecting circles going through the given point.
 	 * identifier = true means it is internally tangent to one of the circles and externally tangent to another.
@@ -701,15 +138,7 @@ public class Utility
 	 */
 	public static double tangentCircleX(Circle c1, Circle c2, Point p, boolean identifier)
 	{
-		double dx = c1.getCenterX() - p.getX();
-		double dy = c1.getCenterY() - p.getY();
-		double d = Math.sqrt(dx*dx+dy*dy);
-		Point F = new Point(p.getX()+(identifier ? -1 : 1)*c2.getRadius()*dx/d, p.getY()+(identifier ? -1 : 1)*c2.getRadius()*dy/d);
-		Line l1 = new Line(new Point(c1.getCenterX(), c1.getCenterY()), p, false);
-		Line l2 = new Line(new Point(c2.getCenterX(), c2.getCenterY()), F);
-		//sometimes circle disappears because of the check for if a point
-		//is actually between the end points of the 2 lines.
-		return intersectX(l1, l2);
+		return tangentCircle(c1, c2, p, identifier)[0];
 	}
 	
 	/**
@@ -723,14 +152,31 @@ public class Utility
 	 * @return y-coordinate of the described circle.
 	 */
 	public static double tangentCircleY(Circle c1, Circle c2, Point p, boolean identifier)
+	{
+		return tangentCircle(c1, c2, p, identifier)[1];
+	}
+
+	/**
+	 * Finds the center of the circle tangent to the two given non-intersecting circles going through the given point,
+	 * as the intersection of the line through the center of c1 and p with the perpendicular bisector of the center of c2
+	 * and the point F that is the radius of c2 away from p along that line.
+	 * @param c1 first circle
+	 * @param c2 second circle
+	 * @param p point
+	 * @param identifier distinguishes between the possibly 2 different circles
+	 * @return the center of the described circle, or Double.POSITIVE_INFINITY for both coordinates if it doesn't exist
+	 */
+	private static double[] tangentCircle(Circle c1, Circle c2, Point p, boolean identifier)
 	{
 		double dx = c1.getCenterX() - p.getX();
 		double dy = c1.getCenterY() - p.getY();
 		double d = Math.sqrt(dx*dx+dy*dy);
-		Point F = new Point(p.getX()+(identifier ? -1 : 1)*c2.getRadius()*dx/d, p.getY()+(identifier ? -1 : 1)*c2.getRadius()*dy/d);
-		Line l1 = new Line(new Point(c1.getCenterX(), c1.getCenterY()), p, false);
-		Line l2 = new Line(new Point(c2.getCenterX(), c2.getCenterY()), F);
-		return intersectY(l1, l2);
+		double fx = p.getX()+(identifier ? -1 : 1)*c2.getRadius()*dx/d;
+		double fy = p.getY()+(identifier ? -1 : 1)*c2.getRadius()*dy/d;
+		double[] out = new double[2];
+		GeometryKernel.intersect(p.getX(), p.getY(), dx, dy, false,
+				(c2.getCenterX()+fx)/2, (c2.getCenterY()+fy)/2, c2.getCenterY()-fy, fx-c2.getCenterX(), false, out);
+		return out;
 	}
 	
 	/**
@@ -742,23 +188,7 @@ public class Utility
 	 */
 	public static double distToShape(double x, double y, Shape s)
 	{
-		if(s instanceof Point)
-		{
-			return dist(x, y, ((Point) s).getX(), ((Point) s).getY());
-		}
-		else if(s instanceof Line)
-		{
-			if((((Line) s).getStartX()-footX(x, y, (Line) s))*(((Line) s).getEndX()-footX(x, y, (Line) s)) <= 0)
-			{
-				return distToL(((Line) s).getStartX(), ((Line) s).getStartY(), ((Line) s).getEndX(), ((Line) s).getEndY(), x, y);
-			}
-			else return Math.min(dist(x, y, ((Line) s).getStartX(), ((Line) s).getStartY()), dist(x, y, ((Line) s).getEndX(), ((Line) s).getEndY()));
-		}
-		else if(s instanceof Circle)
-		{
-			return Math.abs(((Circle) s).getRadius()-dist(x, y, ((Circle) s).getCenterX(), ((Circle) s).getCenterY()));
-		}
-		return -1;
+		return s.distance(x, y);
 	}
 	
 	/**
@@ -782,17 +212,4 @@ public class Utility
 	{
 		return Math.abs(d1 - d2) < EPSILON;
 	}
-	
-	/**
-	 * Hexes a Color into string format.
-	 * @param color the Color to be hexed
-	 * @return String rgb representation of the Color.
-	 */
-	public static String hex(Color color)
-	{
-		return String.format("%02X%02X%02X",
-	            (int)(color.getRed()*255),
-	            (int)(color.getGreen()*255),
-	            (int)(color.getBlue()*255));
-	}
 }
@@ -1,8 +1,6 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
 import asypad.shapes.*;
-import asypad.ui.AsyPadPane;
-import javafx.scene.paint.Color;
 
 /**
  * This class represents the action of recoloring a shape.
@@ -16,31 +14,30 @@ public class ColorCommand extends Command
 	private Shape shape;
 
 	/**
-	 * New color of the shape.
+	 * New color of the shape, in hex.
 	 */
-	private Color newColor;
+	private String newColor;
 
 	/**
 	 * Creates a new ColorCommand.
 	 * @param s Shape that will be recolored
-	 * @param c new color of the Shape
+	 * @param c new color of the Shape, in hex
 	 */
-	public ColorCommand(Shape s, Color c)
+	public ColorCommand(Shape s, String c)
 	{
 		shape = s;
 		newColor = c;
 	}
 
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
 		shape.setColor(newColor);
 	}
 
 	public String toString()
 	{
-		String rgb = Utility.hex(newColor);
 		String s = "color(" + shape.getName() + ", " 
-				+ rgb + ")\n";
+				+ newColor + ")\n";
 		return s;
 	}
 }
@@ -1,9 +1,8 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
+import asypad.shapes.Diagram;
 import asypad.shapes.Point;
 import asypad.shapes.Shape;
-import asypad.ui.AsyPadPane;
-import javafx.scene.paint.Color;
 
 /**
  * This class stores a user command.
@@ -12,12 +11,12 @@ import javafx.scene.paint.Color;
 public abstract class Command
 {
 	/**
-	 * Executes a Command from a String and adds it to the target AsyPadPane. 
+	 * Executes a Command from a String and adds it to the target Diagram. 
 	 * This is used for file i/o.
 	 * @param command string representation of command
-	 * @param target target AsyPadPane that the command will be for
+	 * @param target target Diagram that the command will be for
 	 */
-	public static void loadCommand(String command, AsyPadPane target)
+	public static void loadCommand(String command, Diagram target)
 	{
 		Command load = null;
 		//other than color, draw, drag, hide, and globalvar,
@@ -27,13 +26,15 @@ public abstract class Command
 			int comma = command.indexOf(',');
 			String name = command.substring(6, comma);
 			String color = command.substring(comma+2, command.length()-1);
-			Color c = Color.web(color);
-			load = new ColorCommand(target.findShapeByName(name), c);
+			if(color.startsWith("#")) color = color.substring(1);
+			load = new ColorCommand(target.findShapeByName(name), color.toUpperCase());
 		}
 		else if(command.startsWith("draw"))
 		{
 			String args = command.substring(5, command.length()-1);
 			Shape s = Shape.buildShape(args, target);
+			//an equivalent construction is already drawn
+			if(s == null || target.contains(s)) return;
 			load = new DrawCommand(s);
 		}
 		else if(command.startsWith("delete")) //deprecated as of v2
@@ -112,7 +113,7 @@ public abstract class Command
 
 	/**
 	 * Carries out the command.
-	 * @param target AsyPadPane where the command should be performed.
+	 * @param target Diagram where the command should be performed.
 	 */
-	public abstract void doAction(AsyPadPane target);
+	public abstract void doAction(Diagram target);
 }
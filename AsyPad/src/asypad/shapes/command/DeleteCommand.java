@@ -1,7 +1,7 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
+import asypad.shapes.Diagram;
 import asypad.shapes.Shape;
-import asypad.ui.AsyPadPane;
 
 /**
  * This class represents a command where a shape is deleted.
@@ -23,7 +23,7 @@ public class DeleteCommand extends Command
 		this.shape = shape;
 	}
 	
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
 		shape.delete();
 		target.update();
@@ -1,7 +1,7 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
+import asypad.shapes.Diagram;
 import asypad.shapes.Point;
-import asypad.ui.AsyPadPane;
 
 /**
  * This class represents a command where a label is repositioned by the user.
@@ -30,9 +30,9 @@ public class DragCommand extends Command
 		this.direction = direction;
 	}
 	
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
-		move.getLabel().setDirection(direction);
+		move.setLabelDirection(direction);
 	}
 	
 	public String toString()
@@ -1,9 +1,7 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
 import asypad.shapes.*;
 import asypad.shapes.types.POINT_TYPE;
-import asypad.ui.AsyPadPane;
-import javafx.scene.paint.Color;
 
 /**
  * This class represents a command where the user draws a shape onto the screen.
@@ -41,13 +39,13 @@ public class DrawCommand extends Command
 		}
 	}
 
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
 		if(defaultName == "")
 		{
 			shape.setRemove(false);
 			shape.setHidden(false);
-			shape.setColor(Color.BLACK);
+			shape.setColor(Shape.DEFAULT_COLOR);
 			target.addShape(shape, true);
 		}
 		else
@@ -63,8 +61,8 @@ public class DrawCommand extends Command
 			p.setName(defaultName);
 			p.setRemove(false);
 			p.setHidden(false);
-			p.setColor(Color.BLACK);
-			p.getLabel().setDirection(-Math.PI/4);
+			p.setColor(Shape.DEFAULT_COLOR);
+			p.setLabelDirection(Shape.DEFAULT_LABEL_DIRECTION);
 			target.addShape(p, true);
 		}
 	}
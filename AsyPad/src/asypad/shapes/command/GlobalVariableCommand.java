@@ -1,7 +1,7 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
+import asypad.shapes.Diagram;
 import asypad.shapes.Shape;
-import asypad.ui.AsyPadPane;
 
 /**
  * This class represents a command where the Stroke Width is updated.
@@ -29,7 +29,7 @@ public class GlobalVariableCommand extends Command
 		this.newValue = newValue;
 	}
 	
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
 		if(varName.equals("StrokeWidth"))
 		{
@@ -37,7 +37,19 @@ public class GlobalVariableCommand extends Command
 		}
 		else if(varName.equals("AsyUnitSize"))
 		{
-			AsyPadPane.AsyUnitSize = newValue;
+			Diagram.AsyUnitSize = newValue;
+		}
+		else if(varName.equals("CanvasThreshold"))
+		{
+			Diagram.CanvasThreshold = newValue;
+		}
+		else if(varName.equals("LabelThreshold"))
+		{
+			Diagram.LabelThreshold = newValue;
+		}
+		else if(varName.equals("DetailThreshold"))
+		{
+			Diagram.DetailThreshold = newValue;
 		}
 		target.update();
 	}
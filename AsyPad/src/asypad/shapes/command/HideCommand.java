@@ -1,7 +1,7 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
+import asypad.shapes.Diagram;
 import asypad.shapes.Shape;
-import asypad.ui.AsyPadPane;
 
 /**
  * This class represents a command where shapes are hidden/shown.
@@ -37,7 +37,7 @@ public class HideCommand extends Command
 		showAll = true;
 	}
 
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
 		if(!showAll)
 		{
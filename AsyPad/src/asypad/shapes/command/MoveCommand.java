@@ -1,8 +1,8 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
+import asypad.shapes.Diagram;
 import asypad.shapes.Point;
 import asypad.shapes.types.POINT_TYPE;
-import asypad.ui.AsyPadPane;
 
 /**
  * This class represents a command where a point is moved by the user.
@@ -38,7 +38,7 @@ public class MoveCommand extends Command
 		this.y = y;
 	}
 	
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
 		if(move.getType() == POINT_TYPE.POINT)
 		{
@@ -1,7 +1,7 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
+import asypad.shapes.Diagram;
 import asypad.shapes.Point;
-import asypad.ui.AsyPadPane;
 
 /**
  * This class represents a command where a point is renamed.
@@ -30,10 +30,9 @@ public class RenameCommand extends Command
 		this.newName = newName;
 	}
 
-	public void doAction(AsyPadPane target) 
+	public void doAction(Diagram target) 
 	{
 		rename.setName(newName);
-		rename.refreshName();
 	}
 	
 	public String toString()
@@ -1,9 +1,10 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
-import asypad.ui.AsyPadPane;
+import asypad.shapes.Diagram;
 
 /**
- * This class represents a translation.
+ * This class represents a translation that moves the points of the diagram.
+ * Panning in the pane only changes the view, so these commands only come from files saved by earlier versions.
  * @author Raymond Feng
  */
 public class TranslateCommand extends Command
@@ -24,7 +25,7 @@ public class TranslateCommand extends Command
 		this.dy = dy;
 	}
 	
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
 		target.translate(dx, dy);
 	}
@@ -1,9 +1,10 @@
-package asypad.ui.command;
+package asypad.shapes.command;
 
-import asypad.ui.AsyPadPane;
+import asypad.shapes.Diagram;
 
 /**
- * This class represents a zooming action.
+ * This class represents a zooming action that moves the points of the diagram.
+ * Zooming in the pane only changes the view, so these commands only come from files saved by earlier versions.
  * @author Raymond Feng
  */
 public class ZoomCommand extends Command
@@ -31,7 +32,7 @@ public class ZoomCommand extends Command
 		this.factor = factor;
 	}
 	
-	public void doAction(AsyPadPane target)
+	public void doAction(Diagram target)
 	{
 		target.zoom(zx, zy, factor);
 	}
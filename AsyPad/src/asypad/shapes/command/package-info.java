@@ -2,4 +2,4 @@
  * Package that includes classes to store user commands for implementation of undo/redo features.
  * @author Raymond Feng
  */
-package asypad.ui.command;
\ No newline at end of file
+package asypad.shapes.command;
\ No newline at end of file
@@ -1,5 +0,0 @@
-/**
- * Package containing the draggable labels that are used in AsyPad.
- * @author Raymond Feng
- */
-package asypad.shapes.labels;
\ No newline at end of file
@@ -2,7 +2,9 @@
  * This package contains the shapes that are used to store the shapes drawn onto the screen
  * by the user. The superclass, {@code Shape}, has 3 subclasses: {@code Point}, {@code Line},
  * and {@code Circle}. The {@code Utility} class provides all the math tools needed to 
- * calculate the locations of these shapes.
+ * calculate the locations of these shapes. The {@code Diagram} class holds the shapes of a drawing
+ * together with its commands, which are in {@code asypad.shapes.command}.
+ * None of these classes depend on JavaFX or on {@code asypad.ui}.
  * @author Raymond Feng
  */
 package asypad.shapes;
\ No newline at end of file
@@ -32,8 +32,11 @@ import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Optional;
 
+import asypad.shapes.Diagram;
+
 /**
  * AsyPad: A simple drawing tool that can convert diagrams into Asymptote code.
  * @author Raymond Feng
@@ -44,7 +47,7 @@ public class AsyPad extends Application
 	/**
 	 * Version number of AsyPad.
 	 */
-	public static final String VERSION = "2.0";
+	public static final String VERSION = Diagram.VERSION;
 
 	/**
 	 * Operating system the AsyPad is running on.
@@ -54,12 +57,12 @@ public class AsyPad extends Application
 	/**
 	 * Default width of application window.
 	 */
-	public static final double DEFAULT_WIDTH = 1000;
+	public static final double DEFAULT_WIDTH = Diagram.DEFAULT_WIDTH;
 	
 	/**
 	 * Default height of application window.
 	 */
-	public static final double DEFAULT_HEIGHT = 700;
+	public static final double DEFAULT_HEIGHT = Diagram.DEFAULT_HEIGHT;
 
 	/**
 	 * The main component of the AsyPad Application.
@@ -95,8 +98,16 @@ public class AsyPad extends Application
 		{
 			if(args.length == 2 && args[1].endsWith(".apad"))
 			{
-				AsyPadPane converter = new AsyPadPane();
-				converter.loadApad(new File(args[1]));
+				//conversion only needs the diagram model, so no JavaFX toolkit is started
+				Diagram converter = new Diagram();
+				try
+				{
+					converter.loadApad(new File(args[1]));
+				}
+				catch(IOException ioe)
+				{
+					throw new AsyPadException("Could not read " + args[1] + ".");
+				}
 				String latex = "\\begin{center}\n\\begin{asy}\n" + converter.toAsymptote() + "\n\\end{asy}\n\\end{center}";
 				System.out.println(latex);
 			}
@@ -10,7 +10,7 @@ package asypad.ui;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
 
 import javafx.animation.AnimationTimer;
 import javafx.event.*;
@@ -22,10 +22,11 @@ import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import asypad.shapes.*;
+import asypad.shapes.command.*;
 import asypad.shapes.types.*;
 import asypad.shapes.types.SHAPE_TYPE.MOUSE;
-import asypad.ui.command.*;
 import asypad.ui.menus.*;
+import asypad.ui.render.*;
 
 /**
  * A special drawing pane that interacts with the user and can be integrated into
@@ -36,40 +37,40 @@ import asypad.ui.menus.*;
 public class AsyPadPane extends Pane
 {
 	/**
-	 * Default asymptote unit size.
+	 * The diagram that is drawn on this pane.
 	 */
-	public static final double DEFAULT_ASY_UNIT_SIZE = 1;
-	
-	/**
-	 * Current width of the pane.
-	 */
-	public static double CurrentWidth = AsyPad.DEFAULT_WIDTH;
-	
+	private Diagram diagram;
+
 	/**
-	 * Current height of the pane.
+	 * Renderer that draws the shapes of the diagram onto this pane.
 	 */
-	public static double CurrentHeight = AsyPad.DEFAULT_HEIGHT;
-	
+	private ShapeRenderer renderer;
+
 	/**
-	 * Unit size for Asymptote conversion.
+	 * Collects the changes made by drags, scrolls and zoom gestures and applies them once per pulse.
 	 */
-	public static double AsyUnitSize = DEFAULT_ASY_UNIT_SIZE;
-	
+	private InputCoalescer input;
+
 	/**
-	 * ArrayList of all drawn Shapes.
+	 * ArrayList of all drawn Shapes (owned by the diagram).
 	 */
 	private ArrayList<Shape> shapes;
 
 	/**
-	 * Index pointing to the shape that the mouse is snapped to.
+	 * The shape that the mouse is snapped to, or null if it is not snapped to a shape.
 	 */
-	private int snappedIndex;
+	private Shape snappedShape;
 
 	/**
 	 * Whether the mouse has been dragging a shape.
 	 */
 	private boolean shapeDragged;
 
+	/**
+	 * The point being dragged with the mouse, or null if no point is being dragged.
+	 */
+	private DragSession dragSession;
+
 	/**
 	 * ArrayList of user selected shapes.
 	 */
@@ -80,16 +81,6 @@ public class AsyPadPane extends Pane
 	 */
 	private ArrayList<Shape> snappedShapes;
 
-	/**
-	 * ArrayList of commands that stores previous states of the AsyPadPane for undo/redo.
-	 */
-	private ArrayList<Command> commands;
-
-	/**
-	 * The index that points to the position of the last command in the AsyPadPane.
-	 */
-	private int currentCommandIndex;
-
 	/**
 	 * Specifies the strength of the snapping system, i.e. how close the mouse has to be to snap to a shape.
 	 */
@@ -120,6 +111,11 @@ public class AsyPadPane extends Pane
 	 */
 	private Color selected;
 
+	/**
+	 * Shape that was already drawn when an equivalent shape was added, highlighted until the next mouse press.
+	 */
+	private Shape existing;
+
 	/**
 	 * ColorPicker option which saves custom colors during the session.
 	 */
@@ -130,27 +126,30 @@ public class AsyPadPane extends Pane
 	 */
 	private double pmouseX, pmouseY;
 
-	/**
-	 * Total translated amount (accumulated over a single gesture).
-	 */
-	private double totalTranslateX, totalTranslateY;
-
-	/**
-	 * Total scrolled amount (accumulated over a single gesture).
-	 */
-	private double totalScroll;
-
 	/**
 	 * Creates an AsyPadPane layout.
 	 */
 	public AsyPadPane()
 	{
 		super();
-		shapes = new ArrayList<Shape>();
+		diagram = new Diagram();
+		renderer = new ShapeRenderer(this);
+		input = new InputCoalescer(diagram, renderer);
+		shapes = diagram.getShapes();
+		diagram.addListener(new DiagramListener()
+		{
+			public void shapesChanged(List<Shape> changed)
+			{
+				renderer.sync(changed);
+			}
+
+			public void diagramUpdated()
+			{
+				renderer.update(shapes);
+			}
+		});
 		selectedShapes = new ArrayList<Shape>();
 		snappedShapes = new ArrayList<Shape>();
-		commands = new ArrayList<Command>();
-		currentCommandIndex = -1;
 		currentLine = new javafx.scene.shape.Line();
 		currentCircle = new javafx.scene.shape.Circle();
 		currentCircle.setFill(Color.TRANSPARENT);
@@ -159,9 +158,6 @@ public class AsyPadPane extends Pane
 		colorPicker = new ColorPicker();
 		pmouseX = 0;
 		pmouseY = 0;
-		totalTranslateX = 0;
-		totalTranslateY = 0;
-		totalScroll = 0;
 
 		AsyPadMenuBar menus = new AsyPadMenuBar(this);
 		AsyPadToolBar tools = new AsyPadToolBar(this);
@@ -183,6 +179,7 @@ public class AsyPadPane extends Pane
 				if(event.getCode() == KeyCode.ESCAPE)
 				{
 					resetSelectedShapes();
+					resetExisting();
 					if(getChildren().contains(currentLine))
 					{
 						getChildren().remove(currentLine);
@@ -199,27 +196,27 @@ public class AsyPadPane extends Pane
 		{
 			public void handle(MouseEvent event)
 			{
-				snappedIndex = -1;
+				snappedShape = null;
 				snappedShapes.clear();
-				for(Shape s : shapes)
+				//shapes snap from the same distance on the screen however far the view is zoomed
+				double mx = diagramX(event.getSceneX()), my = diagramY(event.getSceneY());
+				double snapDistance = snapForce/renderer.getView().getScale();
+				for(Shape s : renderer.shapesNear(mx, my, snapDistance))
 				{
-					if(getChildren().contains(s.getObject()))
+					if(Utility.distToShape(mx, my, s) < snapDistance)
 					{
-						if(Utility.distToShape(event.getSceneX(), event.getSceneY(), s) < snapForce)
+						setCursor(Cursor.HAND);
+						if(snappedShape == null || !(snappedShape instanceof Point))
 						{
-							setCursor(Cursor.HAND);
-							if(snappedIndex == -1 || !(shapes.get(snappedIndex) instanceof Point))
-							{
-								snappedIndex = shapes.indexOf(s);
-							}
-							if(!(s instanceof Point))
-							{
-								snappedShapes.add(s);
-							}
+							snappedShape = s;
+						}
+						if(!(s instanceof Point))
+						{
+							snappedShapes.add(s);
 						}
 					}
 				}
-				if(snappedIndex == -1)
+				if(snappedShape == null)
 				{
 					if(tools.getSelectedTool() == MOUSE.MOUSE)
 					{
@@ -235,11 +232,11 @@ public class AsyPadPane extends Pane
 					{
 						Line l;
 						Point p = (Point) selectedShapes.get(0);
-						double x = event.getSceneX();
-						double y = event.getSceneY();
-						if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point)
+						double x = diagramX(event.getSceneX());
+						double y = diagramY(event.getSceneY());
+						if(snappedShape != null && snappedShape instanceof Point)
 						{
-							Point point = (Point) shapes.get(snappedIndex);
+							Point point = (Point) snappedShape;
 							x = point.getX();
 							y = point.getY();
 						} 
@@ -251,7 +248,7 @@ public class AsyPadPane extends Pane
 						{
 							l = new Line(p, new Point(x, y), false);
 						}
-						setCurrentLine(l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY());
+						setCurrentLine(l);
 					}
 				}
 				else if(tool == LINE_TYPE.PARALLEL_LINE || tool == LINE_TYPE.PERPENDICULAR_LINE)
@@ -259,11 +256,11 @@ public class AsyPadPane extends Pane
 					if(selectedShapes.size() == 1 && selectedShapes.get(0) instanceof Line)
 					{
 						Line l;
-						double x = event.getSceneX();
-						double y = event.getSceneY();
-						if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point)
+						double x = diagramX(event.getSceneX());
+						double y = diagramY(event.getSceneY());
+						if(snappedShape != null && snappedShape instanceof Point)
 						{
-							Point point = (Point) shapes.get(snappedIndex);
+							Point point = (Point) snappedShape;
 							x = point.getX();
 							y = point.getY();
 						}
@@ -275,7 +272,7 @@ public class AsyPadPane extends Pane
 						{
 							l = new Line(new Point(x, y), (Line) selectedShapes.get(0), false);
 						}
-						setCurrentLine(l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY());
+						setCurrentLine(l);
 					}
 				}
 				else if(tool == CIRCLE_TYPE.CIRCLE)
@@ -283,11 +280,11 @@ public class AsyPadPane extends Pane
 					if(selectedShapes.size() == 1)
 					{
 						Point p = (Point) selectedShapes.get(0);
-						double x = event.getSceneX();
-						double y = event.getSceneY();
-						if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point)
+						double x = diagramX(event.getSceneX());
+						double y = diagramY(event.getSceneY());
+						if(snappedShape != null && snappedShape instanceof Point)
 						{
-							Point point = (Point) shapes.get(snappedIndex);
+							Point point = (Point) snappedShape;
 							x = point.getX();
 							y = point.getY();
 						}
@@ -301,11 +298,11 @@ public class AsyPadPane extends Pane
 					{
 						Point p1 = (Point) selectedShapes.get(0);
 						Point p2 = (Point) selectedShapes.get(1);
-						double x = event.getSceneX();
-						double y = event.getSceneY();
-						if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point)
+						double x = diagramX(event.getSceneX());
+						double y = diagramY(event.getSceneY());
+						if(snappedShape != null && snappedShape instanceof Point)
 						{
-							Point point = (Point) shapes.get(snappedIndex);
+							Point point = (Point) snappedShape;
 							x = point.getX();
 							y = point.getY();
 							if(point == p1 || point == p2)
@@ -324,11 +321,11 @@ public class AsyPadPane extends Pane
 					{
 						Point p1 = (Point) selectedShapes.get(0);
 						Point p2 = (Point) selectedShapes.get(1);
-						double x = event.getSceneX();
-						double y = event.getSceneY();
-						if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point)
+						double x = diagramX(event.getSceneX());
+						double y = diagramY(event.getSceneY());
+						if(snappedShape != null && snappedShape instanceof Point)
 						{
-							Point point = (Point) shapes.get(snappedIndex);
+							Point point = (Point) snappedShape;
 							x = point.getX();
 							y = point.getY();
 							if(point == p1 || point == p2)
@@ -347,26 +344,36 @@ public class AsyPadPane extends Pane
 		{
 			public void handle(MouseEvent event)
 			{
+				input.flush();
+				resetExisting();
 				SHAPE_TYPE tool = tools.getSelectedTool();
 				if(tool == MOUSE.MOUSE || tool instanceof POINT_TYPE)
 				{
-					if(snappedIndex == -1 && tool == MOUSE.MOUSE)
+					if(snappedShape == null && tool == MOUSE.MOUSE)
 					{
 						setCursor(Cursor.CLOSED_HAND);
 					}
-					if(snappedIndex != -1 && (event.getClickCount() == 2 || event.isSecondaryButtonDown()))
+					if(snappedShape != null && (event.getClickCount() == 2 || event.isSecondaryButtonDown()))
+					{
+						showConfigureShape(snappedShape);
+					}
+					else if(snappedShape != null)
 					{
-						showConfigureShape(shapes.get(snappedIndex));
+						Shape s = snappedShape;
+						if(s.getType() == POINT_TYPE.POINT || s.getType() == POINT_TYPE.POINT_ON_SHAPE)
+						{
+							dragSession = new DragSession(diagram, (Point) s);
+						}
 					}
 				}
 				if(tool == MOUSE.DELETE)
 				{
-					if(snappedIndex != -1)
+					if(snappedShape != null)
 					{
-						addCommand(new DeleteCommand(shapes.get(snappedIndex)));
-						shapes.get(snappedIndex).delete();
+						addCommand(new DeleteCommand(snappedShape));
+						snappedShape.delete();
 						update();
-						snappedIndex = -1;
+						snappedShape = null;
 					}
 				}
 				else if(tool == POINT_TYPE.POINT)
@@ -384,35 +391,35 @@ public class AsyPadPane extends Pane
 							circles.add((Circle) s);
 						}
 					}
-					if(snappedIndex == -1)
+					if(snappedShape == null)
 					{
-						Point p = new Point(event.getSceneX(), event.getSceneY(), nextPointName(1));
+						Point p = new Point(diagramX(event.getSceneX()), diagramY(event.getSceneY()), diagram.nextPointName());
 						addShape(p);
 						//snappedIndex = shapes.size()-1;
 						setCursor(Cursor.HAND);
 					}
-					else if(shapes.get(snappedIndex) instanceof Point) 
+					else if(snappedShape instanceof Point) 
 					{
 						//dont draw a point over another point
 						return;
 					}
 					else if(snappedShapes.size() == 1)
 					{
-						Point p = new Point(event.getSceneX(), event.getSceneY(), shapes.get(snappedIndex), nextPointName(1));
+						Point p = new Point(diagramX(event.getSceneX()), diagramY(event.getSceneY()), snappedShape, diagram.nextPointName());
 						addShape(p);
 						//snappedIndex = shapes.size()-1;
 						setCursor(Cursor.HAND);
 					}
 					else
 					{
-						createIntersectionPoint(event.getSceneX(), event.getSceneY(), lines, circles);
+						createIntersectionPoint(diagramX(event.getSceneX()), diagramY(event.getSceneY()), lines, circles);
 					}
 				}
 				else if(tool == POINT_TYPE.POINT_ON_SHAPE)
 				{
-					if(snappedIndex != -1 && !(shapes.get(snappedIndex) instanceof Point))
+					if(snappedShape != null && !(snappedShape instanceof Point))
 					{
-						Point p = new Point(event.getSceneX(), event.getSceneY(), shapes.get(snappedIndex), nextPointName(1));
+						Point p = new Point(diagramX(event.getSceneX()), diagramY(event.getSceneY()), snappedShape, diagram.nextPointName());
 						addShape(p);
 						//snappedIndex = shapes.size()-1;
 						setCursor(Cursor.HAND);
@@ -420,12 +427,12 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == POINT_TYPE.INTERSECTION_POINT)
 				{
-					if(snappedIndex != -1)
+					if(snappedShape != null)
 					{
-						if(shapes.get(snappedIndex) instanceof Point) return;
+						if(snappedShape instanceof Point) return;
 						else if(snappedShapes.size() == 1)
 						{
-							if(!selectedShapes.contains(shapes.get(snappedIndex))) selectedShapes.add(shapes.get(snappedIndex));
+							if(!selectedShapes.contains(snappedShape)) selectedShapes.add(snappedShape);
 						}
 					}
 					if(selectedShapes.isEmpty())
@@ -443,7 +450,7 @@ public class AsyPadPane extends Pane
 								circles.add((Circle) s);
 							}
 						}
-						createIntersectionPoint(event.getSceneX(), event.getSceneY(), lines, circles);
+						createIntersectionPoint(diagramX(event.getSceneX()), diagramY(event.getSceneY()), lines, circles);
 					}
 					else if(selectedShapes.size() == 2)
 					{
@@ -454,18 +461,18 @@ public class AsyPadPane extends Pane
 						else circles.add((Circle)s1);
 						if(s2 instanceof Line) lines.add((Line)s2);
 						else circles.add((Circle)s2);
-						createIntersectionPoint(event.getSceneX(), event.getSceneY(), lines, circles);
+						createIntersectionPoint(diagramX(event.getSceneX()), diagramY(event.getSceneY()), lines, circles);
 						resetSelectedShapes();
 					}
 				}
 				else if(tool == POINT_TYPE.MIDPOINT)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point) selectedShapes.add(shapes.get(snappedIndex));
+					if(snappedShape != null && snappedShape instanceof Point) selectedShapes.add(snappedShape);
 					if(selectedShapes.size() == 2)
 					{
 						if(selectedShapes.get(0) != selectedShapes.get(1))
 						{
-							Point p = new Point((Point) selectedShapes.get(0), (Point) selectedShapes.get(1), nextPointName(1));
+							Point p = new Point((Point) selectedShapes.get(0), (Point) selectedShapes.get(1), diagram.nextPointName());
 							addShape(p);
 						}
 						resetSelectedShapes();
@@ -473,7 +480,7 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == LINE_TYPE.SEGMENT || tool == LINE_TYPE.LINE)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point) selectedShapes.add(shapes.get(snappedIndex));
+					if(snappedShape != null && snappedShape instanceof Point) selectedShapes.add(snappedShape);
 					if(selectedShapes.size() == 2)
 					{
 						if(selectedShapes.get(0) != selectedShapes.get(1))
@@ -495,26 +502,26 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == LINE_TYPE.PARALLEL_LINE || tool == LINE_TYPE.PERPENDICULAR_LINE)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point)
+					if(snappedShape != null && snappedShape instanceof Point)
 					{
 						if(selectedShapes.size() == 0)
 						{
-							selectedShapes.add(shapes.get(snappedIndex));
+							selectedShapes.add(snappedShape);
 						}
 						else if(selectedShapes.size() == 1 && selectedShapes.get(0) instanceof Line)
 						{
-							selectedShapes.add(shapes.get(snappedIndex));
+							selectedShapes.add(snappedShape);
 						}
 					}
-					else if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Line)
+					else if(snappedShape != null && snappedShape instanceof Line)
 					{
 						if(selectedShapes.size() == 0)
 						{
-							selectedShapes.add(shapes.get(snappedIndex));
+							selectedShapes.add(snappedShape);
 						}
 						else if(selectedShapes.size() == 1 && selectedShapes.get(0) instanceof Point)
 						{
-							selectedShapes.add(shapes.get(snappedIndex));
+							selectedShapes.add(snappedShape);
 						}
 					}
 					if(selectedShapes.size() == 2)
@@ -551,7 +558,7 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == LINE_TYPE.ANGLE_BISECTOR)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point) selectedShapes.add(shapes.get(snappedIndex));
+					if(snappedShape != null && snappedShape instanceof Point) selectedShapes.add(snappedShape);
 					if(selectedShapes.size() == 3)
 					{
 						Point p1 = (Point) selectedShapes.get(0);
@@ -567,7 +574,7 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == LINE_TYPE.PERPENDICULAR_BISECTOR)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point) selectedShapes.add(shapes.get(snappedIndex));
+					if(snappedShape != null && snappedShape instanceof Point) selectedShapes.add(snappedShape);
 					if(selectedShapes.size() == 2)
 					{
 						if(selectedShapes.get(0) != selectedShapes.get(1))
@@ -580,26 +587,26 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == LINE_TYPE.TANGENT_LINE)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point)
+					if(snappedShape != null && snappedShape instanceof Point)
 					{
 						if(selectedShapes.size() == 0)
 						{
-							selectedShapes.add(shapes.get(snappedIndex));
+							selectedShapes.add(snappedShape);
 						}
 						else if(selectedShapes.size() == 1 && selectedShapes.get(0) instanceof Circle)
 						{
-							selectedShapes.add(shapes.get(snappedIndex));
+							selectedShapes.add(snappedShape);
 						}
 					}
-					else if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Circle)
+					else if(snappedShape != null && snappedShape instanceof Circle)
 					{
 						if(selectedShapes.size() == 0)
 						{
-							selectedShapes.add(shapes.get(snappedIndex));
+							selectedShapes.add(snappedShape);
 						}
 						else if(selectedShapes.size() == 1 && selectedShapes.get(0) instanceof Point)
 						{
-							selectedShapes.add(shapes.get(snappedIndex));
+							selectedShapes.add(snappedShape);
 						}
 					}
 					if(selectedShapes.size() == 2)
@@ -622,13 +629,14 @@ public class AsyPadPane extends Pane
 							Line l = new Line(p, c, false);
 							addShape(l);
 						}
-						else if(dist > c.getRadius())
+						else if(Predicates.circleSide(p.getX(), p.getY(), c.getCenterX(), c.getCenterY(), c.getRadius()) > 0)
 						{
-							Point p1 = new Point(Utility.tangentX(p.getX(), p.getY(), c, false), Utility.tangentY(p.getX(), p.getY(), c, false));
-							Point p2 = new Point(Utility.tangentX(p.getX(), p.getY(), c, true), Utility.tangentY(p.getX(), p.getY(), c, true));
-							double mx = event.getSceneX();
-							double my = event.getSceneY();
-							if(Utility.dist(mx, my, p1.getX(), p1.getY()) < Utility.dist(mx, my, p2.getX(), p2.getY()))
+							double[] t1 = new double[2], t2 = new double[2];
+							GeometryKernel.tangent(p.getX(), p.getY(), c.getCenterX(), c.getCenterY(), c.getRadius(), false, t1);
+							GeometryKernel.tangent(p.getX(), p.getY(), c.getCenterX(), c.getCenterY(), c.getRadius(), true, t2);
+							double mx = diagramX(event.getSceneX());
+							double my = diagramY(event.getSceneY());
+							if(Utility.dist(mx, my, t1[0], t1[1]) < Utility.dist(mx, my, t2[0], t2[1]))
 							{
 								Line l = new Line(p, c, false);
 								addShape(l);
@@ -645,7 +653,7 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == CIRCLE_TYPE.CIRCLE)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point) selectedShapes.add(shapes.get(snappedIndex));
+					if(snappedShape != null && snappedShape instanceof Point) selectedShapes.add(snappedShape);
 					if(selectedShapes.size() == 2)
 					{
 						if(selectedShapes.get(0) != selectedShapes.get(1))
@@ -659,7 +667,7 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == CIRCLE_TYPE.CIRCUMCIRCLE)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point) selectedShapes.add(shapes.get(snappedIndex));
+					if(snappedShape != null && snappedShape instanceof Point) selectedShapes.add(snappedShape);
 					if(selectedShapes.size() == 3)
 					{
 						Point p1 = (Point) selectedShapes.get(0);
@@ -676,7 +684,7 @@ public class AsyPadPane extends Pane
 				}
 				else if(tool == CIRCLE_TYPE.INCIRCLE)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point) selectedShapes.add(shapes.get(snappedIndex));
+					if(snappedShape != null && snappedShape instanceof Point) selectedShapes.add(snappedShape);
 					if(selectedShapes.size() == 3)
 					{
 						Point p1 = (Point) selectedShapes.get(0);
@@ -693,9 +701,9 @@ public class AsyPadPane extends Pane
 				}
 				/*else if(tool == CIRCLE_TYPE.TANGENT_CIRCLE)
 				{
-					if(snappedIndex != -1)
+					if(snappedShape != null)
 					{
-						Shape selected = shapes.get(snappedIndex);
+						Shape selected = snappedShape;
 						if(selected instanceof Point)
 						{
 							int numPoints = 0;
@@ -760,7 +768,6 @@ public class AsyPadPane extends Pane
 				pmouseY = event.getSceneY();
 
 				setSelectedShapes();
-				clearGarbage();
 			}
 		});
 		this.setOnMouseDragged(new EventHandler<MouseEvent>()
@@ -770,45 +777,41 @@ public class AsyPadPane extends Pane
 				SHAPE_TYPE tool = tools.getSelectedTool();
 				if(tool == MOUSE.MOUSE || tool instanceof POINT_TYPE)
 				{
-					if(snappedIndex != -1)
+					if(snappedShape != null)
 					{
-						Shape s = shapes.get(snappedIndex);
-						if(s.getType() == POINT_TYPE.POINT)
-						{
-							shapeDragged = true;
-							((Point) s).setX(Math.max(0, event.getSceneX()));
-							((Point) s).setY(Math.max(0, event.getSceneY()));
-						}
-						else if(s.getType() == POINT_TYPE.POINT_ON_SHAPE)
+						if(dragSession != null)
 						{
 							shapeDragged = true;
-							((Point) s).setRelativeLocation(event.getSceneX(), event.getSceneY());
+							if(dragSession.getPoint().getType() == POINT_TYPE.POINT)
+							{
+								input.moveTo(dragSession, diagramX(Math.max(0, event.getSceneX())), diagramY(Math.max(0, event.getSceneY())));
+							}
+							else
+							{
+								input.moveTo(dragSession, diagramX(event.getSceneX()), diagramY(event.getSceneY()));
+							}
 						}
 					}
 					else if(tool == MOUSE.MOUSE)
 					{
 						//setCursor(Cursor.CLOSED_HAND);
-						double dx = event.getSceneX()-pmouseX;
-						double dy = event.getSceneY()-pmouseY;
-						totalTranslateX += dx;
-						totalTranslateY += dy;
-						translate(dx, dy);
+						input.translate(event.getSceneX()-pmouseX, event.getSceneY()-pmouseY);
 					}
 				}
 				else if(tool == MOUSE.DRAG)
 				{
-					if(snappedIndex != -1 && shapes.get(snappedIndex) instanceof Point)
+					if(snappedShape != null && snappedShape instanceof Point)
 					{
 						shapeDragged = true;
-						Point p = (Point) shapes.get(snappedIndex);
-						double cx = event.getSceneX();
-						double cy = event.getSceneY();
+						Point p = (Point) snappedShape;
+						double cx = diagramX(event.getSceneX());
+						double cy = diagramY(event.getSceneY());
 						double direction = 0;
 						double x = p.getX()+(cx-p.getX())/Utility.dist(cx, cy, p.getX(), p.getY());
 						double y = p.getY()+(cy-p.getY())/Utility.dist(cx, cy, p.getX(), p.getY());
 						direction = Math.atan((y-p.getY())/(x-p.getX()));
 						if(x < p.getX()) direction += Math.PI;
-						p.getLabel().setDirection(-direction);
+						input.setLabelDirection(p, -direction);
 					}
 				}
 
@@ -820,97 +823,96 @@ public class AsyPadPane extends Pane
 		{
 			public void handle(MouseEvent event)
 			{
+				input.flush();
 				SHAPE_TYPE tool = tools.getSelectedTool();
 				if(shapeDragged)
 				{
 					if(tool == MOUSE.MOUSE || tool instanceof POINT_TYPE)
 					{
-						Shape s = shapes.get(snappedIndex);
-						if(s.getType() == POINT_TYPE.POINT)
+						Point p = dragSession.getPoint();
+						if(p.getType() == POINT_TYPE.POINT)
 						{
-							double x = Math.max(0, event.getSceneX());
-							double y = Math.max(0, event.getSceneY());
-							((Point) s).setX(x);
-							((Point) s).setY(y);
-							addCommand(new MoveCommand((Point) s, x, y));
+							double x = diagramX(Math.max(0, event.getSceneX()));
+							double y = diagramY(Math.max(0, event.getSceneY()));
+							dragSession.moveTo(x, y);
+							addCommand(new MoveCommand(p, x, y));
 						}
-						else if(s.getType() == POINT_TYPE.POINT_ON_SHAPE)
+						else
 						{
-							((Point) s).setRelativeLocation(event.getSceneX(), event.getSceneY());
-							addCommand(new MoveCommand((Point) s, event.getSceneX(), event.getSceneY()));
+							double x = diagramX(event.getSceneX());
+							double y = diagramY(event.getSceneY());
+							dragSession.moveTo(x, y);
+							addCommand(new MoveCommand(p, x, y));
 						}
 					}
 					else if(tool == MOUSE.DRAG)
 					{
-						Point p = (Point) shapes.get(snappedIndex);
-						double cx = event.getSceneX();
-						double cy = event.getSceneY();
+						Point p = (Point) snappedShape;
+						double cx = diagramX(event.getSceneX());
+						double cy = diagramY(event.getSceneY());
 						double direction = 0;
 						double x = p.getX()+(cx-p.getX())/Utility.dist(cx, cy, p.getX(), p.getY());
 						double y = p.getY()+(cy-p.getY())/Utility.dist(cx, cy, p.getX(), p.getY());
 						direction = Math.atan((y-p.getY())/(x-p.getX()));
 						if(x < p.getX()) direction += Math.PI;
-						p.getLabel().setDirection(-direction);
+						diagram.beginTransaction();
+						p.setLabelDirection(-direction);
+						diagram.commitTransaction();
 						addCommand(new DragCommand(p, -direction));
 					}
 				}
 				if(getCursor() == Cursor.CLOSED_HAND)
 				{
 					setCursor(Cursor.OPEN_HAND);
-					addCommand(new TranslateCommand(totalTranslateX, totalTranslateY));
-					totalTranslateX = 0;
-					totalTranslateY = 0;
 				}
 				shapeDragged = false;
+				dragSession = null;
 			}
 		});
 
-		//handle zooming with zoom gesture or scrolling
+		//handle zooming with zoom gesture or scrolling, which only changes the view and so is not added to the commands
 		this.setOnZoom(new EventHandler<ZoomEvent>()
 		{
 			public void handle(ZoomEvent event)
 			{
-				zoom(event.getSceneX(), event.getSceneY(), event.getZoomFactor());
+				input.zoom(event.getSceneX(), event.getSceneY(), event.getZoomFactor());
 			}
 		});
 		this.setOnZoomFinished(new EventHandler<ZoomEvent>()
 		{
 			public void handle(ZoomEvent event)
 			{
-				addCommand(new ZoomCommand(event.getSceneX(), event.getSceneY(), event.getTotalZoomFactor()));
+				input.flush();
 			}
 		});
 		this.setOnScroll(new EventHandler<ScrollEvent>()
 		{
-			private int framesMissed = 0;
 			public void handle(ScrollEvent event)
 			{
-				framesMissed = 0;
-				if(totalScroll == 0)
-				{
-					AnimationTimer update = new AnimationTimer()
-					{
-						public void handle(long now)
-						{
-							if(framesMissed >= 10) //missing greater than 10 frames means scroll is over
-							{
-								addCommand(new ZoomCommand(event.getSceneX(), event.getSceneY(), Math.pow(Math.E, totalScroll/5000)));
-								totalScroll = 0;
-								stop();
-							}
-							framesMissed++;
-						}
-					};
-					update.start();
-				}
 				double factor = Math.pow(Math.E, event.getDeltaY()/5000);
-				totalScroll += event.getDeltaY();
-				//System.out.println(totalScroll);
-				zoom(event.getSceneX(), event.getSceneY(), factor);
+				input.zoom(event.getSceneX(), event.getSceneY(), factor);
 			}
 		});
 	}
 
+	/**
+	 * Returns the diagram drawn on this pane.
+	 * @return diagram
+	 */
+	public Diagram getDiagram()
+	{
+		return diagram;
+	}
+
+	/**
+	 * Returns the collector of the changes made by drags, scrolls and zoom gestures on this pane.
+	 * @return input coalescer
+	 */
+	public InputCoalescer getInput()
+	{
+		return input;
+	}
+
 	/**
 	 * Returns the shapes in this pane.
 	 * @return shapes
@@ -922,16 +924,26 @@ public class AsyPadPane extends Pane
 
 	/**
 	 * Adds a new shape to this pane, checking whether a shape with the same name already exists and adding a draw command into the command list.
+	 * If the shape is already drawn, the drawn shape is highlighted instead.
 	 * @param shape shape to add
+	 * @return the added shape, the drawn shape that is equivalent to it, or null if neither exists
 	 */
-	public void addShape(Shape shape)
+	public Shape addShape(Shape shape)
 	{
-		if(isDuplicateName(shape.getName())) return;
-		addCommand(new DrawCommand(shape));
-		shapes.add(shape);
-		shape.draw(this);
-		shape.getObject().toBack();
-		shape.getLabel().toBack();
+		if(diagram.addShape(shape))
+		{
+			renderer.add(shape);
+			return shape;
+		}
+		Shape s = diagram.findEquivalent(shape);
+		if(s == null) s = diagram.findShapeByName(shape.getName());
+		if(s != null)
+		{
+			resetExisting();
+			existing = s;
+			renderer.highlight(existing, selected);
+		}
+		return s;
 	}
 
 	/**
@@ -941,14 +953,7 @@ public class AsyPadPane extends Pane
 	 */
 	public void addShape(Shape shape, boolean bypass)
 	{
-		if(!bypass) addShape(shape);
-		else
-		{
-			shapes.add(shape);
-			shape.draw(this);
-			shape.getObject().toBack();
-			shape.getLabel().toBack();
-		}
+		if(diagram.addShape(shape, bypass)) renderer.add(shape);
 	}
 
 	/**
@@ -970,22 +975,17 @@ public class AsyPadPane extends Pane
 	 */
 	public Shape findShapeByName(String name)
 	{
-		for(Shape s : shapes)
-		{
-			if(s.getName().equals(name)) return s;
-		}
-		return null;
+		return diagram.findShapeByName(name);
 	}
 
 	/**
-	 * Clears the AsyPadPane by deleting all shapes and resetting the global variables to their defaults.
+	 * Clears the AsyPadPane by deleting all shapes, resetting the global variables to their defaults and resetting the view.
 	 */
 	public void clear()
 	{
-		for(Shape s : shapes) s.delete();
-		update();
-		Shape.StrokeWidth = Shape.DEFAULT_STROKE_WIDTH;
-		AsyUnitSize = DEFAULT_ASY_UNIT_SIZE;
+		input.flush();
+		diagram.clear();
+		resetView();
 	}
 
 	/**
@@ -994,12 +994,7 @@ public class AsyPadPane extends Pane
 	 */
 	public void addCommand(Command c)
 	{
-		while(commands.size()-1 > currentCommandIndex)
-		{
-			commands.remove(commands.size()-1);
-		}
-		commands.add(c);
-		currentCommandIndex++;
+		diagram.addCommand(c);
 	}
 
 	/**
@@ -1007,17 +1002,12 @@ public class AsyPadPane extends Pane
 	 */
 	public void undo()
 	{
+		input.flush();
 		resetSelectedShapes();
 		getChildren().remove(currentLine);
 		getChildren().remove(currentCircle);
 
-		if(currentCommandIndex > -1) currentCommandIndex--;
-		clear();
-		for(int i = 0; i <= currentCommandIndex; i++)
-		{
-			commands.get(i).doAction(this);
-		}
-		update();
+		diagram.undo();
 	}
 
 	/**
@@ -1025,62 +1015,23 @@ public class AsyPadPane extends Pane
 	 */
 	public void redo()
 	{
+		input.flush();
 		resetSelectedShapes();
 		getChildren().remove(currentLine);
 		getChildren().remove(currentCircle);
 
-		if(currentCommandIndex < commands.size()-1)
-		{
-			currentCommandIndex++;
-			commands.get(currentCommandIndex).doAction(this);
-		}
-		update();
+		diagram.redo();
 	}
 
 	/**
 	 * Updates the AsyPadPane by 
 	 * deleting all shapes with {@code remove == true} (this should be called each time {@code delete()} is called on a shape),
 	 * hiding all shapes with {@code hidden == true} and showing shapes with {@code hidden == false} (should be called after each {@code setHidden()} call),
-	 * and refreshing all shapes.
+	 * and refreshing all shapes once each in dependency order.
 	 */
 	public void update()
 	{
-		int MAX = shapes.size();
-		for(int i = 0; i < MAX; i++)
-		{
-			for(Shape s : shapes)
-			{
-				if(s.remove())
-				{
-					shapes.remove(s);
-					getChildren().remove(s.getObject());
-					getChildren().remove(s.getLabel());
-					break;
-				}
-				else if(s.isHidden())
-				{
-					getChildren().remove(s.getObject());
-					getChildren().remove(s.getLabel());
-				}
-				else
-				{
-					if(!getChildren().contains(s.getObject()))
-					{
-						getChildren().add(s.getObject());
-						s.getObject().toBack();
-					}
-					if(!getChildren().contains(s.getLabel()) && s.getLabel() != null)
-					{
-						getChildren().add(s.getLabel());
-						s.getLabel().toBack();
-					}
-				}
-			}
-		}
-		for(Shape s : shapes)
-		{
-			s.refresh();
-		}
+		diagram.update();
 	}
 
 	/**
@@ -1155,111 +1106,55 @@ public class AsyPadPane extends Pane
 	}
 
 	/**
-	 * Translates the entire figure by the given amount.
+	 * Pans the view of the figure by the given amount on the screen. The diagram itself is not changed.
 	 * @param dx translation in x direction
 	 * @param dy translation in y direction
 	 */
 	public void translate(double dx, double dy)
 	{
-		for(Shape s : shapes)
-		{
-			//move all dependency level 0 shapes by dx and dy, all children will follow
-			if(s.getLevel() == 0)
-			{
-				Point p = (Point) s;
-				p.setX(p.getX()+dx);
-				p.setY(p.getY()+dy);
-			}
-		}
-		update();
+		renderer.getView().translate(dx, dy);
+		renderer.viewChanged();
 	}
 
 	/**
-	 * Zooms by the specified factor with respect to the specified location
+	 * Zooms the view of the figure by the specified factor with respect to the specified location on the screen. The diagram itself is not changed.
 	 * @param zx x-coordinate of zoom
 	 * @param zy y-coordinate of zoom
 	 * @param factor zoom factor
 	 */
 	public void zoom(double zx, double zy, double factor)
 	{
-		HashMap<String, Double> targetX = new HashMap<String, Double>();
-		HashMap<String, Double> targetY = new HashMap<String, Double>();
-		//get target locations for all points with degrees of freedom
-		for(Shape s : shapes)
-		{
-			if(s.getLevel() == 0 || s.getType() == POINT_TYPE.POINT_ON_SHAPE)
-			{
-				Point p = (Point) s;
-				targetX.put(p.getName(), zx+factor*(p.getX()-zx));
-				targetY.put(p.getName(), zy+factor*(p.getY()-zy));
-			}
-		}
-		/*for(Shape s : shapes)
-		{
-			//zoom all dependency level 0 shapes by factor about zx and zy, all children will follow
-			if(s.getLevel() == 0)
-			{
-				Point p = (Point) s;
-				p.setX(targetX.get(p.getName()));
-				p.setY(targetY.get(p.getName()));
-			}
-			//relative location of points on shape doesn't always zoom correctly, so manually fix
-			if(s.getType() == POINT_TYPE.POINT_ON_SHAPE)
-			{
-				Point p = (Point) s;
-				p.setRelativeLocation(targetX.get(p.getName()), targetY.get(p.getName()));
-			}
-		}*/
-		
-		//go through points in order of dependency level
-		int MAXLVL = 0;
-		for(Shape s : shapes)
-		{
-			if(s.getLevel() > MAXLVL && s.isInAsyCode()) MAXLVL = s.getLevel();
-		}
-		for(int i = 0; i <= MAXLVL; i++)
-		{
-			for(Shape s : shapes)
-			{
-				if(s.getLevel() == 0 || s.getType() == POINT_TYPE.POINT_ON_SHAPE)
-				{
-					Point p = (Point) s;
-					if(p.getLevel() == i)
-					{
-						//zoom all dependency level 0 shapes by factor about zx and zy, all children will follow
-						if(i == 0)
-						{
-							p.setX(targetX.get(p.getName()));
-							p.setY(targetY.get(p.getName()));
-						}
-						//relative location of points on shape doesn't always zoom correctly, so manually fix
-						else
-						{
-							p.setRelativeLocation(targetX.get(p.getName()), targetY.get(p.getName()));
-						}
-					}
-				}
-			}
-		}
-		update();
+		renderer.getView().zoom(zx, zy, factor);
+		renderer.viewChanged();
 	}
 
 	/**
-	 * Clears out the garbage shapes that were used for calculation but are not needed anymore.
+	 * Shows the diagram without any panning or zooming.
 	 */
-	private void clearGarbage()
+	public void resetView()
 	{
-		for(Shape s : shapes)
-		{
-			for(int i = 0; i < s.getChildren().size(); i++)
-			{
-				if(!shapes.contains(s.getChildren().get(i)))
-				{
-					s.getChildren().remove(i);
-					i--;
-				}
-			}
-		}
+		renderer.getView().reset();
+		renderer.viewChanged();
+	}
+
+	/**
+	 * Finds the x-coordinate in the diagram that is shown at an x-coordinate on the screen.
+	 * @param x x-coordinate on the screen
+	 * @return x-coordinate in the diagram
+	 */
+	private double diagramX(double x)
+	{
+		return renderer.getView().toDiagramX(x);
+	}
+
+	/**
+	 * Finds the y-coordinate in the diagram that is shown at a y-coordinate on the screen.
+	 * @param y y-coordinate on the screen
+	 * @return y-coordinate in the diagram
+	 */
+	private double diagramY(double y)
+	{
+		return renderer.getView().toDiagramY(y);
 	}
 
 	/**
@@ -1271,7 +1166,7 @@ public class AsyPadPane extends Pane
 		Stage rename = new Stage();
 		FlowPane flowPane = new FlowPane();
 		Scene renameScene = new Scene(flowPane, 580, 60);
-		flowPane.getChildren().add(new Label("Rename Point " + p.getLabel().getText() + ":"));
+		flowPane.getChildren().add(new Label("Rename Point " + p.getName() + ":"));
 		TextField name = new TextField();
 		name.setPromptText("Enter new name of point");
 		Button submit = new Button("Submit");
@@ -1287,9 +1182,11 @@ public class AsyPadPane extends Pane
 			{
 				String pname = name.getText();
 				if(!isValidPointName(pname)) return;
-				p.getLabel().setText(pname);
-				p.refreshName();
-				addCommand(new RenameCommand(p, pname));
+				RenameCommand rc = new RenameCommand(p, pname);
+				diagram.beginTransaction();
+				rc.doAction(diagram);
+				diagram.commitTransaction();
+				addCommand(rc);
 				rename.close();
 			}
 		});
@@ -1307,7 +1204,7 @@ public class AsyPadPane extends Pane
 				addCommand(new DeleteCommand(p));
 				p.delete();
 				update();
-				snappedIndex = -1;
+				snappedShape = null;
 				rename.close();
 			}
 		});
@@ -1316,19 +1213,22 @@ public class AsyPadPane extends Pane
 			public void handle(ActionEvent event)
 			{
 				addCommand(new HideCommand(p));
+				diagram.beginTransaction();
 				p.setHidden(true);
-				update();
-				snappedIndex = -1;
+				diagram.commitTransaction();
+				snappedShape = null;
 				rename.close();
 			}
 		});
-		colorPicker.setValue(p.getColor());
+		colorPicker.setValue(ShapeRenderer.color(p.getColor()));
 		colorPicker.setOnAction(new EventHandler<ActionEvent>()
 		{
 			public void handle(ActionEvent e)
 			{
-				Color c = colorPicker.getValue();
+				String c = ShapeRenderer.hex(colorPicker.getValue());
+				diagram.beginTransaction();
 				p.setColor(c);
+				diagram.commitTransaction();
 				addCommand(new ColorCommand(p, c));
 			}
 		});
@@ -1375,7 +1275,7 @@ public class AsyPadPane extends Pane
 					addCommand(new DeleteCommand(s));
 					s.delete();
 					update();
-					snappedIndex = -1;
+					snappedShape = null;
 					configure.close();
 				}
 			});
@@ -1384,19 +1284,22 @@ public class AsyPadPane extends Pane
 				public void handle(ActionEvent event)
 				{
 					addCommand(new HideCommand(s));
+					diagram.beginTransaction();
 					s.setHidden(true);
-					update();
-					snappedIndex = -1;
+					diagram.commitTransaction();
+					snappedShape = null;
 					configure.close();
 				}
 			});
-			colorPicker.setValue(s.getColor());
+			colorPicker.setValue(ShapeRenderer.color(s.getColor()));
 			colorPicker.setOnAction(new EventHandler<ActionEvent>()
 			{
 				public void handle(ActionEvent e)
 				{
-					Color c = colorPicker.getValue();
+					String c = ShapeRenderer.hex(colorPicker.getValue());
+					diagram.beginTransaction();
 					s.setColor(c);
+					diagram.commitTransaction();
 					addCommand(new ColorCommand(s, c));
 				}
 			});
@@ -1409,7 +1312,29 @@ public class AsyPadPane extends Pane
 	}
 
 	/**
-	 * Updates the current line.
+	 * Updates the current line to show a line that is being drawn. Infinite lines are clipped to the pane.
+	 * @param l the line
+	 */
+	private void setCurrentLine(Line l)
+	{
+		ViewTransform view = renderer.getView();
+		if(!l.isInfinite())
+		{
+			setCurrentLine(view.toScreenX(l.getStartX()), view.toScreenY(l.getStartY()), view.toScreenX(l.getEndX()), view.toScreenY(l.getEndY()));
+			return;
+		}
+		double[] clipped = new double[4];
+		double margin = Shape.StrokeWidth;
+		if(GeometryKernel.clip(view.toScreenX(l.getAnchorX()), view.toScreenY(l.getAnchorY()), l.getDirectionX(), l.getDirectionY(),
+				-margin, -margin, getWidth()+margin, getHeight()+margin, clipped))
+		{
+			setCurrentLine(clipped[0], clipped[1], clipped[2], clipped[3]);
+		}
+		else getChildren().remove(currentLine);
+	}
+
+	/**
+	 * Updates the current line, given by its endpoints on the screen.
 	 * @param x1 start x-coordinate
 	 * @param y1 start y-coordinate
 	 * @param x2 end x-coordinate
@@ -1431,16 +1356,17 @@ public class AsyPadPane extends Pane
 	}
 
 	/**
-	 * Updates the current circle.
+	 * Updates the current circle, given by its center and radius in the diagram.
 	 * @param cx x-coordinate of center
 	 * @param cy y-coordinate of center
 	 * @param radius radius of circle
 	 */
 	private void setCurrentCircle(double cx, double cy, double radius)
 	{
-		currentCircle.setCenterX(cx);
-		currentCircle.setCenterY(cy);
-		currentCircle.setRadius(radius);
+		ViewTransform view = renderer.getView();
+		currentCircle.setCenterX(view.toScreenX(cx));
+		currentCircle.setCenterY(view.toScreenY(cy));
+		currentCircle.setRadius(view.getScale()*radius);
 
 		currentCircle.setStrokeWidth(Shape.StrokeWidth);
 		if(!getChildren().contains(currentCircle))
@@ -1457,11 +1383,7 @@ public class AsyPadPane extends Pane
 	{
 		for(Shape s : selectedShapes)
 		{
-			s.getObject().setStroke(selected);
-			if(s instanceof Point)
-			{
-				s.getObject().setFill(selected);
-			}
+			renderer.highlight(s, selected);
 		}
 	}
 
@@ -1470,50 +1392,18 @@ public class AsyPadPane extends Pane
 	 */
 	private void resetSelectedShapes()
 	{
-		for(Shape s : selectedShapes)
-		{
-			s.getObject().setStroke(s.getColor());
-			if(s instanceof Point)
-			{
-				s.getObject().setFill(s.getColor());
-			}
-		}
+		renderer.refresh(selectedShapes);
 		selectedShapes.clear();
 	}
 
 	/**
-	 * Returns the next available point name. The default point names are {@code A, B,..., Z, AA, AB,..., AZ, BA,..., AAA,...}
-	 * @param length length of name to search
-	 * @return next available point name
+	 * Restores the color of the shape that was highlighted because an equivalent shape was added.
 	 */
-	private String nextPointName(int length)
+	private void resetExisting()
 	{
-		for(int i = 0; i < Math.pow(27, length); i++)
-		{
-			int k = i;
-			String name = "";
-			for(int j = 0; j < length; j++)
-			{
-				if(k%27==0)
-				{
-					continue;
-				}
-				name=(char)('A'+k%27-1)+name;
-				k/=27;
-			}
-			if(name.equals("")) continue;
-			boolean broken = false;
-			for(Shape s : shapes)
-			{
-				if(s.getName().equals(name))
-				{
-					broken = true;
-					break;
-				}
-			}
-			if(!broken) return name;
-		}
-		return nextPointName(length+1);
+		if(existing == null) return;
+		renderer.refresh(existing);
+		existing = null;
 	}
 
 	/**
@@ -1523,7 +1413,7 @@ public class AsyPadPane extends Pane
 	 */
 	private boolean isValidPointName(String pname)
 	{
-		if(isDuplicateName(pname)) return false; //check for duplicate name
+		if(diagram.isDuplicateName(pname)) return false; //check for duplicate name
 		if(pname.length() == 0) return false; //no empty name
 		if(pname.charAt(0) < 'A' || pname.charAt(0) > 'Z') return false; //must start with capital letter
 		boolean isAllLettersOrNumbers = true;
@@ -1546,20 +1436,6 @@ public class AsyPadPane extends Pane
 		else return false;
 	}
 
-	/**
-	 * Checks if the given name is shared by a shape that is already drawn.
-	 * @param name name to check
-	 * @return if the name already exists
-	 */
-	private boolean isDuplicateName(String name)
-	{
-		for(Shape s : shapes)
-		{
-			if(s.getName().equals(name)) return true;
-		}
-		return false;
-	}
-
 	/**
 	 * Creates an intersection point from a mouse click at mouseX, mouseY using the known lines and circles passing near the click.
 	 * @param mouseX x-coordinate of mouse location
@@ -1571,13 +1447,13 @@ public class AsyPadPane extends Pane
 	{
 		if(lines.size() >= 2)
 		{
-			Point p = new Point(lines.get(0), lines.get(1), nextPointName(1));
+			Point p = new Point(lines.get(0), lines.get(1), diagram.nextPointName());
 			addShape(p);
 		}
 		else if(lines.size() == 1 && circles.size() >= 1)
 		{
-			Point p1 = new Point((Line) lines.get(0), (Circle) circles.get(0), false, nextPointName(1));
-			Point p2 = new Point((Line) lines.get(0), (Circle) circles.get(0), true, nextPointName(1));
+			Point p1 = new Point((Line) lines.get(0), (Circle) circles.get(0), false, diagram.nextPointName());
+			Point p2 = new Point((Line) lines.get(0), (Circle) circles.get(0), true, diagram.nextPointName());
 			if(Utility.distToShape(mouseX, mouseY, p1) < Utility.distToShape(mouseX, mouseY, p2))
 			{
 				addShape(p1);
@@ -1591,8 +1467,8 @@ public class AsyPadPane extends Pane
 		}
 		else if(circles.size() >= 2)
 		{
-			Point p1 = new Point((Circle) circles.get(0), (Circle) circles.get(1), false, nextPointName(1));
-			Point p2 = new Point((Circle) circles.get(0), (Circle) circles.get(1), true, nextPointName(1));
+			Point p1 = new Point((Circle) circles.get(0), (Circle) circles.get(1), false, diagram.nextPointName());
+			Point p2 = new Point((Circle) circles.get(0), (Circle) circles.get(1), true, diagram.nextPointName());
 			if(Utility.distToShape(mouseX, mouseY, p1) < Utility.distToShape(mouseX, mouseY, p2))
 			{
 				addShape(p1);
@@ -1606,43 +1482,24 @@ public class AsyPadPane extends Pane
 		}
 	}
 
-	private void resetPointPrimeNames()
-	{
-		for(Shape s : shapes)
-		{
-			if(s instanceof Point && s.getName().length() == 2 && s.getName().charAt(1) == 'p')
-			{
-				s.setName(""+s.getName().charAt(0)+'\'');
-				s.refreshName();
-			}
-		}
-	}
-
 	/**
 	 * Loads an AsyPad file into the AsyPad.
 	 * @param apad file to be loaded
 	 */
 	public void loadApad(File apad)
 	{
-		clear();
-		commands.clear();
-		currentCommandIndex = -1;
-		try(FileReader fr = new FileReader(apad);
-				BufferedReader br = new BufferedReader(fr);)
+		try
 		{
-			String currentLine;
-			while((currentLine = br.readLine()) != null)
-			{
-				Command.loadCommand(currentLine, this);
-			}
+			input.flush();
+			diagram.loadApad(apad);
+			resetView();
+			updateToolDescription("Loaded diagram from " + apad.getAbsolutePath());
 		}
 		catch(IOException ioe)
 		{
 			ioe.printStackTrace();
 			updateToolDescription("Error while loading " + apad.getAbsolutePath());
 		}
-		update();
-		updateToolDescription("Loaded diagram from " + apad.getAbsolutePath());
 	}
 
 	/**
@@ -1651,70 +1508,7 @@ public class AsyPadPane extends Pane
 	 */
 	public String toApad()
 	{
-		String apad = "";
-		//following code is terrible: both buggy and inefficient, so it has been deprecated
-		/*
-		clear();
-		for(int i = 0; i <= currentCommandIndex; i++)
-		{
-			//renaming a point makes the command's generated string buggy so for rename
-			//commands we execute it after adding it to the apad string.
-			if(!(commands.get(i) instanceof RenameCommand)) commands.get(i).doAction(this);
-			apad += commands.get(i).toString();
-			if(commands.get(i) instanceof RenameCommand) commands.get(i).doAction(this);
-		}
-		update();
-		*/
-
-		int MAXLVL = 0;
-		
-		//if global vars are not at default
-		if(Shape.StrokeWidth != Shape.DEFAULT_STROKE_WIDTH)
-		{
-			apad += (new GlobalVariableCommand("StrokeWidth", Shape.StrokeWidth)).toString();
-		}
-		if(AsyUnitSize != DEFAULT_ASY_UNIT_SIZE)
-		{
-			apad += (new GlobalVariableCommand("AsyUnitSize", AsyUnitSize)).toString();
-		}
-
-		for(Shape s : shapes)
-		{
-			if(s.getLevel() > MAXLVL && s.isInAsyCode()) MAXLVL = s.getLevel();
-		}
-
-		for(int i = 0; i <= MAXLVL; i++)
-		{
-			for(Shape s : shapes)
-			{
-				if(s.getLevel() == i)
-				{
-					//draw command for the shape
-					DrawCommand draw = new DrawCommand(s);
-					apad += draw.toString();
-
-					//set hidden and color for the shape 
-					if(s.isHidden())
-					{
-						apad += (new HideCommand(s)).toString();
-					}
-					if(!s.getColor().equals(Color.BLACK))
-					{
-						apad += (new ColorCommand(s, s.getColor())).toString();
-					}
-
-					//set label direction for points
-					if(s instanceof Point)
-					{
-						Point p = (Point) s;
-						double dir = p.getLabel().getDirection();
-						//only add the command if it has been changed from the default value
-						if(!Utility.equal(dir, -Math.PI/4)) apad += (new DragCommand(p, dir)).toString();
-					}
-				}
-			}
-		}
-		return apad;
+		return diagram.toApad();
 	}
 
 	/**
@@ -1724,87 +1518,16 @@ public class AsyPadPane extends Pane
 	public String toAsymptote()
 	{
 		//dimensions of the screen
-		CurrentWidth = getWidth();
-		if(CurrentWidth == 0) CurrentWidth = AsyPad.DEFAULT_WIDTH;
-		CurrentHeight = getHeight();
-		if(CurrentHeight == 0) CurrentHeight = AsyPad.DEFAULT_HEIGHT;
-		
-		for(Shape s : shapes) s.addToAsy(); //adds all shapes to asymptote code
-		for(Shape s : shapes)
-		{
-			if(s instanceof Point)
-			{
-				//removes all shapes that have undefined coordinates or depend on it.
-				if(((Point)s).getX() == Double.POSITIVE_INFINITY) s.removeFromAsy();
-			}
-			if(s instanceof Line && s.getType() == LINE_TYPE.TANGENT_LINE)
-			{
-				Point p = (Point) s.getDependencies().get(0);
-				Circle c = (Circle) s.getDependencies().get(1);
-				double dist = Utility.dist(p.getX(), p.getY(), c.getCenterX(), c.getCenterY());
-				if(!Utility.equal(dist, c.getRadius()) && dist < c.getRadius())
-				{
-					//remove non-existent tangent lines
-					s.removeFromAsy();
-				}
-			}
-		}
-		String asy = "// Generated By AsyPadv" + AsyPad.VERSION + "\n";
-		asy+="import olympiad;\nimport markers;\nimport math;\nimport graph;\n";
-		asy+="// change the unit size to fit your needs\n";
-		asy+="unitsize(" + AsyUnitSize + "cm);\n";
-
-		ArrayList<String> colors = new ArrayList<String>();
-		for(Shape s : shapes)
-		{
-			if(s.isInAsyCode())
-			{
-				String c = Utility.hex(s.getColor());
-				if(!colors.contains(c))
-				{
-					colors.add(c);
-				}
-			}
-		}
-		asy+="// colored pens\n";
-		for(String color : colors)
-		{
-			asy+="pen c" + color + " = rgb(\"" + color + "\");\n";
-		}
-
-		int MAXLVL = 0;
-		for(Shape s : shapes)
-		{
-			if(s.getLevel() > MAXLVL && s.isInAsyCode()) MAXLVL = s.getLevel();
-		}
-		for(int i = 0; i <= MAXLVL; i++)
-		{
-			asy += "// dependency level " + i + "\n";
-			if(i == 0)
-			{
-				asy += "/* You can change the coordinates of these points of dependency level 0.\n "
-						+ "The drawing will retain the same relationships and qualities.\n "
-						+ "Please be aware that as a result of this some of the image may be clipped off. */\n";
-			}
-			if(i == 1)
-			{
-				asy += "// Do not change anything below, unless you are experienced in Asymptote.\n";
-			}
-			for(Shape s : shapes)
-			{
-				if(s.getLevel() == i)
-				{
-					asy += s.toAsymptote();
-				}
-			}
-		}
-		resetPointPrimeNames();
-		double xmin = 0;
-		double xmax = CurrentWidth/100;
-		double ymin = 0;
-		double ymax = CurrentHeight/100;
-		asy+="// clip the drawing view\n";
-		asy+="clip((" + xmin + ", " + ymin + ")--(" + xmin + ", " + ymax + ")--(" + xmax + ", " + ymax + ")--(" + xmax + ", " + ymin + ")--cycle);";
-		return asy;
+		double width = getWidth();
+		if(width == 0) width = Diagram.DEFAULT_WIDTH;
+		double height = getHeight();
+		if(height == 0) height = Diagram.DEFAULT_HEIGHT;
+		//part of the diagram that is on the screen
+		ViewTransform view = renderer.getView();
+		Diagram.CurrentLeft = view.toDiagramX(0);
+		Diagram.CurrentTop = view.toDiagramY(0);
+		Diagram.CurrentWidth = width/view.getScale();
+		Diagram.CurrentHeight = height/view.getScale();
+		return diagram.toAsymptote();
 	}
 }
@@ -0,0 +1,219 @@
+package asypad.ui;
+
+import asypad.shapes.Diagram;
+import asypad.shapes.DragSession;
+import asypad.shapes.Point;
+import asypad.ui.render.ShapeRenderer;
+import asypad.ui.render.ViewTransform;
+import javafx.animation.AnimationTimer;
+
+/**
+ * Collects the changes asked for by mouse drags, scrolls and zoom gestures, and applies them once per pulse.
+ * Trackpads can send several events in one frame, so each event only records where the diagram and the view should end up,
+ * and the next pulse moves them there with one round of recomputation and one refresh of the screen.
+ * Pending changes must be applied with {@link #flush()} before anything else reads or changes the diagram, e.g. when a gesture ends.
+ * @author Raymond Feng
+ */
+public class InputCoalescer
+{
+	/**
+	 * Diagram that the changes are applied to.
+	 */
+	private Diagram diagram;
+
+	/**
+	 * Renderer whose view is panned and zoomed.
+	 */
+	private ShapeRenderer renderer;
+
+	/**
+	 * Applies the pending changes on the next pulse.
+	 */
+	private AnimationTimer pulse;
+
+	/**
+	 * If the pulse has been started since the changes were last applied.
+	 */
+	private boolean scheduled;
+
+	/**
+	 * Drag session of the point that is being dragged, or null if no point has been moved since the changes were last applied.
+	 */
+	private DragSession drag;
+
+	/**
+	 * x-coordinate that the dragged point is moved towards.
+	 */
+	private double dragX;
+
+	/**
+	 * y-coordinate that the dragged point is moved towards.
+	 */
+	private double dragY;
+
+	/**
+	 * Point whose label is being dragged, or null if no label has been moved since the changes were last applied.
+	 */
+	private Point labelPoint;
+
+	/**
+	 * Direction that the dragged label is moved to, in radians.
+	 */
+	private double labelDirection;
+
+	/**
+	 * Pending zoom and translation of the view, which move each location p on the screen to {@code scale*p+(offsetX, offsetY)}.
+	 */
+	private double scale, offsetX, offsetY;
+
+	/**
+	 * Number of input events that have been recorded.
+	 */
+	private long events;
+
+	/**
+	 * Number of times that recorded events have been applied.
+	 */
+	private long frames;
+
+	/**
+	 * Creates a new InputCoalescer that applies changes to a diagram and the view that it is drawn with.
+	 * @param diagram diagram
+	 * @param renderer renderer that draws the diagram
+	 */
+	public InputCoalescer(Diagram diagram, ShapeRenderer renderer)
+	{
+		this.diagram = diagram;
+		this.renderer = renderer;
+		scheduled = false;
+		scale = 1;
+		events = 0;
+		frames = 0;
+		pulse = new AnimationTimer()
+		{
+			public void handle(long now)
+			{
+				flush();
+			}
+		};
+	}
+
+	/**
+	 * Records that the point of a drag session should be moved to the location of the mouse.
+	 * @param session drag session
+	 * @param cx current x-coordinate
+	 * @param cy current y-coordinate
+	 */
+	public void moveTo(DragSession session, double cx, double cy)
+	{
+		if(drag != null && drag != session) flush();
+		drag = session;
+		dragX = cx;
+		dragY = cy;
+		record();
+	}
+
+	/**
+	 * Records that the label of a point should be shown in a direction.
+	 * @param p point
+	 * @param direction direction in radians
+	 */
+	public void setLabelDirection(Point p, double direction)
+	{
+		if(labelPoint != null && labelPoint != p) flush();
+		labelPoint = p;
+		labelDirection = direction;
+		record();
+	}
+
+	/**
+	 * Records that the view should be translated.
+	 * @param dx change in x
+	 * @param dy change in y
+	 */
+	public void translate(double dx, double dy)
+	{
+		offsetX += dx;
+		offsetY += dy;
+		record();
+	}
+
+	/**
+	 * Records that the view should be zoomed with respect to a location on the screen.
+	 * @param zx x-coordinate of zoom
+	 * @param zy y-coordinate of zoom
+	 * @param factor zoom factor
+	 */
+	public void zoom(double zx, double zy, double factor)
+	{
+		//zooming by the factor about (zx, zy) moves p to factor*p+(1-factor)*(zx, zy)
+		scale *= factor;
+		offsetX = factor*offsetX+(1-factor)*zx;
+		offsetY = factor*offsetY+(1-factor)*zy;
+		record();
+	}
+
+	/**
+	 * Applies all of the pending changes now, with the changes to the diagram in one transaction.
+	 */
+	public void flush()
+	{
+		pulse.stop();
+		if(!scheduled) return;
+		scheduled = false;
+		frames++;
+		renderer.interact(scale != 1 || offsetX != 0 || offsetY != 0);
+		diagram.beginTransaction();
+		if(drag != null)
+		{
+			drag.moveTo(dragX, dragY);
+			drag = null;
+		}
+		if(labelPoint != null)
+		{
+			labelPoint.setLabelDirection(labelDirection);
+			labelPoint = null;
+		}
+		diagram.commitTransaction();
+		if(scale != 1 || offsetX != 0 || offsetY != 0)
+		{
+			//the zoom is about the origin, so the translation that was collected with it can be applied after it
+			ViewTransform view = renderer.getView();
+			view.zoom(0, 0, scale);
+			view.translate(offsetX, offsetY);
+			renderer.viewChanged();
+			scale = 1;
+			offsetX = 0;
+			offsetY = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of input events that have been recorded.
+	 * @return number of events
+	 */
+	public long getEvents()
+	{
+		return events;
+	}
+
+	/**
+	 * Returns the number of input events that did not need a pulse of their own, because they were applied together with other events.
+	 * @return number of coalesced events
+	 */
+	public long getCoalescedEvents()
+	{
+		return events-frames;
+	}
+
+	/**
+	 * Counts an event and makes sure that the pending changes are applied on the next pulse.
+	 */
+	private void record()
+	{
+		events++;
+		if(scheduled) return;
+		scheduled = true;
+		pulse.start();
+	}
+}
@@ -5,10 +5,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
+import asypad.shapes.Diagram;
 import asypad.shapes.Shape;
+import asypad.shapes.command.*;
 import asypad.ui.AsyPad;
 import asypad.ui.AsyPadPane;
-import asypad.ui.command.*;
+import asypad.ui.InputCoalescer;
 import javafx.event.*;
 import javafx.geometry.*;
 import javafx.scene.Scene;
@@ -154,6 +156,8 @@ public class AsyPadMenuBar extends MenuBar
 		//settings
 		Menu settings = new Menu("Settings");
 		MenuItem setStrokeWidth = new MenuItem("Set Stroke Width");
+		MenuItem setLabelThreshold = new MenuItem("Set Label Threshold");
+		MenuItem setDetailThreshold = new MenuItem("Set Detail Threshold");
 		MenuItem setAsyUnitSize = new MenuItem("Set Asy Unit Size");
 		setStrokeWidth.setOnAction(new EventHandler<ActionEvent>()
 		{
@@ -204,6 +208,106 @@ public class AsyPadMenuBar extends MenuBar
 				setSW.show();
 			}
 		});
+		//labels are hidden once a unit of the drawing is shown smaller than this many pixels
+		setLabelThreshold.setOnAction(new EventHandler<ActionEvent>()
+		{
+			public void handle(ActionEvent event)
+			{
+				Stage setLT = new Stage();
+				Pane p = new Pane();
+				Scene scene = new Scene(p, 250, 80);
+				Label label = new Label("Hide labels below: " + Diagram.LabelThreshold + " px");
+				label.setPrefSize(200, 20);
+				label.setLayoutX(50);
+				label.setLayoutY(0);
+				label.setTextAlignment(TextAlignment.CENTER);
+				Slider lt = new Slider();
+				lt.setOrientation(Orientation.HORIZONTAL);
+				lt.setShowTickMarks(true);
+				lt.setMajorTickUnit(20);
+				lt.setMax(200);
+				lt.setMinorTickCount(0);
+				lt.setShowTickLabels(false);
+				lt.setPrefSize(250, 30);
+				lt.setLayoutX(0);
+				lt.setLayoutY(20);
+				lt.setValue(Diagram.LabelThreshold);
+				lt.valueProperty().addListener((observable, oldValue, newValue)->
+				{
+					int j = newValue.intValue();
+					label.setText("Hide labels below: " + Double.toString(j) + " px");
+				});
+				Button update = new Button("Update");
+				update.setPrefHeight(30);
+				update.setLayoutX(90);
+				update.setLayoutY(50);
+				update.setOnAction(new EventHandler<ActionEvent>()
+				{
+					public void handle(ActionEvent event)
+					{
+						Diagram.LabelThreshold = (int)(lt.getValue());
+						parent.addCommand(new GlobalVariableCommand("LabelThreshold", Diagram.LabelThreshold));
+						setLT.close();
+						parent.update();
+					}
+				});
+				p.getChildren().addAll(label, lt, update);
+				setLT.setScene(scene);
+				setLT.setAlwaysOnTop(true);
+				setLT.setTitle("Set Label Threshold");
+				setLT.show();
+			}
+		});
+		//lines and circles are not drawn once they are shown smaller than this many pixels
+		setDetailThreshold.setOnAction(new EventHandler<ActionEvent>()
+		{
+			public void handle(ActionEvent event)
+			{
+				Stage setDT = new Stage();
+				Pane p = new Pane();
+				Scene scene = new Scene(p, 250, 80);
+				Label label = new Label("Skip shapes below: " + Diagram.DetailThreshold + " px");
+				label.setPrefSize(200, 20);
+				label.setLayoutX(50);
+				label.setLayoutY(0);
+				label.setTextAlignment(TextAlignment.CENTER);
+				Slider dt = new Slider();
+				dt.setOrientation(Orientation.HORIZONTAL);
+				dt.setShowTickMarks(true);
+				dt.setMajorTickUnit(10);
+				dt.setMax(100);
+				dt.setMinorTickCount(0);
+				dt.setShowTickLabels(false);
+				dt.setPrefSize(250, 30);
+				dt.setLayoutX(0);
+				dt.setLayoutY(20);
+				dt.setValue(Diagram.DetailThreshold*10);
+				dt.valueProperty().addListener((observable, oldValue, newValue)->
+				{
+					int j = newValue.intValue();
+					label.setText("Skip shapes below: " + Double.toString((double) (j)/10) + " px");
+				});
+				Button update = new Button("Update");
+				update.setPrefHeight(30);
+				update.setLayoutX(90);
+				update.setLayoutY(50);
+				update.setOnAction(new EventHandler<ActionEvent>()
+				{
+					public void handle(ActionEvent event)
+					{
+						Diagram.DetailThreshold = (double)((int)(dt.getValue()))/10;
+						parent.addCommand(new GlobalVariableCommand("DetailThreshold", Diagram.DetailThreshold));
+						setDT.close();
+						parent.update();
+					}
+				});
+				p.getChildren().addAll(label, dt, update);
+				setDT.setScene(scene);
+				setDT.setAlwaysOnTop(true);
+				setDT.setTitle("Set Detail Threshold");
+				setDT.show();
+			}
+		});
 		setAsyUnitSize.setOnAction(new EventHandler<ActionEvent>()
 		{
 			public void handle(ActionEvent event)
@@ -211,7 +315,7 @@ public class AsyPadMenuBar extends MenuBar
 				Stage setSW = new Stage();
 				Pane p = new Pane();
 				Scene scene = new Scene(p, 250, 80);
-				Label label = new Label("Set the unit size: " + AsyPadPane.AsyUnitSize);
+				Label label = new Label("Set the unit size: " + Diagram.AsyUnitSize);
 				label.setPrefSize(200, 20);
 				label.setLayoutX(50);
 				label.setLayoutY(0);
@@ -226,7 +330,7 @@ public class AsyPadMenuBar extends MenuBar
 				sw.setPrefSize(250, 30);
 				sw.setLayoutX(0);
 				sw.setLayoutY(20);
-				sw.setValue(AsyPadPane.AsyUnitSize*10);
+				sw.setValue(Diagram.AsyUnitSize*10);
 				sw.valueProperty().addListener((observable, oldValue, newValue)->
 				{
 					int j = newValue.intValue();
@@ -240,8 +344,8 @@ public class AsyPadMenuBar extends MenuBar
 				{
 					public void handle(ActionEvent event)
 					{
-						AsyPadPane.AsyUnitSize = (double)((int)(sw.getValue()))/10;
-						parent.addCommand(new GlobalVariableCommand("AsyUnitSize", AsyPadPane.AsyUnitSize));
+						Diagram.AsyUnitSize = (double)((int)(sw.getValue()))/10;
+						parent.addCommand(new GlobalVariableCommand("AsyUnitSize", Diagram.AsyUnitSize));
 						setSW.close();
 						parent.update();
 					}
@@ -253,7 +357,7 @@ public class AsyPadMenuBar extends MenuBar
 				setSW.show();
 			}
 		});
-		settings.getItems().addAll(setStrokeWidth, setAsyUnitSize);
+		settings.getItems().addAll(setStrokeWidth, setLabelThreshold, setDetailThreshold, setAsyUnitSize);
 
 		Menu view = new Menu("View");
 		MenuItem showHidden = new MenuItem("Show Hidden Shapes");
@@ -277,7 +381,62 @@ public class AsyPadMenuBar extends MenuBar
 				parent.showAsyPanel();
 			}
 		});
-		view.getItems().addAll(showHidden, showAsyPanel);
+		Menu rendering = new Menu("Rendering");
+		ToggleGroup renderingGroup = new ToggleGroup();
+		RadioMenuItem automatic = new RadioMenuItem("Automatic");
+		RadioMenuItem asNodes = new RadioMenuItem("Shapes as Nodes");
+		RadioMenuItem onCanvas = new RadioMenuItem("Shapes on Canvas");
+		//each choice is a threshold on the number of shapes, above which they are painted onto a single canvas
+		automatic.setUserData(Diagram.DEFAULT_CANVAS_THRESHOLD);
+		asNodes.setUserData(Double.POSITIVE_INFINITY);
+		onCanvas.setUserData(0.0);
+		for(RadioMenuItem choice : new RadioMenuItem[] {automatic, asNodes, onCanvas})
+		{
+			choice.setToggleGroup(renderingGroup);
+			choice.setOnAction(new EventHandler<ActionEvent>()
+			{
+				public void handle(ActionEvent event)
+				{
+					Diagram.CanvasThreshold = (Double) choice.getUserData();
+					parent.addCommand(new GlobalVariableCommand("CanvasThreshold", Diagram.CanvasThreshold));
+					parent.update();
+				}
+			});
+		}
+		rendering.setOnShowing(new EventHandler<Event>()
+		{
+			public void handle(Event event)
+			{
+				//the threshold may have been changed by loading a file or undoing
+				for(Toggle t : renderingGroup.getToggles())
+				{
+					t.setSelected(t.getUserData().equals(Diagram.CanvasThreshold));
+				}
+			}
+		});
+		rendering.getItems().addAll(automatic, asNodes, onCanvas);
+		MenuItem inputStatistics = new MenuItem("Input Statistics");
+		inputStatistics.setOnAction(new EventHandler<ActionEvent>()
+		{
+			public void handle(ActionEvent event)
+			{
+				Stage stats = new Stage();
+				FlowPane p = new FlowPane();
+				Scene scene = new Scene(p, 400, 80);
+				InputCoalescer input = parent.getInput();
+				Label counts = new Label("Input events: " + input.getEvents() + "\nCoalesced into other frames: " + input.getCoalescedEvents());
+				counts.setAlignment(Pos.CENTER);
+				counts.setStyle("-fx-font: 18 arial");
+				counts.setPrefSize(400, 80);
+				p.getChildren().add(counts);
+				stats.setScene(scene);
+				stats.setAlwaysOnTop(true);
+				stats.setTitle("Input Statistics");
+				stats.setResizable(false);
+				stats.show();
+			}
+		});
+		view.getItems().addAll(showHidden, showAsyPanel, rendering, inputStatistics);
 
 		//help menu (about and credits)
 		Menu help = new Menu("Help");
@@ -0,0 +1,138 @@
+package asypad.ui.render;
+
+import asypad.shapes.*;
+import javafx.scene.control.Label;
+
+/**
+ * A draggable label used to label points in AsyPad.
+ * Labels that have been dragged by the user keep the direction of their point, other labels are shown in
+ * the direction that they are placed in, see {@link LabelPlacer}.
+ * @author Raymond Feng
+ */
+public class DraggableLabel extends Label
+{
+	/**
+	 * Width of a character, used to estimate the size of labels that have not been laid out yet.
+	 */
+	private static final double CHAR_WIDTH = 8;
+
+	/**
+	 * Height of a line of text, used to estimate the size of labels that have not been laid out yet.
+	 */
+	private static final double LINE_HEIGHT = 17;
+
+	/**
+	 * This label's associated point.
+	 */
+	private Point point;
+
+	/**
+	 * Mapping of the diagram onto the screen that the label is shown with.
+	 */
+	private ViewTransform view;
+
+	/**
+	 * Direction that the label is shown in when it has not been dragged by the user, in radians.
+	 */
+	private double direction;
+
+	/**
+	 * Creates a new DraggableLabel associated with p.
+	 * @param p associated point
+	 * @param view mapping of the diagram onto the screen
+	 */
+	public DraggableLabel(Point p, ViewTransform view)
+	{
+		super();
+		point = p;
+		this.view = view;
+		direction = Shape.DEFAULT_LABEL_DIRECTION;
+		refresh();
+	}
+
+	/**
+	 * Refreshes the text and the position of the label from its point.
+	 */
+	public void refresh()
+	{
+		double dir = getDirection();
+		setText(point.getName());
+		setLayoutX(layoutX(dir));
+		setLayoutY(layoutY(dir));
+	}
+
+	/**
+	 * Returns this label's associated point.
+	 * @return point
+	 */
+	public Point getPoint()
+	{
+		return point;
+	}
+
+	/**
+	 * Whether the label has been dragged away from the default direction by the user, so that it is not placed automatically.
+	 * @return if the direction of the label is set by its point
+	 */
+	public boolean isPinned()
+	{
+		return !Utility.equal(point.getLabelDirection(), Shape.DEFAULT_LABEL_DIRECTION);
+	}
+
+	/**
+	 * Returns the direction that the label is shown in, in radians.
+	 * @return direction of the label
+	 */
+	public double getDirection()
+	{
+		return isPinned() ? point.getLabelDirection() : direction;
+	}
+
+	/**
+	 * Shows the label in the given direction from its point, unless it is pinned.
+	 * @param direction direction in radians
+	 */
+	public void setDirection(double direction)
+	{
+		this.direction = direction;
+		refresh();
+	}
+
+	/**
+	 * Finds the left of the label on the screen if it is shown in the given direction.
+	 * @param direction direction in radians
+	 * @return x-coordinate of the left of the label
+	 */
+	public double layoutX(double direction)
+	{
+		return view.toScreenX(point.getX())+5*Shape.StrokeWidth*Math.cos(direction)+4*getPrefWidth();
+	}
+
+	/**
+	 * Finds the top of the label on the screen if it is shown in the given direction.
+	 * @param direction direction in radians
+	 * @return y-coordinate of the top of the label
+	 */
+	public double layoutY(double direction)
+	{
+		return view.toScreenY(point.getY())-5*Shape.StrokeWidth*Math.sin(direction)+8*getPrefHeight();
+	}
+
+	/**
+	 * Returns the width of the label, estimated from its text if it has not been laid out yet.
+	 * @return width of the label
+	 */
+	public double getBoxWidth()
+	{
+		return getWidth() > 0 ? getWidth() : CHAR_WIDTH*getText().length();
+	}
+
+	/**
+	 * Returns the height of the label, estimated if it has not been laid out yet.
+	 * @return height of the label
+	 */
+	public double getBoxHeight()
+	{
+		return getHeight() > 0 ? getHeight() : LINE_HEIGHT;
+	}
+}
@@ -0,0 +1,132 @@
+package asypad.ui.render;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import asypad.shapes.*;
+
+/**
+ * Places the labels of points that have not been dragged by the user so that they cover as few shapes and other labels as possible.
+ * Each label tries a fixed set of directions around its point, starting from the one it is already shown in,
+ * and keeps the first direction that overlaps the fewest shapes and labels near it. The shapes near a label
+ * are found with the grid of the shown shapes, and only the labels near shapes that have changed are placed again.
+ * @author Raymond Feng
+ */
+public class LabelPlacer
+{
+	/**
+	 * Directions that are tried for each label, in radians, in the order that they are preferred.
+	 */
+	private static final double[] DIRECTIONS = {Shape.DEFAULT_LABEL_DIRECTION, 0, -Math.PI/2, Math.PI/4,
+			-3*Math.PI/4, Math.PI/2, Math.PI, 3*Math.PI/4};
+
+	/**
+	 * How much covering another label counts for, compared to covering a shape.
+	 */
+	private static final int LABEL_COST = 2;
+
+	/**
+	 * Grid of the shown shapes.
+	 */
+	private ShapeGrid grid;
+
+	/**
+	 * Labels of the drawn points.
+	 */
+	private HashMap<Shape, DraggableLabel> labels;
+
+	/**
+	 * Mapping of the diagram onto the screen, as labels have their size on the screen and shapes are kept in the grid by their coordinates in the diagram.
+	 */
+	private ViewTransform view;
+
+	/**
+	 * Creates a new LabelPlacer for the labels of the shapes in a grid.
+	 * @param grid grid of the shown shapes
+	 * @param labels labels of the drawn points
+	 * @param view mapping of the diagram onto the screen
+	 */
+	public LabelPlacer(ShapeGrid grid, HashMap<Shape, DraggableLabel> labels, ViewTransform view)
+	{
+		this.grid = grid;
+		this.labels = labels;
+		this.view = view;
+	}
+
+	/**
+	 * Places the labels of the points near the shapes that have been put into or taken out of the grid since the last time.
+	 */
+	public void placeChanged()
+	{
+		HashSet<Shape> changed = grid.takeChanged();
+		ArrayList<Shape> points = new ArrayList<Shape>();
+		for(Shape s : changed)
+		{
+			if(s instanceof Point && labels.containsKey(s)) points.add(s);
+		}
+		//place the labels in a fixed order, so that the same diagram always gets the same labels
+		Collections.sort(points, Diagram.DRAW_ORDER);
+		for(Shape s : points)
+		{
+			place(labels.get(s));
+		}
+	}
+
+	/**
+	 * Places a label in the direction that covers the fewest shapes and labels, keeping its direction if no other one is better.
+	 * Labels that have been dragged by the user are only refreshed.
+	 * @param label label to place
+	 */
+	public void place(DraggableLabel label)
+	{
+		if(label.isPinned())
+		{
+			label.refresh();
+			return;
+		}
+		double best = label.getDirection();
+		int bestCost = cost(label, best);
+		for(int i = 0; i < DIRECTIONS.length && bestCost > 0; i++)
+		{
+			int cost = cost(label, DIRECTIONS[i]);
+			if(cost < bestCost)
+			{
+				best = DIRECTIONS[i];
+				bestCost = cost;
+			}
+		}
+		label.setDirection(best);
+	}
+
+	/**
+	 * Counts the shapes and labels that the label would cover if it were shown in the given direction.
+	 * @param label label
+	 * @param direction direction in radians
+	 * @return the number of covered shapes plus {@code LABEL_COST} times the number of covered labels
+	 */
+	private int cost(DraggableLabel label, double direction)
+	{
+		double minX = label.layoutX(direction), minY = label.layoutY(direction);
+		double maxX = minX+label.getBoxWidth(), maxY = minY+label.getBoxHeight();
+		//labels of points up to a cell away on the screen can reach into the box
+		Collection<Shape> near = new HashSet<Shape>();
+		double cell = ShapeGrid.CELL_SIZE;
+		grid.collect(view.toDiagramX(minX-cell), view.toDiagramY(minY-cell), view.toDiagramX(maxX+cell), view.toDiagramY(maxY+cell), near);
+		int cost = 0;
+		for(Shape s : near)
+		{
+			if(ShapeGrid.crosses(s, view.toDiagramX(minX), view.toDiagramY(minY), view.toDiagramX(maxX), view.toDiagramY(maxY))) cost++;
+			DraggableLabel other = labels.get(s);
+			if(other != null && other != label)
+			{
+				//the other label may not have been moved since the view last changed
+				double x = other.layoutX(other.getDirection()), y = other.layoutY(other.getDirection());
+				if(x < maxX && minX < x+other.getBoxWidth() && y < maxY && minY < y+other.getBoxHeight()) cost += LABEL_COST;
+			}
+		}
+		return cost;
+	}
+}
@@ -0,0 +1,405 @@
+package asypad.ui.render;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import asypad.shapes.*;
+
+/**
+ * Uniform grid over the bounding boxes of the shown shapes, used to find the shapes near the mouse without going through all of them.
+ * Each shape is kept in every cell that its bounding box overlaps. Infinite lines and shapes that would cover too many cells,
+ * like very large circles, are kept in a separate list that is checked on every query instead.
+ * The grid also remembers which cells have had shapes moving through them, so that only the labels there have to be placed again.
+ * @author Raymond Feng
+ */
+public class ShapeGrid
+{
+	/**
+	 * Side length of a cell, in the coordinates of the diagram.
+	 */
+	public static final double CELL_SIZE = 64;
+
+	/**
+	 * Largest number of cells that a shape is put into, shapes that cover more cells are always checked.
+	 */
+	public static final int MAX_CELLS = 256;
+
+	/**
+	 * Largest column or row of a cell, so that shapes far off the screen do not overflow the cell coordinates.
+	 */
+	private static final int MAX_CELL = 1 << 30;
+
+	/**
+	 * Shapes in each cell, keyed by the column and row of the cell.
+	 */
+	private HashMap<Long, ArrayList<Shape>> cells;
+
+	/**
+	 * Range of cells that each shape in the grid is in, as {minimum column, minimum row, maximum column, maximum row}.
+	 */
+	private HashMap<Shape, int[]> ranges;
+
+	/**
+	 * Shapes that are not in any cell and are checked on every query.
+	 */
+	private LinkedHashSet<Shape> unbounded;
+
+	/**
+	 * Visible parts of the infinite lines in the grid, as {start x, start y, end x, end y}, or null if they are not visible.
+	 */
+	private HashMap<Shape, double[]> chords;
+
+	/**
+	 * Rectangle of the diagram that the shapes are shown in, as {left, top, right, bottom}.
+	 */
+	private double[] view;
+
+	/**
+	 * Cells that shapes have been put into or taken out of since the changes were last taken.
+	 */
+	private HashSet<Long> changed;
+
+	/**
+	 * If a change could not be narrowed down to some cells, so that all of the grid has changed.
+	 */
+	private boolean allChanged;
+
+	/**
+	 * Creates an empty ShapeGrid.
+	 */
+	public ShapeGrid()
+	{
+		cells = new HashMap<Long, ArrayList<Shape>>();
+		ranges = new HashMap<Shape, int[]>();
+		unbounded = new LinkedHashSet<Shape>();
+		chords = new HashMap<Shape, double[]>();
+		view = new double[4];
+		changed = new HashSet<Long>();
+		allChanged = false;
+	}
+
+	/**
+	 * Sets the rectangle of the diagram that the shapes are shown in, which is where infinite lines are tracked.
+	 * @param minX left of the rectangle
+	 * @param minY top of the rectangle
+	 * @param maxX right of the rectangle
+	 * @param maxY bottom of the rectangle
+	 */
+	public void setView(double minX, double minY, double maxX, double maxY)
+	{
+		view[0] = minX;
+		view[1] = minY;
+		view[2] = maxX;
+		view[3] = maxY;
+		for(Map.Entry<Shape, double[]> e : chords.entrySet())
+		{
+			e.setValue(chord((Line) e.getKey()));
+		}
+	}
+
+	/**
+	 * Puts the shape into the cells of its current bounding box, moving it out of the cells that it was in before.
+	 * Shapes that are not defined are taken out of the grid.
+	 * @param s shape
+	 */
+	public void put(Shape s)
+	{
+		int[] range = range(s);
+		int[] old = ranges.get(s);
+		if(old != null && range != null && old[0] == range[0] && old[1] == range[1] && old[2] == range[2] && old[3] == range[3])
+		{
+			//the shape has moved inside of the same cells
+			mark(range);
+			return;
+		}
+		remove(s);
+		if(range == null)
+		{
+			if(!s.isDefined()) return;
+			unbounded.add(s);
+			if(s instanceof Line && ((Line) s).isInfinite())
+			{
+				double[] chord = chord((Line) s);
+				chords.put(s, chord);
+				mark(chord);
+			}
+			else allChanged = true;
+			return;
+		}
+		for(int col = range[0]; col <= range[2]; col++)
+		{
+			for(int row = range[1]; row <= range[3]; row++)
+			{
+				ArrayList<Shape> cell = cells.get(key(col, row));
+				if(cell == null)
+				{
+					cell = new ArrayList<Shape>();
+					cells.put(key(col, row), cell);
+				}
+				cell.add(s);
+			}
+		}
+		ranges.put(s, range);
+		mark(range);
+	}
+
+	/**
+	 * Takes the shape out of the grid.
+	 * @param s shape
+	 */
+	public void remove(Shape s)
+	{
+		if(unbounded.remove(s))
+		{
+			if(chords.containsKey(s)) mark(chords.remove(s));
+			else allChanged = true;
+		}
+		int[] range = ranges.remove(s);
+		if(range == null) return;
+		for(int col = range[0]; col <= range[2]; col++)
+		{
+			for(int row = range[1]; row <= range[3]; row++)
+			{
+				ArrayList<Shape> cell = cells.get(key(col, row));
+				cell.remove(s);
+				if(cell.isEmpty()) cells.remove(key(col, row));
+			}
+		}
+		mark(range);
+	}
+
+	/**
+	 * Finds the shapes whose bounding boxes come within the given distance of (x, y), in the order that they were drawn.
+	 * The shapes still have to be checked for their actual distance to (x, y).
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param distance distance from (x, y)
+	 * @return shapes that may be within the distance of (x, y)
+	 */
+	public ArrayList<Shape> near(double x, double y, double distance)
+	{
+		LinkedHashSet<Shape> found = new LinkedHashSet<Shape>();
+		collect(x-distance, y-distance, x+distance, y+distance, found);
+		ArrayList<Shape> near = new ArrayList<Shape>(found);
+		Collections.sort(near, Diagram.DRAW_ORDER);
+		return near;
+	}
+
+	/**
+	 * Adds the shapes whose bounding boxes may overlap the rectangle to a collection, in no particular order.
+	 * @param minX left of the rectangle
+	 * @param minY top of the rectangle
+	 * @param maxX right of the rectangle
+	 * @param maxY bottom of the rectangle
+	 * @param found collection that receives the shapes
+	 */
+	public void collect(double minX, double minY, double maxX, double maxY, Collection<Shape> found)
+	{
+		found.addAll(unbounded);
+		int minCol = cell(minX), maxCol = cell(maxX);
+		int minRow = cell(minY), maxRow = cell(maxY);
+		if((long) (maxCol-minCol+1)*(maxRow-minRow+1) > cells.size())
+		{
+			//the rectangle covers more cells than have shapes in them, e.g. when the view is zoomed far out
+			for(Map.Entry<Long, ArrayList<Shape>> e : cells.entrySet())
+			{
+				long k = e.getKey();
+				int col = (int) (k >> 32), row = (int) k;
+				if(col >= minCol && col <= maxCol && row >= minRow && row <= maxRow) found.addAll(e.getValue());
+			}
+			return;
+		}
+		for(int col = minCol; col <= maxCol; col++)
+		{
+			for(int row = minRow; row <= maxRow; row++)
+			{
+				ArrayList<Shape> cell = cells.get(key(col, row));
+				if(cell != null) found.addAll(cell);
+			}
+		}
+	}
+
+	/**
+	 * Finds the shapes in the cells that have changed since the changes were last taken, or next to them, and forgets the changes.
+	 * @return shapes in or next to the changed cells
+	 */
+	public HashSet<Shape> takeChanged()
+	{
+		HashSet<Shape> found = new HashSet<Shape>();
+		if(allChanged)
+		{
+			found.addAll(ranges.keySet());
+			found.addAll(unbounded);
+		}
+		else
+		{
+			HashSet<Long> visited = new HashSet<Long>();
+			for(long k : changed)
+			{
+				int col = (int) (k >> 32), row = (int) k;
+				for(int c = col-1; c <= col+1; c++)
+				{
+					for(int r = row-1; r <= row+1; r++)
+					{
+						ArrayList<Shape> cell = cells.get(key(c, r));
+						if(cell != null && visited.add(key(c, r))) found.addAll(cell);
+					}
+				}
+			}
+		}
+		changed.clear();
+		allChanged = false;
+		return found;
+	}
+
+	/**
+	 * Whether the shape is drawn through the rectangle, counting the width of its stroke.
+	 * @param s shape
+	 * @param minX left of the rectangle
+	 * @param minY top of the rectangle
+	 * @param maxX right of the rectangle
+	 * @param maxY bottom of the rectangle
+	 * @return if the shape passes through the rectangle
+	 */
+	public static boolean crosses(Shape s, double minX, double minY, double maxX, double maxY)
+	{
+		double margin = Shape.StrokeWidth;
+		double[] clipped = new double[4];
+		if(s instanceof Point)
+		{
+			Point p = (Point) s;
+			return p.getX() > minX-margin && p.getX() < maxX+margin && p.getY() > minY-margin && p.getY() < maxY+margin;
+		}
+		else if(s instanceof Line)
+		{
+			Line l = (Line) s;
+			if(!GeometryKernel.clip(l.getAnchorX(), l.getAnchorY(), l.getDirectionX(), l.getDirectionY(),
+					minX-margin, minY-margin, maxX+margin, maxY+margin, clipped)) return false;
+			if(l.isInfinite()) return true;
+			//the segment runs from t = 0 to t = 1 along its direction, and the part of its line in the rectangle from t0 to t1
+			double dx = l.getDirectionX(), dy = l.getDirectionY();
+			double length = dx*dx+dy*dy;
+			double t0 = ((clipped[0]-l.getAnchorX())*dx+(clipped[1]-l.getAnchorY())*dy)/length;
+			double t1 = ((clipped[2]-l.getAnchorX())*dx+(clipped[3]-l.getAnchorY())*dy)/length;
+			return Math.max(t0, t1) >= 0 && Math.min(t0, t1) <= 1;
+		}
+		else if(s instanceof Circle)
+		{
+			//the circle passes through the rectangle if the rectangle has points both inside and outside of it
+			Circle c = (Circle) s;
+			double cx = c.getCenterX(), cy = c.getCenterY(), r = c.getRadius();
+			double nearX = Math.max(minX, Math.min(cx, maxX)), nearY = Math.max(minY, Math.min(cy, maxY));
+			double farX = Math.max(Math.abs(cx-minX), Math.abs(cx-maxX)), farY = Math.max(Math.abs(cy-minY), Math.abs(cy-maxY));
+			return Utility.dist(cx, cy, nearX, nearY) < r+margin && Math.sqrt(farX*farX+farY*farY) > r-margin;
+		}
+		return false;
+	}
+
+	/**
+	 * Marks a range of cells as changed.
+	 * @param range range of cells
+	 */
+	private void mark(int[] range)
+	{
+		for(int col = range[0]; col <= range[2]; col++)
+		{
+			for(int row = range[1]; row <= range[3]; row++)
+			{
+				changed.add(key(col, row));
+			}
+		}
+	}
+
+	/**
+	 * Marks the cells along the visible part of an infinite line as changed.
+	 * @param chord visible part of the line, or null if it is not visible
+	 */
+	private void mark(double[] chord)
+	{
+		if(chord == null) return;
+		double length = Math.sqrt((chord[2]-chord[0])*(chord[2]-chord[0])+(chord[3]-chord[1])*(chord[3]-chord[1]));
+		int steps = (int) Math.ceil(2*length/CELL_SIZE);
+		for(int i = 0; i <= steps; i++)
+		{
+			double t = steps == 0 ? 0 : (double) i/steps;
+			changed.add(key(cell(chord[0]+t*(chord[2]-chord[0])), cell(chord[1]+t*(chord[3]-chord[1]))));
+		}
+	}
+
+	/**
+	 * Clips an infinite line to the view.
+	 * @param l infinite line
+	 * @return visible part of the line, or null if it is not visible
+	 */
+	private double[] chord(Line l)
+	{
+		double[] chord = new double[4];
+		if(!GeometryKernel.clip(l.getAnchorX(), l.getAnchorY(), l.getDirectionX(), l.getDirectionY(),
+				view[0], view[1], view[2], view[3], chord)) return null;
+		return chord;
+	}
+
+	/**
+	 * Finds the range of cells covered by the bounding box of the shape.
+	 * @param s shape
+	 * @return the range of cells, or null if the shape is unbounded, covers too many cells or is not defined
+	 */
+	private static int[] range(Shape s)
+	{
+		double minX, minY, maxX, maxY;
+		if(s instanceof Point)
+		{
+			Point p = (Point) s;
+			minX = maxX = p.getX();
+			minY = maxY = p.getY();
+		}
+		else if(s instanceof Line)
+		{
+			Line l = (Line) s;
+			if(l.isInfinite()) return null;
+			minX = Math.min(l.getStartX(), l.getEndX());
+			maxX = Math.max(l.getStartX(), l.getEndX());
+			minY = Math.min(l.getStartY(), l.getEndY());
+			maxY = Math.max(l.getStartY(), l.getEndY());
+		}
+		else if(s instanceof Circle)
+		{
+			Circle c = (Circle) s;
+			minX = c.getCenterX()-c.getRadius();
+			maxX = c.getCenterX()+c.getRadius();
+			minY = c.getCenterY()-c.getRadius();
+			maxY = c.getCenterY()+c.getRadius();
+		}
+		else return null;
+		if(!s.isDefined() || !(maxX-minX < MAX_CELLS*CELL_SIZE) || !(maxY-minY < MAX_CELLS*CELL_SIZE)) return null;
+		int[] range = {cell(minX), cell(minY), cell(maxX), cell(maxY)};
+		if((long) (range[2]-range[0]+1)*(range[3]-range[1]+1) > MAX_CELLS) return null;
+		return range;
+	}
+
+	/**
+	 * Finds the column or row of the cell that contains the coordinate.
+	 * @param coordinate x- or y-coordinate
+	 * @return column or row of the cell
+	 */
+	private static int cell(double coordinate)
+	{
+		return (int) Math.max(-MAX_CELL, Math.min(MAX_CELL, Math.floor(coordinate/CELL_SIZE)));
+	}
+
+	/**
+	 * Combines the column and row of a cell into one key.
+	 * @param col column of the cell
+	 * @param row row of the cell
+	 * @return key of the cell
+	 */
+	private static long key(int col, int row)
+	{
+		return ((long) col << 32) | (row & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,821 @@
+package asypad.ui.render;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import asypad.shapes.*;
+import javafx.animation.AnimationTimer;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Renderer that draws the shapes of a diagram onto a pane. The shapes themselves only hold geometry,
+ * so all scene graph objects are created and updated here.
+ * Shapes are normally drawn as their own JavaFX nodes. Only shapes that pass through the pane have nodes on it,
+ * which are taken from a pool when a shape comes into view and given back when it leaves.
+ * Once there are more than {@code Diagram.CanvasThreshold} shapes, the nodes are dropped and the shapes and labels in view
+ * are painted onto a single canvas from the diagram instead, at most once per pulse.
+ * Either way, the cost of drawing grows with what is on the screen and not with the size of the diagram,
+ * and shapes are found under the mouse through the grid of the shown shapes and not by picking nodes.
+ * The shapes are drawn through a {@link ViewTransform}, so panning and zooming only move the shapes that are in view.
+ * Details that cannot be seen are left out: lines and circles smaller than {@code Diagram.DetailThreshold} pixels are not drawn,
+ * and labels are hidden once the view is zoomed out past {@code Diagram.LabelThreshold} and while it is being panned or zoomed.
+ * While the user is dragging or zooming, labels are not placed again until the input has stopped for {@code IDLE_DELAY}.
+ * @author Raymond Feng
+ */
+public class ShapeRenderer
+{
+	/**
+	 * Cache of parsed colors, keyed by hex.
+	 */
+	private static final HashMap<String, Color> COLORS = new HashMap<String, Color>();
+
+	/**
+	 * Time after the last input, in nanoseconds, after which the shapes are drawn with all of their details again.
+	 */
+	private static final long IDLE_DELAY = 150000000L;
+
+	/**
+	 * Pane that the shapes are drawn onto.
+	 */
+	private Pane pane;
+
+	/**
+	 * Underlying nodes that are drawn onto the screen for each shape, or null for shapes that are not in view
+	 * and for all shapes if the shapes are painted onto the canvas.
+	 */
+	private HashMap<Shape, javafx.scene.shape.Shape> nodes;
+
+	/**
+	 * Unused nodes for lines.
+	 */
+	private ArrayList<javafx.scene.shape.Line> linePool;
+
+	/**
+	 * Unused nodes for points and circles.
+	 */
+	private ArrayList<javafx.scene.shape.Circle> circlePool;
+
+	/**
+	 * Shapes that are currently shown, whether or not they are in view.
+	 */
+	private HashSet<Shape> shown;
+
+	/**
+	 * Shapes whose nodes are on the pane.
+	 */
+	private HashSet<Shape> visible;
+
+	/**
+	 * Colors that shapes are highlighted in on the canvas until their next refresh.
+	 */
+	private HashMap<Shape, Color> highlights;
+
+	/**
+	 * Canvas that the shapes are painted onto instead of being drawn as nodes.
+	 */
+	private Canvas canvas;
+
+	/**
+	 * Paints the canvas on the next pulse after it has changed.
+	 */
+	private AnimationTimer painter;
+
+	/**
+	 * If the shapes are painted onto the canvas.
+	 */
+	private boolean immediate;
+
+	/**
+	 * If the canvas has changed since it was last painted.
+	 */
+	private boolean dirty;
+
+	/**
+	 * If the labels are drawn.
+	 */
+	private boolean labelsShown;
+
+	/**
+	 * If the user has dragged or zoomed within the last {@code IDLE_DELAY}.
+	 */
+	private boolean interacting;
+
+	/**
+	 * If the view has been panned or zoomed within the last {@code IDLE_DELAY}.
+	 */
+	private boolean panning;
+
+	/**
+	 * Time of the last input, as given by {@code System.nanoTime()}.
+	 */
+	private long lastInput;
+
+	/**
+	 * Draws the shapes with all of their details again once the input has stopped for {@code IDLE_DELAY}.
+	 */
+	private AnimationTimer idle;
+
+	/**
+	 * Labels of the drawn points.
+	 */
+	private HashMap<Shape, DraggableLabel> labels;
+
+	/**
+	 * Grid of the shown shapes, used to find the shapes near a location.
+	 */
+	private ShapeGrid grid;
+
+	/**
+	 * Placer of the labels that have not been dragged by the user.
+	 */
+	private LabelPlacer placer;
+
+	/**
+	 * Mapping of the diagram onto the pane.
+	 */
+	private ViewTransform view;
+
+	/**
+	 * Endpoints of the visible part of the infinite line that is being refreshed.
+	 */
+	private double[] clipped;
+
+	/**
+	 * Creates a new ShapeRenderer that draws onto the specified pane.
+	 * @param pane pane that shapes are to be drawn on
+	 */
+	public ShapeRenderer(Pane pane)
+	{
+		this.pane = pane;
+		nodes = new HashMap<Shape, javafx.scene.shape.Shape>();
+		linePool = new ArrayList<javafx.scene.shape.Line>();
+		circlePool = new ArrayList<javafx.scene.shape.Circle>();
+		shown = new HashSet<Shape>();
+		visible = new HashSet<Shape>();
+		highlights = new HashMap<Shape, Color>();
+		labels = new HashMap<Shape, DraggableLabel>();
+		grid = new ShapeGrid();
+		view = new ViewTransform();
+		placer = new LabelPlacer(grid, labels, view);
+		clipped = new double[4];
+		canvas = new Canvas();
+		//the canvas follows the size of the pane, so it should not count towards it
+		canvas.setManaged(false);
+		immediate = false;
+		dirty = false;
+		labelsShown = true;
+		interacting = false;
+		panning = false;
+		lastInput = 0;
+		painter = new AnimationTimer()
+		{
+			public void handle(long now)
+			{
+				stop();
+				dirty = false;
+				paint();
+			}
+		};
+		idle = new AnimationTimer()
+		{
+			public void handle(long now)
+			{
+				if(now-lastInput < IDLE_DELAY) return;
+				stop();
+				interacting = false;
+				panning = false;
+				if(chooseDetail()) redraw();
+				placeLabels();
+			}
+		};
+		//shapes are only drawn where they are on the pane, so they have to be checked again when it is resized
+		ChangeListener<Number> resize = new ChangeListener<Number>()
+		{
+			public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue)
+			{
+				setGridView();
+				canvas.setWidth(pane.getWidth());
+				canvas.setHeight(pane.getHeight());
+				invalidate();
+				refresh(shown);
+				placeLabels();
+			}
+		};
+		pane.widthProperty().addListener(resize);
+		pane.heightProperty().addListener(resize);
+	}
+
+	/**
+	 * Draws a shape onto the pane, behind all other nodes. Shapes that are not defined are only drawn once they are.
+	 * @param s shape to draw
+	 */
+	public void add(Shape s)
+	{
+		if(!nodes.containsKey(s)) create(s);
+		if(chooseMode())
+		{
+			//every shape has been taken off the pane, so all of them have to be shown again
+			for(Shape t : nodes.keySet())
+			{
+				if(t != s) show(t);
+			}
+		}
+		if(s.isDefined()) attach(s);
+		refresh(s);
+		placeLabels();
+	}
+
+	/**
+	 * Removes a shape's nodes from the pane.
+	 * @param s shape to remove
+	 */
+	public void remove(Shape s)
+	{
+		detach(s);
+		nodes.remove(s);
+		labels.remove(s);
+		highlights.remove(s);
+		placeLabels();
+	}
+
+	/**
+	 * Updates the pane to show the given shapes: nodes of shapes that are no longer drawn are removed,
+	 * hidden and undefined shapes are taken off the pane, all other shapes are put on the pane, and all nodes are refreshed.
+	 * @param shapes the shapes that are drawn
+	 */
+	public void update(Collection<? extends Shape> shapes)
+	{
+		HashSet<Shape> drawn = new HashSet<Shape>(shapes);
+		Iterator<Shape> it = nodes.keySet().iterator();
+		while(it.hasNext())
+		{
+			Shape s = it.next();
+			if(!drawn.contains(s))
+			{
+				detach(s);
+				labels.remove(s);
+				highlights.remove(s);
+				it.remove();
+			}
+		}
+		for(Shape s : shapes)
+		{
+			if(!nodes.containsKey(s)) create(s);
+		}
+		chooseMode();
+		chooseDetail();
+		for(Shape s : shapes)
+		{
+			show(s);
+		}
+		placeLabels();
+	}
+
+	/**
+	 * Brings the given shapes up to date on the pane: hidden and undefined shapes are taken off the pane, other shapes are put on it,
+	 * and the shown shapes are refreshed. Shapes that have no nodes or have been deleted are skipped.
+	 * @param changed shapes that have changed
+	 */
+	public void sync(Collection<? extends Shape> changed)
+	{
+		for(Shape s : changed)
+		{
+			if(!nodes.containsKey(s) || s.remove()) continue;
+			show(s);
+		}
+		placeLabels();
+	}
+
+	/**
+	 * Refreshes the nodes of the shape from its current geometry and color, putting them onto the pane if the shape has come into view
+	 * and taking them off if it has left. Shapes that are not shown are skipped, so that hidden shapes are not recomputed just to be drawn.
+	 * @param s shape to refresh
+	 */
+	public void refresh(Shape s)
+	{
+		if(!shown.contains(s)) return;
+		grid.put(s);
+		if(immediate)
+		{
+			highlights.remove(s);
+			if(s instanceof Point) labels.get(s).refresh();
+			invalidate();
+			return;
+		}
+		javafx.scene.shape.Shape node = place(s);
+		if(node != null) recolor(s, node);
+	}
+
+	/**
+	 * Refreshes the nodes of all of the given shapes.
+	 * @param shapes shapes to refresh
+	 */
+	public void refresh(Collection<? extends Shape> shapes)
+	{
+		for(Shape s : shapes)
+		{
+			refresh(s);
+		}
+	}
+
+	/**
+	 * Redraws the shapes after the view has been panned or zoomed. Only the shapes that were in view or are now in view are moved,
+	 * and nothing is recomputed. Labels are only placed again if they have been hidden while their points changed.
+	 */
+	public void viewChanged()
+	{
+		setGridView();
+		chooseDetail();
+		redraw();
+		placeLabels();
+	}
+
+	/**
+	 * Notes that the user is dragging or zooming, so that labels are not placed again until the input has stopped for {@code IDLE_DELAY}.
+	 * While the view is being panned or zoomed, the labels are also hidden.
+	 * @param pan if the input pans or zooms the view
+	 */
+	public void interact(boolean pan)
+	{
+		lastInput = System.nanoTime();
+		if(pan) panning = true;
+		if(interacting) return;
+		interacting = true;
+		idle.start();
+	}
+
+	/**
+	 * Returns the mapping of the diagram onto the pane.
+	 * @return view transform
+	 */
+	public ViewTransform getView()
+	{
+		return view;
+	}
+
+	/**
+	 * Whether the shape is currently shown, which does not mean that it is in view.
+	 * @param s shape
+	 * @return if the shape is shown
+	 */
+	public boolean isShown(Shape s)
+	{
+		return shown.contains(s);
+	}
+
+	/**
+	 * Whether the shapes are painted onto a single canvas instead of being drawn as nodes.
+	 * @return if the shapes are painted onto the canvas
+	 */
+	public boolean isImmediate()
+	{
+		return immediate;
+	}
+
+	/**
+	 * Finds the shown shapes that may be within the given distance of (x, y), in the order that they were drawn.
+	 * The shapes still have to be checked for their actual distance to (x, y).
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param distance distance from (x, y)
+	 * @return shown shapes that may be within the distance of (x, y)
+	 */
+	public List<Shape> shapesNear(double x, double y, double distance)
+	{
+		return grid.near(x, y, distance);
+	}
+
+	/**
+	 * Draws the shape in the specified color without changing the shape's own color.
+	 * The shape's color is restored on its next refresh.
+	 * @param s shape to highlight
+	 * @param c highlight color
+	 */
+	public void highlight(Shape s, Color c)
+	{
+		if(immediate)
+		{
+			if(!nodes.containsKey(s)) return;
+			highlights.put(s, c);
+			invalidate();
+			return;
+		}
+		javafx.scene.shape.Shape node = nodes.get(s);
+		if(node == null) return;
+		node.setStroke(c);
+		if(s instanceof Point)
+		{
+			node.setFill(c);
+		}
+	}
+
+	/**
+	 * Shows the shape if it is visible and defined and takes it off the pane otherwise, then refreshes it.
+	 * @param s shape
+	 */
+	private void show(Shape s)
+	{
+		if(s.isHidden() || !s.isDefined()) detach(s);
+		else attach(s);
+		refresh(s);
+	}
+
+	/**
+	 * Moves the nodes of the shapes that were in view or are now in view to where their shapes are on the pane,
+	 * or paints the canvas again if the shapes are painted onto it.
+	 */
+	private void redraw()
+	{
+		if(immediate)
+		{
+			invalidate();
+			return;
+		}
+		//labels of points up to a cell away can reach onto the pane
+		double margin = ShapeGrid.CELL_SIZE;
+		HashSet<Shape> near = new HashSet<Shape>(visible);
+		grid.collect(view.toDiagramX(-margin), view.toDiagramY(-margin),
+				view.toDiagramX(pane.getWidth()+margin), view.toDiagramY(pane.getHeight()+margin), near);
+		for(Shape s : near)
+		{
+			place(s);
+		}
+	}
+
+	/**
+	 * Decides whether the labels are drawn, from how far the view is zoomed out and whether it is being panned or zoomed.
+	 * The labels that are drawn have to be moved again when this changes.
+	 * @return if whether the labels are drawn has changed
+	 */
+	private boolean chooseDetail()
+	{
+		boolean show = !panning && 100*view.getScale() >= Diagram.LabelThreshold;
+		if(show == labelsShown) return false;
+		labelsShown = show;
+		return true;
+	}
+
+	/**
+	 * Places the labels near the shapes that have changed, unless the labels are hidden or the user is dragging or zooming,
+	 * in which case the changes are kept until they are placed.
+	 */
+	private void placeLabels()
+	{
+		if(labelsShown && !interacting) placer.placeChanged();
+	}
+
+	/**
+	 * Whether the shape is large enough on the screen to be drawn.
+	 * @param s shape
+	 * @return if the shape is at least {@code Diagram.DetailThreshold} pixels across, which points and infinite lines always are
+	 */
+	private boolean detailed(Shape s)
+	{
+		double size;
+		if(s instanceof Line)
+		{
+			Line l = (Line) s;
+			if(l.isInfinite()) return true;
+			size = Utility.dist(l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY());
+		}
+		else if(s instanceof Circle) size = 2*((Circle) s).getRadius();
+		else return true;
+		return view.getScale()*size >= Diagram.DetailThreshold;
+	}
+
+	/**
+	 * Moves the shape's nodes to where the shape is on the pane, putting them onto the pane if the shape has come into view
+	 * and taking them off if it has left. Nodes that are put onto the pane are given the shape's color, while nodes that were already on it keep theirs.
+	 * @param s shown shape
+	 * @return the node of the shape, or null if it is not in view
+	 */
+	private javafx.scene.shape.Shape place(Shape s)
+	{
+		DraggableLabel label = labels.get(s);
+		if(label != null && labelsShown) label.refresh();
+		if(!detailed(s) || !inView(s))
+		{
+			release(s);
+			return null;
+		}
+		javafx.scene.shape.Shape node = nodes.get(s);
+		if(node == null)
+		{
+			node = acquire(s);
+			recolor(s, node);
+		}
+		if(label != null) label.setVisible(labelsShown);
+		if(s instanceof Point)
+		{
+			Point p = (Point) s;
+			javafx.scene.shape.Circle dot = (javafx.scene.shape.Circle) node;
+			dot.setCenterX(view.toScreenX(p.getX()));
+			dot.setCenterY(view.toScreenY(p.getY()));
+			dot.setRadius(Shape.StrokeWidth);
+			dot.setStrokeWidth(Shape.StrokeWidth);
+		}
+		else if(s instanceof Line)
+		{
+			Line l = (Line) s;
+			javafx.scene.shape.Line line = (javafx.scene.shape.Line) node;
+			if(l.isInfinite())
+			{
+				//only the part of an infinite line that is on the pane is drawn
+				double margin = reach();
+				GeometryKernel.clip(view.toScreenX(l.getAnchorX()), view.toScreenY(l.getAnchorY()), l.getDirectionX(), l.getDirectionY(),
+						-margin, -margin, pane.getWidth()+margin, pane.getHeight()+margin, clipped);
+				line.setStartX(clipped[0]);
+				line.setStartY(clipped[1]);
+				line.setEndX(clipped[2]);
+				line.setEndY(clipped[3]);
+			}
+			else
+			{
+				line.setStartX(view.toScreenX(l.getStartX()));
+				line.setStartY(view.toScreenY(l.getStartY()));
+				line.setEndX(view.toScreenX(l.getEndX()));
+				line.setEndY(view.toScreenY(l.getEndY()));
+			}
+			line.setStrokeWidth(Shape.StrokeWidth);
+		}
+		else if(s instanceof Circle)
+		{
+			Circle ci = (Circle) s;
+			javafx.scene.shape.Circle circle = (javafx.scene.shape.Circle) node;
+			circle.setCenterX(view.toScreenX(ci.getCenterX()));
+			circle.setCenterY(view.toScreenY(ci.getCenterY()));
+			circle.setRadius(view.getScale()*ci.getRadius());
+			circle.setStrokeWidth(Shape.StrokeWidth);
+		}
+		return node;
+	}
+
+	/**
+	 * Gives the node of a shape the shape's color.
+	 * @param s shape
+	 * @param node node of the shape
+	 */
+	private void recolor(Shape s, javafx.scene.shape.Shape node)
+	{
+		Color c = color(s.getColor());
+		node.setStroke(c);
+		if(s instanceof Point) node.setFill(c);
+		else if(s instanceof Circle) node.setFill(Color.TRANSPARENT);
+	}
+
+	/**
+	 * Tells the grid which part of the diagram is on the pane, so that it can follow the visible parts of infinite lines.
+	 */
+	private void setGridView()
+	{
+		double margin = reach();
+		grid.setView(view.toDiagramX(-margin), view.toDiagramY(-margin),
+				view.toDiagramX(pane.getWidth()+margin), view.toDiagramY(pane.getHeight()+margin));
+	}
+
+	/**
+	 * Switches between drawing the shapes as nodes and painting them onto the canvas, depending on how many shapes there are.
+	 * When it switches, every shape is taken off the pane and has to be shown again.
+	 * @return if the way that the shapes are drawn has changed
+	 */
+	private boolean chooseMode()
+	{
+		boolean canvasMode = nodes.size() > Diagram.CanvasThreshold;
+		if(canvasMode == immediate) return false;
+		for(Shape s : nodes.keySet())
+		{
+			detach(s);
+		}
+		immediate = canvasMode;
+		highlights.clear();
+		if(immediate)
+		{
+			linePool.clear();
+			circlePool.clear();
+			canvas.setWidth(pane.getWidth());
+			canvas.setHeight(pane.getHeight());
+			pane.getChildren().add(canvas);
+			canvas.toBack();
+			invalidate();
+		}
+		else
+		{
+			pane.getChildren().remove(canvas);
+			painter.stop();
+			dirty = false;
+		}
+		return true;
+	}
+
+	/**
+	 * Starts to keep track of a shape. Points get their labels here, while the nodes are only taken once the shape is in view.
+	 * @param s shape
+	 */
+	private void create(Shape s)
+	{
+		if(s instanceof Point) labels.put(s, new DraggableLabel((Point) s, view));
+		nodes.put(s, null);
+	}
+
+	/**
+	 * Marks the shape as shown. Its nodes are put onto the pane when it is refreshed, if it is in view.
+	 * @param s shape
+	 */
+	private void attach(Shape s)
+	{
+		if(shown.add(s)) invalidate();
+	}
+
+	/**
+	 * Takes the shape off the pane.
+	 * @param s shape
+	 */
+	private void detach(Shape s)
+	{
+		grid.remove(s);
+		if(!shown.remove(s)) return;
+		release(s);
+		invalidate();
+	}
+
+	/**
+	 * Distance past the edges of the pane from which a shape can be drawn onto it, in pixels: the dot of a point reaches
+	 * one and a half stroke widths on the pane, and crosses() allows for one stroke width in the diagram, which grows with the scale.
+	 * @return reach of a shape onto the pane
+	 */
+	private double reach()
+	{
+		return Math.max(1.5*Shape.StrokeWidth, Shape.StrokeWidth*view.getScale());
+	}
+
+	/**
+	 * Whether any part of the shape or its label is drawn on the pane.
+	 * @param s shown shape
+	 * @return if the shape is in view
+	 */
+	private boolean inView(Shape s)
+	{
+		//crosses() already allows for one stroke width in the diagram, so only the rest of the reach is added on the pane
+		double margin = 1.5*Shape.StrokeWidth, maxX = pane.getWidth()+margin, maxY = pane.getHeight()+margin;
+		double extra = reach()-Shape.StrokeWidth*view.getScale();
+		if(ShapeGrid.crosses(s, view.toDiagramX(-extra), view.toDiagramY(-extra),
+				view.toDiagramX(pane.getWidth()+extra), view.toDiagramY(pane.getHeight()+extra))) return true;
+		DraggableLabel label = labels.get(s);
+		if(label == null || !labelsShown) return false;
+		double x = label.getLayoutX(), y = label.getLayoutY();
+		return x < maxX && x+label.getBoxWidth() > -margin && y < maxY && y+label.getBoxHeight() > -margin;
+	}
+
+	/**
+	 * Takes a node for the shape from the pool, or creates one if there is none, and puts it onto the pane behind all other nodes
+	 * together with the shape's label.
+	 * @param s shape
+	 * @return the node
+	 */
+	private javafx.scene.shape.Shape acquire(Shape s)
+	{
+		javafx.scene.shape.Shape node;
+		if(s instanceof Line)
+		{
+			node = linePool.isEmpty() ? new javafx.scene.shape.Line() : linePool.remove(linePool.size()-1);
+		}
+		else node = circlePool.isEmpty() ? new javafx.scene.shape.Circle() : circlePool.remove(circlePool.size()-1);
+		nodes.put(s, node);
+		visible.add(s);
+		pane.getChildren().add(0, node);
+		DraggableLabel label = labels.get(s);
+		if(label != null) pane.getChildren().add(0, label);
+		return node;
+	}
+
+	/**
+	 * Takes the shape's nodes off the pane, if they are on it, and gives its node back to the pool.
+	 * @param s shape
+	 */
+	private void release(Shape s)
+	{
+		javafx.scene.shape.Shape node = nodes.get(s);
+		if(node == null) return;
+		nodes.put(s, null);
+		visible.remove(s);
+		pane.getChildren().remove(node);
+		if(node instanceof javafx.scene.shape.Line) linePool.add((javafx.scene.shape.Line) node);
+		else circlePool.add((javafx.scene.shape.Circle) node);
+		DraggableLabel label = labels.get(s);
+		if(label != null) pane.getChildren().remove(label);
+	}
+
+	/**
+	 * Paints the canvas again on the next pulse, if the shapes are painted onto it.
+	 */
+	private void invalidate()
+	{
+		if(!immediate || dirty) return;
+		dirty = true;
+		painter.start();
+	}
+
+	/**
+	 * Paints the shown shapes that are in view and their labels onto the canvas.
+	 */
+	private void paint()
+	{
+		GraphicsContext g = canvas.getGraphicsContext2D();
+		g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		double w = Shape.StrokeWidth, cell = ShapeGrid.CELL_SIZE;
+		//only the shapes near the canvas are painted, and points a cell away from it may still have their labels on it
+		HashSet<Shape> near = new HashSet<Shape>();
+		grid.collect(view.toDiagramX(-cell), view.toDiagramY(-cell), view.toDiagramX(canvas.getWidth()+cell), view.toDiagramY(canvas.getHeight()+cell), near);
+		ArrayList<Shape> order = new ArrayList<Shape>(near);
+		Collections.sort(order, Diagram.DRAW_ORDER);
+		g.setLineWidth(w);
+		//shapes that were drawn first are on top, as the nodes of new shapes are put behind all others
+		for(int i = order.size()-1; i >= 0; i--)
+		{
+			Shape s = order.get(i);
+			if(!detailed(s)) continue;
+			Color c = highlights.get(s);
+			if(c == null) c = color(s.getColor());
+			if(s instanceof Point)
+			{
+				//the dot of a point is as wide as its node, whose stroke is centered on its outline
+				Point p = (Point) s;
+				g.setFill(c);
+				g.fillOval(view.toScreenX(p.getX())-1.5*w, view.toScreenY(p.getY())-1.5*w, 3*w, 3*w);
+			}
+			else if(s instanceof Line)
+			{
+				Line l = (Line) s;
+				g.setStroke(c);
+				if(!l.isInfinite())
+				{
+					g.strokeLine(view.toScreenX(l.getStartX()), view.toScreenY(l.getStartY()), view.toScreenX(l.getEndX()), view.toScreenY(l.getEndY()));
+				}
+				else if(GeometryKernel.clip(view.toScreenX(l.getAnchorX()), view.toScreenY(l.getAnchorY()), l.getDirectionX(), l.getDirectionY(),
+						-w, -w, canvas.getWidth()+w, canvas.getHeight()+w, clipped))
+				{
+					g.strokeLine(clipped[0], clipped[1], clipped[2], clipped[3]);
+				}
+			}
+			else if(s instanceof Circle)
+			{
+				Circle ci = (Circle) s;
+				double r = view.getScale()*ci.getRadius();
+				g.setStroke(c);
+				g.strokeOval(view.toScreenX(ci.getCenterX())-r, view.toScreenY(ci.getCenterY())-r, 2*r, 2*r);
+			}
+		}
+		if(!labelsShown) return;
+		g.setFill(Color.BLACK);
+		g.setTextBaseline(VPos.TOP);
+		for(Shape s : order)
+		{
+			DraggableLabel label = labels.get(s);
+			if(label == null) continue;
+			//painted from the point through the view on every repaint, so the label follows panning and zooming without being moved
+			double direction = label.getDirection();
+			g.setFont(label.getFont());
+			g.fillText(label.getText(), label.layoutX(direction), label.layoutY(direction));
+		}
+	}
+
+	/**
+	 * Converts a hex color of a shape into a Color.
+	 * @param hex color in hex
+	 * @return the Color
+	 */
+	public static Color color(String hex)
+	{
+		Color c = COLORS.get(hex);
+		if(c == null)
+		{
+			c = Color.web(hex);
+			COLORS.put(hex, c);
+		}
+		return c;
+	}
+
+	/**
+	 * Hexes a Color into string format.
+	 * @param color the Color to be hexed
+	 * @return String rgb representation of the Color.
+	 */
+	public static String hex(Color color)
+	{
+		return String.format("%02X%02X%02X",
+				(int)(color.getRed()*255),
+				(int)(color.getGreen()*255),
+				(int)(color.getBlue()*255));
+	}
+}
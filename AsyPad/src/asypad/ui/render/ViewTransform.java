@@ -0,0 +1,111 @@
+package asypad.ui.render;
+
+/**
+ * Maps the coordinates of a diagram onto the screen. Panning and zooming only change this mapping,
+ * so the points of the diagram keep their coordinates and nothing has to be recomputed.
+ * A point (x, y) of the diagram is drawn at {@code (scale*x+offsetX, scale*y+offsetY)} on the screen.
+ * @author Raymond Feng
+ */
+public class ViewTransform
+{
+	/**
+	 * Number of pixels on the screen per unit of the diagram.
+	 */
+	private double scale;
+
+	/**
+	 * Location on the screen of the origin of the diagram.
+	 */
+	private double offsetX, offsetY;
+
+	/**
+	 * Creates a new ViewTransform that shows the diagram unchanged.
+	 */
+	public ViewTransform()
+	{
+		reset();
+	}
+
+	/**
+	 * Shows the diagram unchanged again, so that its coordinates are the coordinates on the screen.
+	 */
+	public void reset()
+	{
+		scale = 1;
+		offsetX = 0;
+		offsetY = 0;
+	}
+
+	/**
+	 * Moves the view by the given amount on the screen.
+	 * @param dx translation in x direction
+	 * @param dy translation in y direction
+	 */
+	public void translate(double dx, double dy)
+	{
+		offsetX += dx;
+		offsetY += dy;
+	}
+
+	/**
+	 * Zooms the view by the specified factor with respect to a location on the screen.
+	 * @param zx x-coordinate of zoom on the screen
+	 * @param zy y-coordinate of zoom on the screen
+	 * @param factor zoom factor
+	 */
+	public void zoom(double zx, double zy, double factor)
+	{
+		scale *= factor;
+		offsetX = zx+factor*(offsetX-zx);
+		offsetY = zy+factor*(offsetY-zy);
+	}
+
+	/**
+	 * Returns the number of pixels on the screen per unit of the diagram.
+	 * @return scale of the view
+	 */
+	public double getScale()
+	{
+		return scale;
+	}
+
+	/**
+	 * Finds where an x-coordinate of the diagram is on the screen.
+	 * @param x x-coordinate in the diagram
+	 * @return x-coordinate on the screen
+	 */
+	public double toScreenX(double x)
+	{
+		return scale*x+offsetX;
+	}
+
+	/**
+	 * Finds where a y-coordinate of the diagram is on the screen.
+	 * @param y y-coordinate in the diagram
+	 * @return y-coordinate on the screen
+	 */
+	public double toScreenY(double y)
+	{
+		return scale*y+offsetY;
+	}
+
+	/**
+	 * Finds the x-coordinate of the diagram that is shown at an x-coordinate on the screen.
+	 * @param x x-coordinate on the screen
+	 * @return x-coordinate in the diagram
+	 */
+	public double toDiagramX(double x)
+	{
+		return (x-offsetX)/scale;
+	}
+
+	/**
+	 * Finds the y-coordinate of the diagram that is shown at a y-coordinate on the screen.
+	 * @param y y-coordinate on the screen
+	 * @return y-coordinate in the diagram
+	 */
+	public double toDiagramY(double y)
+	{
+		return (y-offsetY)/scale;
+	}
+}
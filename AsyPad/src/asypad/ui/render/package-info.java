@@ -0,0 +1,6 @@
+/**
+ * Package containing the renderer that binds JavaFX nodes to the shapes of a diagram, 
+ * and the draggable labels that are used in AsyPad.
+ * @author Raymond Feng
+ */
+package asypad.ui.render;